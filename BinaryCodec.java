@@ -0,0 +1,123 @@
+/**
+ *
+ *  A BinaryCodec writes values of one type into a fixed number of bytes of a
+ *  ByteBuffer and reads them back. It is how myOffHeapHashMap stores its keys and
+ *  values outside the Java heap.
+ *
+ *  Every value of the type takes exactly size() bytes. Variable length data (such
+ *  as the utf8 codec below) is written with a length prefix and padded with zeros
+ *  up to size(), so a codec can store "serialized" values up to a maximum length.
+ *
+ *  A codec used for keys must be canonical: two keys are equal exactly when their
+ *  encodings are byte for byte equal, because the map compares keys on their bytes
+ *  without decoding them. This holds for the codecs defined here (padding is always
+ *  zeroed).
+ *
+ *  PROVIDED CODECS:
+ *  ----------------
+ *
+ *     INT             - Integer in 4 bytes
+ *     LONG            - Long in 8 bytes
+ *     DOUBLE          - Double in 8 bytes (as raw bits, so -0.0 and 0.0 differ, as
+ *                       in Double.equals())
+ *     utf8(maxBytes)  - String as a 2 byte length and at most maxBytes UTF-8 bytes
+ *
+ ****************************************/
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+interface BinaryCodec<T> {
+
+    /**
+     * Returns the number of bytes every encoded value takes.
+     */
+    int size();
+
+    /**
+     * Writes the value into buf[offset, offset + size()). Must not change the
+     * buffer's position or limit.
+     */
+    void write(ByteBuffer buf, int offset, T value);
+
+    /**
+     * Reads the value stored at buf[offset, offset + size()).
+     */
+    T read(ByteBuffer buf, int offset);
+
+    BinaryCodec<Integer> INT = new BinaryCodec<Integer>() {
+        public int size() {
+            return Integer.BYTES;
+        }
+
+        public void write(ByteBuffer buf, int offset, Integer value) {
+            buf.putInt(offset, value);
+        }
+
+        public Integer read(ByteBuffer buf, int offset) {
+            return buf.getInt(offset);
+        }
+    };
+
+    BinaryCodec<Long> LONG = new BinaryCodec<Long>() {
+        public int size() {
+            return Long.BYTES;
+        }
+
+        public void write(ByteBuffer buf, int offset, Long value) {
+            buf.putLong(offset, value);
+        }
+
+        public Long read(ByteBuffer buf, int offset) {
+            return buf.getLong(offset);
+        }
+    };
+
+    BinaryCodec<Double> DOUBLE = new BinaryCodec<Double>() {
+        public int size() {
+            return Double.BYTES;
+        }
+
+        public void write(ByteBuffer buf, int offset, Double value) {
+            buf.putLong(offset, Double.doubleToLongBits(value));
+        }
+
+        public Double read(ByteBuffer buf, int offset) {
+            return Double.longBitsToDouble(buf.getLong(offset));
+        }
+    };
+
+    /**
+     * Returns a codec for Strings of at most 'maxBytes' bytes in UTF-8. Longer
+     * strings are rejected with an IllegalArgumentException when written.
+     */
+    static BinaryCodec<String> utf8(int maxBytes) {
+        if (maxBytes < 0 || maxBytes > 0xFFFF) {
+            throw new IllegalArgumentException("Illegal maximum length: " + maxBytes);
+        }
+        return new BinaryCodec<String>() {
+            public int size() {
+                return 2 + maxBytes;
+            }
+
+            public void write(ByteBuffer buf, int offset, String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes) {
+                    throw new IllegalArgumentException("String longer than " + maxBytes + " UTF-8 bytes");
+                }
+                buf.putShort(offset, (short) bytes.length);
+                buf.put(offset + 2, bytes);
+                for (int i = offset + 2 + bytes.length; i < offset + 2 + maxBytes; i++) {
+                    buf.put(i, (byte) 0);
+                }
+            }
+
+            public String read(ByteBuffer buf, int offset) {
+                byte[] bytes = new byte[buf.getShort(offset) & 0xFFFF];
+                buf.get(offset + 2, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+} /* end interface BinaryCodec */
@@ -0,0 +1,370 @@
+/**
+ *
+ *  A CachePolicy decides which entry a myCacheMap evicts once it holds more than
+ *  its capacity. The policy keeps its own order of the entries, but not in any
+ *  structure of its own: the entries are the map's LinkedNodes, and the policy only
+ *  moves them between doubly linked lists through their 'before' / 'after' links.
+ *  So recording an access or an insertion allocates nothing.
+ *
+ *  The map calls the policy after each change (see myCacheMap), and victim() when it
+ *  is over capacity; it then removes the returned entry itself, which calls
+ *  onRemove(). A policy instance serves a single map.
+ *
+ *  PROVIDED POLICIES:
+ *  ------------------
+ *
+ *     lru()            - Least recently used: evicts the entry that was read or
+ *                        written the longest time ago
+ *     windowTinyLfu()  - W-TinyLFU: a small LRU window admits new entries, and an
+ *                        entry leaving it only displaces an entry of the main
+ *                        (segmented LRU) region if it was requested more often,
+ *                        according to a compact frequency sketch. This keeps
+ *                        popular entries in the cache through bursts of one-hit
+ *                        keys and scans, where LRU would flush them.
+ *
+ ****************************************/
+
+interface CachePolicy<K, V> {
+
+    /**
+     * Called once, by the map's constructor, with the maximum number of entries.
+     */
+    void init(int capacity);
+
+    /**
+     * A new entry was created.
+     */
+    void onInsert(LinkedNode<K, V> node);
+
+    /**
+     * The entry was read or written through its key.
+     */
+    void onAccess(LinkedNode<K, V> node);
+
+    /**
+     * A lookup by the key with this hash found nothing.
+     */
+    void onMiss(int hash);
+
+    /**
+     * The entry was removed from the map, by eviction or otherwise.
+     */
+    void onRemove(LinkedNode<K, V> node);
+
+    /**
+     * The map replaced a node by a copy (when a bucket is treeified or turned back
+     * into a chain); the copy must take the node's place.
+     */
+    void onReplace(LinkedNode<K, V> node, LinkedNode<K, V> replacement);
+
+    /**
+     * Returns the entry to evict. Only called while the map holds more entries than
+     * its capacity, so there is one.
+     */
+    LinkedNode<K, V> victim();
+
+    /**
+     * The map was cleared.
+     */
+    void clear();
+
+    static <K, V> CachePolicy<K, V> lru() {
+        return new Lru<>();
+    }
+
+    static <K, V> CachePolicy<K, V> windowTinyLfu() {
+        return new WindowTinyLfu<>();
+    }
+
+    /**
+     * Class NodeQueue
+     *
+     * A doubly linked list of LinkedNodes, least recently used first.
+     */
+
+    final class NodeQueue<K, V> {
+        LinkedNode<K, V> head;
+        LinkedNode<K, V> tail;
+        int size;
+
+        void linkLast(LinkedNode<K, V> node) {
+            node.before = tail;
+            node.after = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.after = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void unlink(LinkedNode<K, V> node) {
+            LinkedNode<K, V> b = node.before, a = node.after;
+            if (b == null) {
+                head = a;
+            } else {
+                b.after = a;
+            }
+            if (a == null) {
+                tail = b;
+            } else {
+                a.before = b;
+            }
+            node.before = node.after = null;
+            size--;
+        }
+
+        void moveToLast(LinkedNode<K, V> node) {
+            if (node != tail) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+
+        void replace(LinkedNode<K, V> node, LinkedNode<K, V> replacement) {
+            LinkedNode<K, V> b = replacement.before = node.before;
+            LinkedNode<K, V> a = replacement.after = node.after;
+            replacement.queue = node.queue;
+            if (b == null) {
+                head = replacement;
+            } else {
+                b.after = replacement;
+            }
+            if (a == null) {
+                tail = replacement;
+            } else {
+                a.before = replacement;
+            }
+        }
+
+        void clear() {
+            head = tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * Class Lru
+     *
+     * One queue in access order; the victim is its head.
+     */
+
+    final class Lru<K, V> implements CachePolicy<K, V> {
+        private final NodeQueue<K, V> queue = new NodeQueue<>();
+
+        public void init(int capacity) {
+        }
+
+        public void onInsert(LinkedNode<K, V> node) {
+            queue.linkLast(node);
+        }
+
+        public void onAccess(LinkedNode<K, V> node) {
+            queue.moveToLast(node);
+        }
+
+        public void onMiss(int hash) {
+        }
+
+        public void onRemove(LinkedNode<K, V> node) {
+            queue.unlink(node);
+        }
+
+        public void onReplace(LinkedNode<K, V> node, LinkedNode<K, V> replacement) {
+            queue.replace(node, replacement);
+        }
+
+        public LinkedNode<K, V> victim() {
+            return queue.head;
+        }
+
+        public void clear() {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Class WindowTinyLfu
+     *
+     * The entries are split between three LRU queues: the window (about 1% of the
+     * capacity) that every new entry enters, and the main region made of probation
+     * and protected (80% of the main region). An entry pushed out of the window
+     * joins probation as the 'candidate'; a probation entry that is accessed again
+     * moves to protected, whose overflow falls back to probation.
+     *
+     * When the map is over capacity, the candidate competes with the head of
+     * probation: the one the FrequencySketch estimates was requested less often is
+     * evicted. Misses count as requests, so a key that keeps being asked for wins
+     * its way in even though it is evicted at first.
+     */
+
+    final class WindowTinyLfu<K, V> implements CachePolicy<K, V> {
+        private static final byte WINDOW = 0;
+        private static final byte PROBATION = 1;
+        private static final byte PROTECTED = 2;
+
+        private final NodeQueue<K, V> window = new NodeQueue<>();
+        private final NodeQueue<K, V> probation = new NodeQueue<>();
+        private final NodeQueue<K, V> protectedQueue = new NodeQueue<>();
+        private FrequencySketch sketch;
+        private int maxWindow;
+        private int maxProtected;
+        private LinkedNode<K, V> candidate;
+
+        public void init(int capacity) {
+            maxWindow = Math.max(1, capacity / 100);
+            maxProtected = (int) ((capacity - maxWindow) * 0.8);
+            sketch = new FrequencySketch(capacity);
+        }
+
+        private NodeQueue<K, V> queueOf(LinkedNode<K, V> node) {
+            return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue;
+        }
+
+        public void onInsert(LinkedNode<K, V> node) {
+            sketch.increment(node.hash);
+            node.queue = WINDOW;
+            window.linkLast(node);
+            if (window.size > maxWindow) {
+                LinkedNode<K, V> first = window.head;
+                window.unlink(first);
+                first.queue = PROBATION;
+                probation.linkLast(first);
+                candidate = first;
+            }
+        }
+
+        public void onAccess(LinkedNode<K, V> node) {
+            sketch.increment(node.hash);
+            if (node.queue == PROBATION) {
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedQueue.linkLast(node);
+                if (node == candidate) {
+                    candidate = null;
+                }
+                if (protectedQueue.size > maxProtected) {
+                    LinkedNode<K, V> demoted = protectedQueue.head;
+                    protectedQueue.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    probation.linkLast(demoted);
+                }
+            } else {
+                queueOf(node).moveToLast(node);
+            }
+        }
+
+        public void onMiss(int hash) {
+            sketch.increment(hash);
+        }
+
+        public void onRemove(LinkedNode<K, V> node) {
+            queueOf(node).unlink(node);
+            if (node == candidate) {
+                candidate = null;
+            }
+        }
+
+        public void onReplace(LinkedNode<K, V> node, LinkedNode<K, V> replacement) {
+            queueOf(node).replace(node, replacement);
+            if (node == candidate) {
+                candidate = replacement;
+            }
+        }
+
+        public LinkedNode<K, V> victim() {
+            LinkedNode<K, V> victim = probation.head != null ? probation.head
+                    : protectedQueue.head != null ? protectedQueue.head : window.head;
+            if (candidate == null || candidate == victim) {
+                return victim;
+            }
+            return sketch.frequency(candidate.hash) > sketch.frequency(victim.hash) ? victim : candidate;
+        }
+
+        public void clear() {
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            candidate = null;
+        }
+    }
+
+    /**
+     * Class FrequencySketch
+     *
+     * A count-min sketch of 4-bit counters estimating how often each hash was seen
+     * recently. 16 counters are packed per long, one long per slot, about one slot
+     * per cache entry. A hash increments one counter in each of 4 slots, and its
+     * estimate is the smallest of them. After 10 increments per slot, every counter
+     * is halved, so old popularity fades.
+     */
+
+    final class FrequencySketch {
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int size;
+
+        FrequencySketch(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 30)) - 1) << 1;
+            table = new long[slots];
+            tableMask = slots - 1;
+            sampleSize = (int) Math.min(10L * slots, Integer.MAX_VALUE);
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x31848bab;
+            return h ^ (h >>> 14);
+        }
+
+        private int indexOf(int h, int i) {
+            long x = (h + SEEDS[i]) * SEEDS[i];
+            x += x >>> 32;
+            return (int) x & tableMask;
+        }
+
+        void increment(int hash) {
+            int h = spread(hash);
+            int start = (h & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(h, i);
+                int offset = (start + i) << 2;
+                if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size == sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int h = spread(hash);
+            int start = (h & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int offset = (start + i) << 2;
+                frequency = Math.min(frequency, (int) ((table[indexOf(h, i)] >>> offset) & 0xfL));
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; i++) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size - (odd >>> 2)) >>> 1;
+        }
+    }
+
+} /* end interface CachePolicy */
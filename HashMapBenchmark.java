@@ -0,0 +1,2247 @@
+/**********************************************************
+ *
+ * Benchmark driver for the hash map implementations in this project.
+ *
+ * Like Main, this is a plain driver: each benchmark case is a static method that
+ * builds its own data, runs a few warm-up rounds so the JIT has compiled the hot
+ * paths, then prints wall time and, where the JVM supports it, the bytes allocated
+ * by the benchmark thread.
+ *
+ * Usage:
+ *     java HashMapBenchmark                 - runs every case with default sizes
+ *     java HashMapBenchmark <case> [n]      - runs one case, optionally with n keys
+ *
+ * Cases:
+ *     grow     - inserts n Integer keys into an empty map, so every resize from the
+ *                initial bucket count upward is exercised (default n = 10,000,000)
+ *     writes   - runs each mutating method over n keys that count their hashCode()
+ *                and equals() calls, and reports calls and time per operation,
+ *                including frequency counting with get/put against merge()
+ *                (default n = 1,000,000)
+ *     expensive - grows a map and looks keys up (hits and misses) with composite
+ *                keys whose hashCode() and equals() walk long strings
+ *                (default n = 1,000,000)
+ *     collisions - collision attack: inserts "Key_"-prefixed strings that all have
+ *                the same hashCode(), verifies every lookup, and reports lookup time
+ *                as the number of colliding keys grows (default n = 65,536)
+ *     concurrent - threads run a mix of 90% get / 10% put over n shared keys;
+ *                reports total throughput for 1, 2, 4, ... threads, for
+ *                myConcurrentHashMap, a myHashMap behind one lock, and
+ *                java.util.concurrent.ConcurrentHashMap (default n = 1,000,000)
+ *     primitive - HashingProblems' getAverage and twoSums on an int[] of n random
+ *                values, boxed HashMap versions against the IntIntMap overloads, plus
+ *                HashSet<Integer> against IntHashSet (default n = 10,000,000)
+ *     parallel - full scans of a map of n Integer pairs (containsValue of an absent
+ *                value, reduceValues, forEach, and a values() stream sum),
+ *                sequential against split over the common ForkJoinPool
+ *                (default n = 5,000,000)
+ *     valueindex - containsValue() and put / remove cost on a map of n Integer pairs,
+ *                without and with the value index, plus the index's memory estimate
+ *                (default n = 1,000,000)
+ *     offheap  - n Long pairs in myHashMap against myOffHeapHashMap: put, get hit
+ *                and miss, then a full GC with the map live, heap used after it, and
+ *                the off-heap bytes (default n = 2,000,000)
+ *     snapshot - restart cost for n Long pairs: rebuilding with put() from an empty
+ *                map, against writeSnapshot() then opening the file as a
+ *                myHashMapSnapshot (plus lookups) or loading it with loadSnapshot()
+ *                (default n = 5,000,000)
+ *     wal      - put cost of n Long pairs without a log, and with a myHashMapLog
+ *                attached at several fsync batch sizes, then recover() and compact()
+ *                of the log (default n = 1,000,000)
+ *     cache    - myCacheMap under Zipfian traces of n requests over 1,000,000 keys:
+ *                hit ratio and time per request (get, then put on a miss) of the
+ *                LRU and W-TinyLFU policies, for several capacities and skews
+ *                (default n = 2,000,000)
+ *     ttl      - n short-lived sessions on a simulated clock (one put of a new key
+ *                and one get of a live key per microsecond, 200 ms time to live):
+ *                myExpiringHashMap against a myHashMap swept every 50 ms by walking
+ *                entrySet() and calling remove(K), plus the map on the real clock
+ *                (default n = 5,000,000)
+ *     metrics  - put, get hit / miss and remove over n Integer keys with metrics
+ *                disabled, enabled with one operation in 1024 (the default) or in
+ *                16 timed, and with every operation timed, then the cost of a
+ *                snapshot with its bucket scan; lookups are repeated to at least 10M
+ *                (default n = 100,000)
+ *     shrink   - a purge of 90% of n Integer pairs: remove() time with the automatic
+ *                shrink, the bucket count before and after, and iterating what is
+ *                left, against java.util.HashMap (which keeps its table); then
+ *                trimToSize(), and refilling n pairs after clear() against
+ *                clear(n) (default n = 1,000,000)
+ *     batch    - n Integer keys in batches of 10,000: put, get and remove one call
+ *                at a time against putAll(K[], V[]) / putAll(Map), getAll() and
+ *                removeAll(), for an ingest into an empty map and for lookups in
+ *                a map holding all n keys (default n = 1,000,000)
+ *     freeze   - a map of n Integer pairs against its freeze() copy: time to
+ *                freeze, heap used by each (the keys and values are shared), and
+ *                get hit / miss; lookups are repeated to at least 10M
+ *                (default n = 1,000,000)
+ *     cow      - n Integer pairs in myHashMap against myPersistentHashMap: put and
+ *                get hit, the cost of snapshot(), then a writer thread replacing the
+ *                pairs one put / remove at a time while the main thread iterates
+ *                snapshots, each checked to hold exactly Size() entries
+ *                (default n = 1,000,000)
+ *     open     - myOpenHashMap with LINEAR and ROBIN_HOOD probing, one table of
+ *                n slots (rounded down to a power of two) filled to load factors
+ *                0.5 .. 0.95 with random Integer keys: average and longest probe
+ *                length (averageProbeLength(), maxProbeLength()), then get hit and
+ *                get miss time (default n = 1,048,576)
+ *     suite    - comparison report of myHashMap against java.util.HashMap: get hit,
+ *                get miss, put with growth, remove, replace, iteration and
+ *                containsValue, for map sizes 1K .. n, Integer / short String / long
+ *                String keys, and load factors 0.5 / 0.75 / 0.9 (default n =
+ *                1,000,000; the full 50M run needs a large heap, e.g.
+ *                java -Xmx24g HashMapBenchmark suite 50000000). Not part of "all".
+ *
+ *********************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public class HashMapBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        String which = args.length > 0 ? args[0] : "all";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : -1;
+
+        if (which.equals("all") || which.equals("grow")) {
+            grow(n > 0 ? n : 10_000_000);
+        }
+        if (which.equals("all") || which.equals("writes")) {
+            writes(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("expensive")) {
+            expensive(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("collisions")) {
+            collisions(n > 0 ? n : 65_536);
+        }
+        if (which.equals("all") || which.equals("concurrent")) {
+            concurrent(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("primitive")) {
+            primitive(n > 0 ? n : 10_000_000);
+        }
+        if (which.equals("all") || which.equals("parallel")) {
+            parallel(n > 0 ? n : 5_000_000);
+        }
+        if (which.equals("all") || which.equals("valueindex")) {
+            valueIndex(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("offheap")) {
+            offHeap(n > 0 ? n : 2_000_000);
+        }
+        if (which.equals("all") || which.equals("snapshot")) {
+            snapshot(n > 0 ? n : 5_000_000);
+        }
+        if (which.equals("all") || which.equals("wal")) {
+            wal(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("cache")) {
+            cache(n > 0 ? n : 2_000_000);
+        }
+        if (which.equals("all") || which.equals("ttl")) {
+            ttl(n > 0 ? n : 5_000_000);
+        }
+        if (which.equals("all") || which.equals("metrics")) {
+            metrics(n > 0 ? n : 100_000);
+        }
+        if (which.equals("all") || which.equals("shrink")) {
+            shrink(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("batch")) {
+            batch(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("freeze")) {
+            freeze(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("cow")) {
+            copyOnWrite(n > 0 ? n : 1_000_000);
+        }
+        if (which.equals("all") || which.equals("open")) {
+            openAddressing(n > 0 ? n : 1 << 20);
+        }
+        if (which.equals("suite")) {
+            suite(n > 0 ? n : 1_000_000);
+        }
+    }
+
+    /*******************************************************************
+     *
+     *                     Growing a map from empty
+     *
+     ******************************************************************/
+
+    static void grow(int n) {
+        System.out.println("grow: inserting " + n + " Integer keys into an empty map");
+
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            myHashMap<Integer, Integer> mine = new myHashMap<>();
+            for (int i = 0; i < n; i++) {
+                mine.put(keys[i], keys[i]);
+            }
+            if (report) {
+                print("myHashMap", start, bytes, n);
+            }
+            mine = null;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            myHashMap<Integer, Integer> presized = new myHashMap<>(n, 0.75f);
+            for (int i = 0; i < n; i++) {
+                presized.put(keys[i], keys[i]);
+            }
+            if (report) {
+                print("myHashMap(n, 0.75) pre-sized", start, bytes, n);
+            }
+            presized = null;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            HashMap<Integer, Integer> java = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                java.put(keys[i], keys[i]);
+            }
+            if (report) {
+                print("java.util.HashMap", start, bytes, n);
+            }
+            java = null;
+        }
+    }
+
+    /*******************************************************************
+     *
+     *          hashCode() / equals() calls per mutating operation
+     *
+     ******************************************************************/
+
+    static void writes(int n) {
+        System.out.println("writes: " + n + " keys, hashCode() and equals() calls per operation");
+
+        CountingKey[] keys = new CountingKey[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = new CountingKey(i);
+        }
+        Integer one = 1;
+        Integer two = 2;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            myHashMap<CountingKey, Integer> map = new myHashMap<>(n, 0.75f);
+
+            CountingKey.reset();
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], one);
+            }
+            if (report) {
+                printCalls("put (insert)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], two);
+            }
+            if (report) {
+                printCalls("put (update)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.putIfAbsent(keys[i], one);
+            }
+            if (report) {
+                printCalls("putIfAbsent (present)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.replace(keys[i], two, one);
+            }
+            if (report) {
+                printCalls("replace(K,V,V)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.replace(keys[i], two);
+            }
+            if (report) {
+                printCalls("replace(K,V)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.remove(keys[i], two);
+            }
+            if (report) {
+                printCalls("remove(K,V)", start, n);
+            }
+
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.putIfAbsent(keys[i], one);
+            }
+            if (report) {
+                printCalls("putIfAbsent (absent)", start, n);
+            }
+
+            // Frequency counting, the old way and with merge()
+            map.clear();
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < n; i++) {
+                    if (map.containsKey(keys[i])) {
+                        map.put(keys[i], map.get(keys[i]) + 1);
+                    } else {
+                        map.put(keys[i], 1);
+                    }
+                }
+            }
+            if (report) {
+                printCalls("count (containsKey/get/put)", start, 2L * n);
+            }
+
+            map.clear();
+            CountingKey.reset();
+            start = System.nanoTime();
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < n; i++) {
+                    map.merge(keys[i], one, Integer::sum);
+                }
+            }
+            if (report) {
+                printCalls("count (merge)", start, 2L * n);
+            }
+        }
+    }
+
+    /**
+     * Key that counts how often the map calls its hashCode() and equals(). Keys are
+     * compared by value, so a lookup with an equal but distinct key instance would
+     * still be counted correctly.
+     */
+
+    static final class CountingKey {
+        static long hashCodeCalls;
+        static long equalsCalls;
+
+        final int id;
+
+        CountingKey(int id) {
+            this.id = id;
+        }
+
+        static void reset() {
+            hashCodeCalls = 0;
+            equalsCalls = 0;
+        }
+
+        @Override
+        public int hashCode() {
+            hashCodeCalls++;
+            return id * 31;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            equalsCalls++;
+            return o instanceof CountingKey && ((CountingKey) o).id == id;
+        }
+    }
+
+    /*******************************************************************
+     *
+     *          Keys with expensive hashCode() and equals()
+     *
+     ******************************************************************/
+
+    static void expensive(int n) {
+        System.out.println("expensive: " + n + " composite keys with long string components");
+
+        String prefix = "tenant/region-eu-west/cluster-0042/namespace-reporting/".repeat(4);
+        CompositeKey[] keys = new CompositeKey[n];
+        CompositeKey[] missing = new CompositeKey[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = new CompositeKey(prefix, "object-" + i, i);
+            missing[i] = new CompositeKey(prefix, "object-" + i, -i - 1);
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            myHashMap<CompositeKey, Integer> map = new myHashMap<>();
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], i);
+            }
+            if (report) {
+                print("put (grow from empty)", start, bytes, n);
+            }
+
+            long sum = 0;
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sum += map.get(keys[i]);
+            }
+            if (report) {
+                print("get (hit)", start, bytes, n);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                if (map.get(missing[i]) != null) {
+                    sum++;
+                }
+            }
+            if (report) {
+                print("get (miss)", start, bytes, n);
+            }
+            if (sum == 42) {
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * Key made of two strings and an id. hashCode() is recomputed on every call (it
+     * is not cached like String's) and equals() compares the long strings first,
+     * like many generated composite key classes do.
+     */
+
+    static final class CompositeKey {
+        final String scope;
+        final String name;
+        final long id;
+
+        CompositeKey(String scope, String name, long id) {
+            this.scope = scope;
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 0;
+            for (int i = 0; i < scope.length(); i++) {
+                h = 31 * h + scope.charAt(i);
+            }
+            for (int i = 0; i < name.length(); i++) {
+                h = 31 * h + name.charAt(i);
+            }
+            return 31 * h + Long.hashCode(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CompositeKey)) {
+                return false;
+            }
+            CompositeKey other = (CompositeKey) o;
+            return scope.equals(other.scope) && name.equals(other.name) && id == other.id;
+        }
+    }
+
+    /*******************************************************************
+     *
+     *            Collision attack with equal-hash String keys
+     *
+     ******************************************************************/
+
+    static void collisions(int n) {
+        System.out.println("collisions: up to " + n + " \"Key_\" strings sharing one hashCode()");
+
+        for (int count = 16; count <= n; count *= 4) {
+            String[] keys = collidingKeys(count);
+            long lookups = 0;
+            long start = 0;
+            boolean failed = false;
+
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                myHashMap<String, Integer> map = new myHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    map.put(keys[i], i);
+                }
+
+                lookups = 0;
+                start = System.nanoTime();
+                for (int pass = 0; lookups < 1_000_000; pass++) {
+                    for (int i = 0; i < count; i++) {
+                        Integer value = map.get(keys[i]);
+                        if (value == null || value != i) {
+                            failed = true;
+                        }
+                    }
+                    lookups += count;
+                }
+
+                for (int i = 0; i < count; i += 2) {
+                    if (map.remove(keys[i]) == null) {
+                        failed = true;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (map.containsKey(keys[i]) != (i % 2 == 1)) {
+                        failed = true;
+                    }
+                }
+            }
+
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("  %,8d colliding keys %8.1f ns/get %s", count,
+                    (double) nanos / lookups, failed ? " -- FAILED ***" : ""));
+        }
+    }
+
+    /**
+     * Returns 'count' distinct strings "Key_" + s, where each s is built out of the
+     * blocks "Aa" and "BB". Those two blocks have the same String hashCode(), so
+     * every returned key has the same hashCode(). 'count' must be a power of two.
+     */
+
+    static String[] collidingKeys(int count) {
+        int blocks = Integer.numberOfTrailingZeros(count);
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder("Key_");
+            for (int b = 0; b < blocks; b++) {
+                sb.append(((i >>> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = sb.toString();
+        }
+        return keys;
+    }
+
+    /*******************************************************************
+     *
+     *              Multi-threaded read-mostly throughput
+     *
+     ******************************************************************/
+
+    private static final int CONCURRENT_OPS_PER_THREAD = 2_000_000;
+
+    static void concurrent(int n) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int maxThreads = Math.max(4, cpus);
+        System.out.println("concurrent: " + n + " Integer keys, 90% get / 10% put, "
+                + CONCURRENT_OPS_PER_THREAD + " ops per thread, " + cpus + " CPUs");
+
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                boolean report = round == WARMUP_ROUNDS;
+
+                myConcurrentHashMap<Integer, Integer> mine = new myConcurrentHashMap<>();
+                double opsPerSec = throughput(threads, keys, mine::get, mine::put);
+                if (report) {
+                    printThroughput("myConcurrentHashMap", threads, opsPerSec);
+                }
+
+                myHashMap<Integer, Integer> locked = new myHashMap<>();
+                opsPerSec = throughput(threads, keys,
+                        k -> {
+                            synchronized (locked) {
+                                return locked.get(k);
+                            }
+                        },
+                        (k, v) -> {
+                            synchronized (locked) {
+                                return locked.put(k, v);
+                            }
+                        });
+                if (report) {
+                    printThroughput("synchronized myHashMap", threads, opsPerSec);
+                }
+
+                ConcurrentHashMap<Integer, Integer> java = new ConcurrentHashMap<>();
+                opsPerSec = throughput(threads, keys, java::get, java::put);
+                if (report) {
+                    printThroughput("java ConcurrentHashMap", threads, opsPerSec);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the map through 'put', then starts 'threads' threads that each run
+     * CONCURRENT_OPS_PER_THREAD random operations on the shared keys. Returns the
+     * total number of operations per second, timed from the moment all threads are
+     * released until the last one finishes. Only every other key is filled in up
+     * front, so the puts of the timed phase keep inserting, and lookups race with the
+     * resizes those inserts cause.
+     */
+
+    static double throughput(int threads, Integer[] keys, Function<Integer, Integer> get,
+                             BiFunction<Integer, Integer, Integer> put) {
+        for (int i = 0; i < keys.length; i += 2) {
+            put.apply(keys[i], keys[i]);
+        }
+
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] sink = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long found = 0;
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int op = 0; op < CONCURRENT_OPS_PER_THREAD; op++) {
+                    Integer key = keys[random.nextInt(keys.length)];
+                    if (random.nextInt(10) == 0) {
+                        put.apply(key, key);
+                    } else if (get.apply(key) != null) {
+                        found++;
+                    }
+                }
+                sink[id] = found;
+            });
+            workers[t].start();
+        }
+
+        try {
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long nanos = System.nanoTime() - start;
+            return (double) threads * CONCURRENT_OPS_PER_THREAD / (nanos / 1e9);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    static void printThroughput(String name, int threads, double opsPerSec) {
+        System.out.println(String.format("  %-28s %3d threads %10.2f Mops/s", name, threads, opsPerSec / 1e6));
+    }
+
+    /*******************************************************************
+     *
+     *          Boxed HashMap against primitive IntIntMap / IntHashSet
+     *
+     ******************************************************************/
+
+    static void primitive(int n) {
+        System.out.println("primitive: HashingProblems on " + n + " random ints in [0, " + n + ")");
+
+        Random random = new Random(42);
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt(n);
+        }
+        HashingProblems hp = new HashingProblems();
+        int k = 7;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            HashMap<Integer, Integer> boxed = new HashMap<>();
+            for (int i = 0; i < n; i += 2) {
+                boxed.put(array[i], i);
+            }
+            if (report) {
+                print("HashMap fill (n/2 puts)", start, bytes, n / 2);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            IntIntMap primitive = new IntIntMap();
+            for (int i = 0; i < n; i += 2) {
+                primitive.put(array[i], i);
+            }
+            if (report) {
+                print("IntIntMap fill (n/2 puts)", start, bytes, n / 2);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            double boxedAverage = hp.getAverage(boxed, array);
+            if (report) {
+                print("getAverage(HashMap)", start, bytes, n);
+            }
+            boxed = null;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            double primitiveAverage = hp.getAverage(primitive, array);
+            if (report) {
+                print("getAverage(IntIntMap)", start, bytes, n);
+            }
+            primitive = null;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            int boxedPairs = hp.twoSums(array, k);
+            if (report) {
+                print("twoSums (HashMap)", start, bytes, n);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            int primitivePairs = hp.twoSums(array, k, new IntIntMap(n));
+            if (report) {
+                print("twoSums (IntIntMap)", start, bytes, n);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            HashSet<Integer> boxedSet = new HashSet<>();
+            for (int value : array) {
+                boxedSet.add(value);
+            }
+            int boxedDistinct = boxedSet.size();
+            if (report) {
+                print("distinct (HashSet<Integer>)", start, bytes, n);
+            }
+            boxedSet = null;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            IntHashSet primitiveSet = new IntHashSet();
+            for (int value : array) {
+                primitiveSet.add(value);
+            }
+            int primitiveDistinct = primitiveSet.Size();
+            if (report) {
+                print("distinct (IntHashSet)", start, bytes, n);
+            }
+            primitiveSet = null;
+
+            if (boxedAverage != primitiveAverage || boxedPairs != primitivePairs
+                    || boxedDistinct != primitiveDistinct) {
+                System.out.println("  -- FAILED *** boxed and primitive results differ");
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *          Parallel bulk operations against sequential scans
+     *
+     ******************************************************************/
+
+    static void parallel(int n) {
+        System.out.println("parallel: scans of " + n + " Integer pairs, common pool parallelism "
+                + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+
+        myHashMap<Integer, Integer> map = new myHashMap<>(n, 0.75f);
+        for (int i = 0; i < n; i++) {
+            map.put(i, i);
+        }
+        Integer absent = -1;
+        java.util.concurrent.atomic.LongAdder counter = new java.util.concurrent.atomic.LongAdder();
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (long threshold : new long[] { Long.MAX_VALUE, 1 }) {
+                String mode = threshold == 1 ? "parallel" : "sequential";
+
+                long start = System.nanoTime();
+                boolean found = map.containsValue(threshold, absent);
+                if (report) {
+                    print("containsValue " + mode, start, -1, n);
+                }
+
+                start = System.nanoTime();
+                Integer max = map.reduceValues(threshold, Math::max);
+                if (report) {
+                    print("reduceValues " + mode, start, -1, n);
+                }
+
+                start = System.nanoTime();
+                map.forEach(threshold, (k, v) -> {
+                    if ((v & 1023) == 0) {
+                        counter.increment();
+                    }
+                });
+                if (report) {
+                    print("forEach " + mode, start, -1, n);
+                }
+
+                start = System.nanoTime();
+                long sum = (threshold == 1 ? map.values().parallelStream() : map.values().stream())
+                        .mapToLong(Integer::longValue).sum();
+                if (report) {
+                    print("values() stream sum " + mode, start, -1, n);
+                }
+
+                if (found || max != n - 1 || sum != (long) n * (n - 1) / 2) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *                containsValue() with the value index
+     *
+     ******************************************************************/
+
+    static void valueIndex(int n) {
+        System.out.println("valueindex: " + n + " Integer pairs, containsValue and writes without / with the index");
+
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        int lookups = 200;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (boolean indexed : new boolean[] { false, true }) {
+                String mode = indexed ? " (indexed)" : "";
+                myHashMap<Integer, Integer> map = new myHashMap<>();
+                if (indexed) {
+                    map.enableValueIndex();
+                }
+
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    map.put(keys[i], keys[n - 1 - i]);
+                }
+                if (report) {
+                    print("put" + mode, start, bytes, n);
+                }
+
+                int found = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    if (map.containsValue(keys[(int) ((long) i * n / lookups)])) {
+                        found++;
+                    }
+                    if (map.containsValue(-i - 1)) {
+                        found++;
+                    }
+                }
+                if (report) {
+                    print("containsValue hit+miss" + mode, start, -1, 2L * lookups);
+                    if (indexed) {
+                        System.out.println(String.format("  %-28s %10.1f MB (%.1f B per pair)", "value index size",
+                                map.valueIndexBytes() / 1e6, (double) map.valueIndexBytes() / n));
+                    }
+                }
+
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    map.remove(keys[i]);
+                }
+                if (report) {
+                    print("remove" + mode, start, bytes, n);
+                }
+                if (found != lookups) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *          Off-heap storage: myHashMap against myOffHeapHashMap
+     *
+     ******************************************************************/
+
+    static void offHeap(int n) {
+        System.out.println("offheap: " + n + " Long pairs, on-heap myHashMap against myOffHeapHashMap");
+
+        Long[] keys = new Long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (long) i * 31;
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (boolean offHeap : new boolean[] { false, true }) {
+                String mode = offHeap ? " (off-heap)" : "";
+                myHashMap<Long, Long> heapMap = null;
+                myOffHeapHashMap<Long, Long> offHeapMap = null;
+                if (offHeap) {
+                    offHeapMap = new myOffHeapHashMap<>(BinaryCodec.LONG, BinaryCodec.LONG);
+                } else {
+                    heapMap = new myHashMap<>();
+                }
+
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    if (offHeap) {
+                        offHeapMap.put(keys[i], keys[n - 1 - i]);
+                    } else {
+                        heapMap.put(keys[i], keys[n - 1 - i]);
+                    }
+                }
+                if (report) {
+                    print("put" + mode, start, bytes, n);
+                }
+
+                long sum = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    Long value = offHeap ? offHeapMap.get(keys[i]) : heapMap.get(keys[i]);
+                    Long miss = offHeap ? offHeapMap.get(keys[i] + 1) : heapMap.get(keys[i] + 1);
+                    sum += value + (miss == null ? 0 : 1);
+                }
+                if (report) {
+                    print("get hit+miss" + mode, start, -1, 2L * n);
+                }
+
+                long gcBefore = gcMillis();
+                start = System.nanoTime();
+                System.gc();
+                long gcNanos = System.nanoTime() - start;
+                Runtime runtime = Runtime.getRuntime();
+                long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+                int size = offHeap ? offHeapMap.Size() : heapMap.Size();
+                if (report) {
+                    System.out.println(String.format("  %-28s %10.1f ms (collector time %d ms)", "full GC" + mode,
+                            gcNanos / 1e6, gcMillis() - gcBefore));
+                    System.out.println(String.format("  %-28s %10.1f MB heap used", "after GC" + mode, heapUsed / 1e6));
+                    if (offHeap) {
+                        System.out.println(String.format("  %-28s %10.1f MB off-heap (%.1f B per pair)", "table",
+                                offHeapMap.offHeapBytes() / 1e6, (double) offHeapMap.offHeapBytes() / n));
+                    }
+                }
+                if (size != n || sum != (long) n * (n - 1) / 2 * 31) {
+                    System.out.println("  -- FAILED ***");
+                }
+                if (offHeap) {
+                    offHeapMap.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the total time spent in garbage collection so far, over all
+     * collectors.
+     */
+
+    static long gcMillis() {
+        long millis = 0;
+        for (java.lang.management.GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(bean.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /*******************************************************************
+     *
+     *          Restarting from a snapshot file
+     *
+     ******************************************************************/
+
+    static void snapshot(int n) {
+        System.out.println("snapshot: " + n + " Long pairs, rebuild with put() against a snapshot file");
+
+        Long[] keys = new Long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (long) i * 31;
+        }
+        int lookups = 1000;
+        Path file;
+        try {
+            file = Files.createTempFile("HashMapBenchmark", ".snapshot");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                boolean report = round == WARMUP_ROUNDS;
+
+                long start = System.nanoTime();
+                myHashMap<Long, Long> map = new myHashMap<>();
+                for (int i = 0; i < n; i++) {
+                    map.put(keys[i], keys[n - 1 - i]);
+                }
+                if (report) {
+                    print("rebuild with put()", start, -1, n);
+                }
+
+                start = System.nanoTime();
+                map.writeSnapshot(file, BinaryCodec.LONG, BinaryCodec.LONG);
+                if (report) {
+                    print("writeSnapshot", start, -1, n);
+                    System.out.println(String.format("  %-28s %10.1f MB", "snapshot file", Files.size(file) / 1e6));
+                }
+                map = null;
+
+                long sum = 0;
+                start = System.nanoTime();
+                try (myHashMapSnapshot<Long, Long> snapshot =
+                        new myHashMapSnapshot<>(file, BinaryCodec.LONG, BinaryCodec.LONG)) {
+                    if (report) {
+                        print("open myHashMapSnapshot", start, -1, 1);
+                    }
+                    start = System.nanoTime();
+                    for (int i = 0; i < lookups; i++) {
+                        sum += snapshot.get(keys[(int) ((long) i * n / lookups)]);
+                    }
+                    if (report) {
+                        print("first " + lookups + " gets", start, -1, lookups);
+                    }
+                }
+
+                start = System.nanoTime();
+                map = myHashMap.loadSnapshot(file, BinaryCodec.LONG, BinaryCodec.LONG);
+                if (report) {
+                    print("loadSnapshot", start, -1, n);
+                }
+                if (map.Size() != n || !keys[n - 1].equals(map.get(keys[0])) || sum <= 0) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // a temp file, left behind
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *                 Write-ahead log of the changes
+     *
+     ******************************************************************/
+
+    private static final int[] WAL_SYNC_BATCHES = { 0, 10_000, 100, 1 };
+    private static final int WAL_MAX_SYNCS = 2_000;
+
+    static void wal(int n) {
+        System.out.println("wal: " + n + " Long puts, without a log and with one per fsync batch size");
+
+        Long[] keys = new Long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (long) i * 31;
+        }
+
+        try {
+            Path file = Files.createTempFile("HashMapBenchmark", ".log");
+            try {
+                for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                    boolean report = round == WARMUP_ROUNDS;
+
+                    myHashMap<Long, Long> full = new myHashMap<>(n, 0.7f);
+                    long start = System.nanoTime();
+                    for (int i = 0; i < n; i++) {
+                        full.put(keys[i], keys[n - 1 - i]);
+                    }
+                    if (report) {
+                        print("put, no log", start, -1, n);
+                    }
+
+                    myHashMap<Long, Long> map;
+
+                    for (int batch : WAL_SYNC_BATCHES) {
+                        // Keep the number of fsyncs bounded, they take milliseconds each
+                        int ops = batch == 0 ? n : (int) Math.min(n, (long) batch * WAL_MAX_SYNCS);
+                        Files.deleteIfExists(file);
+                        map = new myHashMap<>(n, 0.7f);
+                        try (myHashMapLog<Long, Long> log = new myHashMapLog<>(file, BinaryCodec.LONG,
+                                BinaryCodec.LONG, batch)) {
+                            map.attachLog(log);
+                            start = System.nanoTime();
+                            for (int i = 0; i < ops; i++) {
+                                map.put(keys[i], keys[n - 1 - i]);
+                            }
+                            log.sync();
+                            if (report) {
+                                print("put, fsync " + (batch == 0 ? "at end" : "every " + batch), start, -1, ops);
+                            }
+                        }
+                    }
+
+                    // A log of n pairs with every value overwritten once: half dead records
+                    Files.deleteIfExists(file);
+                    try (myHashMapLog<Long, Long> log = new myHashMapLog<>(file, BinaryCodec.LONG, BinaryCodec.LONG,
+                            0)) {
+                        full.attachLog(log);
+                        for (int i = 0; i < n; i++) {
+                            full.put(keys[i], keys[i]);
+                        }
+                    }
+                    start = System.nanoTime();
+                    try (myHashMapLog<Long, Long> log = new myHashMapLog<>(file, BinaryCodec.LONG, BinaryCodec.LONG,
+                            0)) {
+                        map = log.recover();
+                        if (report) {
+                            print("open + recover (" + log.records() + " rec)", start, -1, log.records());
+                        }
+                        long before = log.length();
+                        start = System.nanoTime();
+                        log.compact();
+                        if (report) {
+                            print("compact", start, -1, map.Size());
+                            System.out.println(String.format("  %-28s %10.1f MB -> %.1f MB", "log size", before / 1e6,
+                                    log.length() / 1e6));
+                        }
+                    }
+                    if (map.Size() != n || !keys[1].equals(map.get(keys[1]))) {
+                        System.out.println("  -- FAILED ***");
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*******************************************************************
+     *
+     *               Bounded cache: hit ratio against throughput
+     *
+     ******************************************************************/
+
+    private static final int CACHE_KEYS = 1_000_000;
+    private static final double[] CACHE_SKEWS = { 0.8, 1.0 };
+    private static final int[] CACHE_CAPACITIES = { 1_000, 10_000, 100_000 };
+
+    static void cache(int n) {
+        System.out.println("cache: Zipfian traces of " + n + " requests over " + CACHE_KEYS
+                + " keys, get + put on miss");
+
+        Integer[] keys = new Integer[CACHE_KEYS];
+        for (int i = 0; i < CACHE_KEYS; i++) {
+            keys[i] = i;
+        }
+        shuffle(keys, new Random(7)); // the popular ranks are not neighbouring ints
+
+        for (double skew : CACHE_SKEWS) {
+            Integer[] trace = zipfTrace(keys, n, skew, new Random(42));
+            for (int capacity : CACHE_CAPACITIES) {
+                for (int policy = 0; policy < 2; policy++) {
+                    String name = String.format("s=%.1f cap=%d %s", skew, capacity, policy == 0 ? "LRU" : "W-TinyLFU");
+                    for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                        myCacheMap<Integer, Integer> cache = policy == 0 ? new myCacheMap<>(capacity)
+                                : new myCacheMap<>(capacity, CachePolicy.windowTinyLfu());
+                        long bytes = allocatedBytes();
+                        long start = System.nanoTime();
+                        for (Integer key : trace) {
+                            if (cache.get(key) == null) {
+                                cache.put(key, key);
+                            }
+                        }
+                        if (round == WARMUP_ROUNDS) {
+                            long nanos = System.nanoTime() - start;
+                            System.out.println(String.format("  %-32s hit ratio %5.1f%% %8.1f ns/op %7.1f B/op", name,
+                                    100 * cache.hitRate(), (double) nanos / n,
+                                    (double) (allocatedBytes() - bytes) / n));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns n keys drawn from a Zipf distribution with the given skew: the key of
+     * rank r (from 1) is drawn with probability proportional to 1 / r^skew.
+     */
+
+    static Integer[] zipfTrace(Integer[] keys, int n, double skew, Random random) {
+        double[] cdf = new double[keys.length];
+        double sum = 0;
+        for (int r = 0; r < keys.length; r++) {
+            sum += 1 / Math.pow(r + 1, skew);
+            cdf[r] = sum;
+        }
+        Integer[] trace = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            int r = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = keys[Math.min(r < 0 ? -r - 1 : r, keys.length - 1)];
+        }
+        return trace;
+    }
+
+    /*******************************************************************
+     *
+     *        Expiring sessions: timer wheel against a periodic sweep
+     *
+     ******************************************************************/
+
+    private static final long TTL_TICK_NANOS = 1_000;
+    private static final long TTL_NANOS = 200_000_000;
+    private static final long TTL_SWEEP_NANOS = 50_000_000;
+    private static final int TTL_LOOKBACK = 100_000; // a key put 100 ms ago: still live
+
+    static long ttlClock;
+
+    static void ttl(int n) {
+        System.out.println("ttl: " + n + " sessions, one put + one get per simulated microsecond, "
+                + TTL_NANOS / 1_000_000 + " ms time to live");
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            // Timer wheel, on the simulated clock
+            ttlClock = 0;
+            myExpiringHashMap<Integer, Integer> wheel = new myExpiringHashMap<>(TTL_NANOS, TimeUnit.NANOSECONDS,
+                    () -> ttlClock);
+            int peak = 0;
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                ttlClock += TTL_TICK_NANOS;
+                Integer key = i;
+                wheel.put(key, key);
+                if (i >= TTL_LOOKBACK) {
+                    sink += wheel.get(i - TTL_LOOKBACK);
+                }
+                if ((i & 0xffff) == 0) {
+                    peak = Math.max(peak, wheel.Size());
+                }
+            }
+            if (report) {
+                print("wheel (simulated clock)", start, bytes, n);
+                System.out.println(String.format("  %-28s peak size %,d, expired %,d", "", peak,
+                        wheel.expiredCount()));
+            }
+            wheel = null;
+
+            // External sweeper: the value is the deadline, every 50 ms the whole map
+            // is walked and the expired keys removed one by one
+            ttlClock = 0;
+            myHashMap<Integer, Long> swept = new myHashMap<>(16, 0.7f);
+            List<Integer> expired = new ArrayList<>();
+            long nextSweep = TTL_SWEEP_NANOS;
+            long visited = 0;
+            peak = 0;
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                ttlClock += TTL_TICK_NANOS;
+                Integer key = i;
+                swept.put(key, ttlClock + TTL_NANOS);
+                if (i >= TTL_LOOKBACK) {
+                    Long deadline = swept.get(i - TTL_LOOKBACK);
+                    if (deadline != null && deadline - ttlClock > 0) {
+                        sink += i;
+                    }
+                }
+                if (ttlClock >= nextSweep) {
+                    peak = Math.max(peak, swept.Size());
+                    visited += swept.Size();
+                    for (Map.Entry<Integer, Long> e : swept.entrySet()) {
+                        if (e.getValue() - ttlClock <= 0) {
+                            expired.add(e.getKey());
+                        }
+                    }
+                    for (Integer k : expired) {
+                        swept.remove(k);
+                    }
+                    expired.clear();
+                    nextSweep += TTL_SWEEP_NANOS;
+                }
+            }
+            if (report) {
+                print("sweep every 50 ms", start, bytes, n);
+                System.out.println(String.format("  %-28s peak size %,d, %.1f entries visited per put", "", peak,
+                        (double) visited / n));
+            }
+            swept = null;
+
+            // Timer wheel on System.nanoTime(): as many sessions as the loop can
+            // create in 200 ms are live at once
+            wheel = new myExpiringHashMap<>(TTL_NANOS, TimeUnit.NANOSECONDS);
+            peak = 0;
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                Integer key = i;
+                wheel.put(key, key);
+                Integer value = wheel.get(i >> 1);
+                sink += value == null ? 0 : value;
+                if ((i & 0xffff) == 0) {
+                    peak = Math.max(peak, wheel.Size());
+                }
+            }
+            if (report) {
+                print("wheel (System.nanoTime)", start, bytes, n);
+                System.out.println(String.format("  %-28s peak size %,d, expired %,d", "", peak,
+                        wheel.expiredCount()));
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *              Metrics: overhead when disabled and enabled
+     *
+     ******************************************************************/
+
+    private static final int[] METRICS_SAMPLING = { 0, 1024, 16, 1 }; // 0: disabled
+
+    static void metrics(int n) {
+        System.out.println("metrics: " + n + " Integer keys, without metrics, then with one op in 1024 (the"
+                + " default), one in 16, and every op timed");
+
+        Integer[] keys = new Integer[n];
+        Integer[] absent = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+            absent[i] = -i - 1;
+        }
+        Integer[] lookups = keys.clone();
+        shuffle(lookups, new Random(42));
+        int reps = Math.max(1, 10_000_000 / n); // lookups repeated to at least 10M
+
+        // The lookups of every mode run on this one map, with only its metrics
+        // switched, and before anything else is allocated: a GC moving the nodes
+        // would change the cost of the lookups more than the metrics do
+        myHashMap<Integer, Integer> shared = new myHashMap<>(16, 0.75f);
+        for (int i = 0; i < n; i++) {
+            shared.put(keys[i], keys[i]);
+        }
+        System.gc();
+
+        boolean ok = true;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (int sampling : METRICS_SAMPLING) {
+                String mode = modeName(sampling);
+                myHashMapMetrics metrics = sampling > 0 ? shared.enableMetrics(sampling) : null;
+                if (sampling == 0) {
+                    shared.disableMetrics();
+                }
+
+                long start = System.nanoTime();
+                getAll(shared, lookups, reps);
+                if (report) {
+                    print("get hit" + mode, start, -1, (long) reps * n);
+                }
+
+                start = System.nanoTime();
+                getAll(shared, absent, reps);
+                if (report) {
+                    print("get miss" + mode, start, -1, (long) reps * n);
+                }
+                ok &= metrics == null || metrics.getGets() == 2L * reps * n;
+            }
+        }
+        shared.disableMetrics();
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (int sampling : METRICS_SAMPLING) {
+                String mode = modeName(sampling);
+                myHashMap<Integer, Integer> map = new myHashMap<>(16, 0.75f);
+                if (sampling > 0) {
+                    map.enableMetrics(sampling);
+                }
+
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    map.put(keys[i], keys[i]);
+                }
+                if (report) {
+                    print("put" + mode, start, bytes, n);
+                }
+
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    map.remove(lookups[i]);
+                }
+                if (report) {
+                    print("remove" + mode, start, bytes, n);
+                }
+            }
+        }
+
+        myHashMap<Integer, Integer> full = new myHashMap<>(16, 0.75f);
+        myHashMapMetrics metrics = full.enableMetrics();
+        for (int i = 0; i < n; i++) {
+            full.put(keys[i], keys[i]);
+        }
+        long start = System.nanoTime();
+        myHashMapMetrics.Snapshot snapshot = metrics.snapshot();
+        print("snapshot (" + full.Size() + " pairs)", start, -1, 1);
+        System.out.println(snapshot.toString().replaceAll("(?m)^", "    "));
+        if (!ok) {
+            System.out.println("  -- FAILED ***");
+        }
+    }
+
+    /*
+     * One method for every mode's lookups, so they all run the same compiled loop.
+     */
+    static void getAll(myHashMap<Integer, Integer> map, Integer[] keys, int reps) {
+        for (int r = 0; r < reps; r++) {
+            for (Integer key : keys) {
+                Integer value = map.get(key);
+                sink += value == null ? 0 : value;
+            }
+        }
+    }
+
+    static String modeName(int sampling) {
+        return sampling == 0 ? " (off)" : sampling == 1 ? " (all timed)" : " (1/" + sampling + " timed)";
+    }
+
+    /*******************************************************************
+     *
+     *        Shrinking: memory and iteration after a bulk delete
+     *
+     ******************************************************************/
+
+    static void shrink(int n) {
+        System.out.println("shrink: " + n + " Integer pairs, 90% removed, then refilled");
+
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        Integer[] purge = keys.clone();
+        shuffle(purge, new Random(42));
+        int removed = n / 10 * 9;
+        int left = n - removed;
+        int reps = Math.max(1, 10_000_000 / Math.max(left, 1)); // iterations repeated to at least 10M
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            myHashMap<Integer, Integer> map = new myHashMap<>(16, 0.75f);
+            HashMap<Integer, Integer> jdk = new HashMap<>(16, 0.75f);
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], keys[i]);
+                jdk.put(keys[i], keys[i]);
+            }
+            int peak = map.numBuckets;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < removed; i++) {
+                map.remove(purge[i]);
+            }
+            if (report) {
+                print("purge 90% (myHashMap)", start, -1, removed);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < removed; i++) {
+                jdk.remove(purge[i]);
+            }
+            if (report) {
+                print("purge 90% (java.util)", start, -1, removed);
+            }
+
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer value : map.values()) {
+                    sink += value;
+                }
+            }
+            if (report) {
+                print("iterate the 10% (myHashMap)", start, -1, (long) reps * left);
+            }
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer value : jdk.values()) {
+                    sink += value;
+                }
+            }
+            if (report) {
+                print("iterate the 10% (java.util)", start, -1, (long) reps * left);
+            }
+
+            int afterPurge = map.numBuckets;
+            start = System.nanoTime();
+            map.trimToSize();
+            if (report) {
+                print("trimToSize()", start, -1, 1);
+                System.out.println(String.format("  %-28s %,d at peak, %,d after the purge, %,d trimmed", "buckets",
+                        peak, afterPurge, map.numBuckets));
+            }
+
+            long bytes = allocatedBytes();
+            start = System.nanoTime();
+            map.clear();
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], keys[i]);
+            }
+            if (report) {
+                print("refill after clear()", start, bytes, n);
+            }
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            map.clear(n);
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], keys[i]);
+            }
+            if (report) {
+                print("refill after clear(n)", start, bytes, n);
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *         Batches: putAll / getAll / removeAll against single calls
+     *
+     ******************************************************************/
+
+    private static final int BATCH_SIZE = 10_000;
+
+    static void batch(int n) {
+        System.out.println("batch: " + n + " Integer keys in batches of " + BATCH_SIZE);
+
+        int batches = Math.max(1, n / BATCH_SIZE);
+        Integer[][] keys = new Integer[batches][BATCH_SIZE];
+        Random random = new Random(42);
+        for (int b = 0; b < batches; b++) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                keys[b][i] = random.nextInt();
+            }
+        }
+        List<Map<Integer, Integer>> sources = new ArrayList<>();
+        for (Integer[] batch : keys) {
+            Map<Integer, Integer> source = new HashMap<>();
+            for (Integer key : batch) {
+                source.put(key, key);
+            }
+            sources.add(source);
+        }
+        Integer[] out = new Integer[BATCH_SIZE];
+        long ops = (long) batches * BATCH_SIZE;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            // Every phase starts after a full GC, so that none pays for the
+            // garbage of the one before it
+            myHashMap<Integer, Integer> single = new myHashMap<>(16, 0.75f);
+            System.gc();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                for (Integer key : batch) {
+                    single.put(key, key);
+                }
+            }
+            if (report) {
+                print("put, one at a time", start, bytes, ops);
+            }
+
+            myHashMap<Integer, Integer> batched = new myHashMap<>(16, 0.75f);
+            System.gc();
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                batched.putAll(batch, batch);
+            }
+            if (report) {
+                print("putAll(K[], V[])", start, bytes, ops);
+            }
+
+            myHashMap<Integer, Integer> fromMaps = new myHashMap<>(16, 0.75f);
+            System.gc();
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (Map<Integer, Integer> source : sources) {
+                fromMaps.putAll(source);
+            }
+            if (report) {
+                print("putAll(Map)", start, bytes, ops);
+            }
+            fromMaps = null;
+
+            long found = 0;
+            System.gc();
+            start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                for (Integer key : batch) {
+                    Integer value = single.get(key);
+                    if (value != null) {
+                        found++;
+                    }
+                }
+            }
+            if (report) {
+                print("get, one at a time", start, -1, ops);
+            }
+            long foundBatched = 0;
+            System.gc();
+            start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                foundBatched += batched.getAll(batch, out);
+            }
+            if (report) {
+                print("getAll()", start, -1, ops);
+            }
+
+            start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                for (Integer key : batch) {
+                    single.remove(key);
+                }
+            }
+            if (report) {
+                print("remove, one at a time", start, -1, ops);
+            }
+            System.gc();
+            start = System.nanoTime();
+            for (Integer[] batch : keys) {
+                batched.removeAll(Arrays.asList(batch));
+            }
+            if (report) {
+                print("removeAll()", start, -1, ops);
+                if (found != foundBatched || !single.isEmpty() || !batched.isEmpty()) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Freezing: a perfectly hashed, immutable copy for lookups
+     *
+     ******************************************************************/
+
+    static void freeze(int n) {
+        System.out.println("freeze: " + n + " Integer pairs, myHashMap against myFrozenHashMap");
+
+        Integer[] keys = new Integer[n];
+        Integer[] absent = new Integer[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextInt() & ~1; // even keys are present
+            absent[i] = keys[i] + 1;
+        }
+        Integer[] lookups = keys.clone();
+        shuffle(lookups, random);
+        int reps = Math.max(1, 10_000_000 / n); // lookups repeated to at least 10M
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            System.gc();
+            long base = runtime.totalMemory() - runtime.freeMemory();
+            myHashMap<Integer, Integer> map = new myHashMap<>();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            System.gc();
+            long mapBytes = runtime.totalMemory() - runtime.freeMemory() - base;
+
+            long start = System.nanoTime();
+            myFrozenHashMap<Integer, Integer> frozen = map.freeze();
+            if (report) {
+                print("freeze()", start, -1, map.Size());
+            }
+            System.gc();
+            long frozenBytes = runtime.totalMemory() - runtime.freeMemory() - base - mapBytes;
+            if (report) {
+                System.out.println(String.format("  %-28s %10.1f MB heap %8.1f B/pair", "myHashMap",
+                        mapBytes / 1e6, (double) mapBytes / map.Size()));
+                System.out.println(String.format("  %-28s %10.1f MB heap %8.1f B/pair", "myFrozenHashMap",
+                        frozenBytes / 1e6, (double) frozenBytes / frozen.Size()));
+            }
+
+            long hits = 0;
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer key : lookups) {
+                    hits += map.get(key) != null ? 1 : 0;
+                }
+            }
+            if (report) {
+                print("get hit (myHashMap)", start, -1, (long) reps * n);
+            }
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer key : lookups) {
+                    hits += frozen.get(key) != null ? 1 : 0;
+                }
+            }
+            if (report) {
+                print("get hit (frozen)", start, -1, (long) reps * n);
+            }
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer key : absent) {
+                    hits += map.get(key) != null ? 1 : 0;
+                }
+            }
+            if (report) {
+                print("get miss (myHashMap)", start, -1, (long) reps * n);
+            }
+            start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                for (Integer key : absent) {
+                    hits += frozen.get(key) != null ? 1 : 0;
+                }
+            }
+            if (report) {
+                print("get miss (frozen)", start, -1, (long) reps * n);
+                if (hits != 2L * reps * n || frozen.Size() != map.Size()) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Copy-on-write: consistent snapshots under concurrent writes
+     *
+     ******************************************************************/
+
+    static void copyOnWrite(int n) {
+        System.out.println("cow: " + n + " Integer pairs, myHashMap against myPersistentHashMap");
+
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        Random random = new Random(42);
+        shuffle(keys, random);
+        Integer[] lookups = keys.clone();
+        shuffle(lookups, random);
+        int snapshots = 1_000_000;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+
+            System.gc();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            myHashMap<Integer, Integer> map = new myHashMap<>();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            if (report) {
+                print("put (myHashMap)", start, bytes, n);
+            }
+            System.gc();
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            myPersistentHashMap<Integer, Integer> persistent = new myPersistentHashMap<>();
+            for (Integer key : keys) {
+                persistent.put(key, key);
+            }
+            if (report) {
+                print("put (persistent)", start, bytes, n);
+            }
+
+            long hits = 0;
+            start = System.nanoTime();
+            for (Integer key : lookups) {
+                hits += map.get(key) != null ? 1 : 0;
+            }
+            if (report) {
+                print("get hit (myHashMap)", start, -1, n);
+            }
+            start = System.nanoTime();
+            for (Integer key : lookups) {
+                hits += persistent.get(key) != null ? 1 : 0;
+            }
+            if (report) {
+                print("get hit (persistent)", start, -1, n);
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < snapshots; i++) {
+                sink += persistent.snapshot().Size();
+            }
+            if (report) {
+                print("snapshot()", start, bytes, snapshots);
+            }
+            start = System.nanoTime();
+            for (Map.Entry<Integer, Integer> entry : persistent.snapshot()) {
+                sink += entry.getValue();
+            }
+            if (report) {
+                print("iterate a snapshot", start, -1, n);
+                if (hits != 2L * n || persistent.Size() != n) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+            map = null;
+            persistent = null;
+
+            // Half of the keys are in the map; the writer removes them one by one
+            // while putting the other half, so every version holds n / 2 or n / 2 + 1
+            // pairs. The reader must never see a version in between.
+            int half = n / 2;
+            myPersistentHashMap<Integer, Integer> shared = new myPersistentHashMap<>();
+            for (int i = 0; i < half; i++) {
+                shared.put(keys[i], keys[i]);
+            }
+            System.gc();
+            long[] writerNanos = new long[1];
+            Thread writer = new Thread(() -> {
+                long begin = System.nanoTime();
+                for (int i = 0; i < half; i++) {
+                    shared.put(keys[half + i], keys[half + i]);
+                    shared.remove(keys[i]);
+                }
+                writerNanos[0] = System.nanoTime() - begin;
+            });
+            start = System.nanoTime();
+            writer.start();
+            long iterated = 0;
+            long entries = 0;
+            boolean consistent = true;
+            while (writer.isAlive()) {
+                myPersistentHashMap.Snapshot<Integer, Integer> snapshot = shared.snapshot();
+                int count = 0;
+                for (Map.Entry<Integer, Integer> entry : snapshot) {
+                    count += entry.getKey().equals(entry.getValue()) ? 1 : 0;
+                }
+                consistent &= count == snapshot.Size() && (count == half || count == half + 1);
+                iterated++;
+                entries += count;
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (report) {
+                System.out.println(String.format("  %-28s %10.1f ms %8.1f ns/op", "put + remove (writer)",
+                        writerNanos[0] / 1e6, (double) writerNanos[0] / (2L * half)));
+                print("iterate under writes", start, -1, Math.max(1, entries));
+                System.out.println(String.format("  %-28s %10d snapshots, all consistent: %b", "reader",
+                        iterated, consistent));
+                if (!consistent || shared.Size() != half) {
+                    System.out.println("  -- FAILED ***");
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Open addressing: probe lengths as the table fills
+     *
+     ******************************************************************/
+
+    static void openAddressing(int n) {
+        int capacity = Integer.highestOneBit(Math.max(n, 16));
+        System.out.println("open: myOpenHashMap of " + capacity + " slots at several load factors, "
+                + "LINEAR against ROBIN_HOOD");
+
+        Random random = new Random(42);
+        HashSet<Integer> distinct = new HashSet<>();
+        while (distinct.size() < 2 * capacity) {
+            distinct.add(random.nextInt());
+        }
+        Integer[] all = distinct.toArray(new Integer[0]);
+        shuffle(all, random);
+        Integer[] keys = Arrays.copyOf(all, capacity);
+        Integer[] absent = Arrays.copyOfRange(all, capacity, 2 * capacity);
+        float[] loadFactors = { 0.5f, 0.7f, 0.8f, 0.9f, 0.95f };
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (float loadFactor : loadFactors) {
+                int pairs = (int) (capacity * loadFactor);
+                Integer[] lookups = Arrays.copyOf(keys, pairs);
+                shuffle(lookups, random);
+                for (myOpenHashMap.Probing probing : myOpenHashMap.Probing.values()) {
+                    myOpenHashMap<Integer, Integer> map = new myOpenHashMap<>(probing, pairs, loadFactor);
+                    for (int i = 0; i < pairs; i++) {
+                        map.put(keys[i], keys[i]);
+                    }
+                    String name = String.format("%s, load %.2f", probing, (double) map.Size() / map.capacity());
+
+                    long found = 0;
+                    long start = System.nanoTime();
+                    for (Integer key : lookups) {
+                        found += map.get(key) != null ? 1 : 0;
+                    }
+                    if (report) {
+                        System.out.println(String.format("  %-28s %10.2f avg probes %5d max probes", name,
+                                map.averageProbeLength(), map.maxProbeLength()));
+                        print("  get hit", start, -1, pairs);
+                    }
+                    start = System.nanoTime();
+                    for (int i = 0; i < pairs; i++) {
+                        found += map.get(absent[i]) != null ? 1 : 0;
+                    }
+                    if (report) {
+                        print("  get miss", start, -1, pairs);
+                        if (found != pairs || map.Size() != pairs) {
+                            System.out.println("  -- FAILED ***");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*******************************************************************
+     *
+     *          Comparison suite: myHashMap against java.util.HashMap
+     *
+     ******************************************************************/
+
+    private static final int[] SUITE_SIZES = { 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 50_000_000 };
+    private static final float[] SUITE_LOAD_FACTORS = { 0.5f, 0.75f, 0.9f };
+    private static final int SUITE_MEASURE_ROUNDS = 5;
+    private static final long SUITE_MIN_OPS = 1_000_000;
+
+    static long sink;
+
+    enum KeyKind {
+        INTEGER, SHORT_STRING, LONG_STRING;
+
+        /**
+         * Returns the i-th distinct key of this kind. Integer keys are scattered with
+         * a bijective multiply, so that neither map gets the best case of sequential
+         * keys landing in sequential buckets.
+         */
+        Object key(int i) {
+            switch (this) {
+                case INTEGER:
+                    return i * 0x9E3779B1;
+                case SHORT_STRING:
+                    return "k" + i;
+                default:
+                    return LONG_PREFIX + i;
+            }
+        }
+
+        private static final String LONG_PREFIX = "org.example.reporting/tenant-0042/region-eu-west/object-";
+    }
+
+    /**
+     * The operations of the suite, over either map. Both implementations are called
+     * through this class, so both pay the same virtual call.
+     */
+
+    static abstract class SuiteMap {
+        abstract void put(Object key, Integer value);
+
+        abstract Integer get(Object key);
+
+        abstract Integer remove(Object key);
+
+        abstract Integer replace(Object key, Integer value);
+
+        abstract long sumValues();
+
+        abstract boolean containsValue(Integer value);
+
+        static SuiteMap mine(int initialCapacity, float loadFactor) {
+            myHashMap<Object, Integer> map = new myHashMap<>(initialCapacity, loadFactor);
+            return new SuiteMap() {
+                void put(Object key, Integer value) { map.put(key, value); }
+                Integer get(Object key) { return map.get(key); }
+                Integer remove(Object key) { return map.remove(key); }
+                Integer replace(Object key, Integer value) { return map.replace(key, value); }
+                boolean containsValue(Integer value) { return map.containsValue(value); }
+                long sumValues() {
+                    long sum = 0;
+                    for (Map.Entry<Object, Integer> e : map.entrySet()) {
+                        sum += e.getValue();
+                    }
+                    return sum;
+                }
+            };
+        }
+
+        static SuiteMap java(int initialCapacity, float loadFactor) {
+            HashMap<Object, Integer> map = new HashMap<>(initialCapacity, loadFactor);
+            return new SuiteMap() {
+                void put(Object key, Integer value) { map.put(key, value); }
+                Integer get(Object key) { return map.get(key); }
+                Integer remove(Object key) { return map.remove(key); }
+                Integer replace(Object key, Integer value) { return map.replace(key, value); }
+                boolean containsValue(Integer value) { return map.containsValue(value); }
+                long sumValues() {
+                    long sum = 0;
+                    for (Map.Entry<Object, Integer> e : map.entrySet()) {
+                        sum += e.getValue();
+                    }
+                    return sum;
+                }
+            };
+        }
+    }
+
+    /**
+     * One timed run of an operation over a map of a given size: does its own
+     * untimed setup and returns the nanoseconds spent in the timed part.
+     */
+
+    interface Trial {
+        long run(boolean mine);
+    }
+
+    static void suite(int maxSize) {
+        System.out.println("suite: myHashMap vs java.util.HashMap, sizes up to " + maxSize
+                + ", median of " + SUITE_MEASURE_ROUNDS + " rounds after " + WARMUP_ROUNDS + " warm-up rounds");
+        System.out.println(String.format("  %-14s %-12s %4s %10s %14s %14s %8s", "operation", "keys", "lf", "size",
+                "myHashMap ns", "HashMap ns", "ratio"));
+
+        String[] operations = { "get hit", "get miss", "put (grow)", "remove", "replace", "iterate", "containsValue" };
+        double[] logRatioSum = new double[operations.length];
+        int[] cells = new int[operations.length];
+
+        for (KeyKind kind : KeyKind.values()) {
+            for (float lf : SUITE_LOAD_FACTORS) {
+                for (int size : SUITE_SIZES) {
+                    if (size > maxSize) {
+                        continue;
+                    }
+                    Object[] keys = new Object[size];
+                    Object[] missing = new Object[size];
+                    Integer[] values = new Integer[size];
+                    for (int i = 0; i < size; i++) {
+                        keys[i] = kind.key(i);
+                        missing[i] = kind.key(size + i);
+                        values[i] = i;
+                    }
+                    Object[] shuffled = keys.clone();
+                    shuffle(shuffled, new Random(size));
+
+                    SuiteMap[] filled = { fill(SuiteMap.mine(16, lf), keys, values),
+                            fill(SuiteMap.java(16, lf), keys, values) };
+                    long reps = (SUITE_MIN_OPS + size - 1) / size;
+
+                    for (int op = 0; op < operations.length; op++) {
+                        Trial trial = suiteTrial(operations[op], filled, keys, shuffled, missing, values, lf, reps);
+                        double mineNs = measure(trial, true) / ((double) reps * size);
+                        double javaNs = measure(trial, false) / ((double) reps * size);
+                        logRatioSum[op] += Math.log(mineNs / javaNs);
+                        cells[op]++;
+                        System.out.println(String.format("  %-14s %-12s %4.2f %10s %14.1f %14.1f %7.2fx",
+                                operations[op], kind.name().toLowerCase(), lf, humanSize(size),
+                                mineNs, javaNs, mineNs / javaNs));
+                    }
+                    filled = null;
+                }
+            }
+        }
+
+        System.out.println("  geometric mean of myHashMap / HashMap time (lower is better for myHashMap):");
+        for (int op = 0; op < operations.length; op++) {
+            if (cells[op] > 0) {
+                System.out.println(String.format("    %-14s %7.2fx", operations[op],
+                        Math.exp(logRatioSum[op] / cells[op])));
+            }
+        }
+    }
+
+    /**
+     * Returns the trial for one operation. Operations that read run on the
+     * pre-filled maps; put starts from an empty map each time, and remove works on a
+     * freshly filled map so that every call removes a present key.
+     */
+
+    static Trial suiteTrial(String operation, SuiteMap[] filled, Object[] keys, Object[] shuffled,
+                            Object[] missing, Integer[] values, float lf, long reps) {
+        switch (operation) {
+            case "get hit":
+                return mine -> timeLookups(filled[mine ? 0 : 1], shuffled, reps);
+            case "get miss":
+                return mine -> timeLookups(filled[mine ? 0 : 1], missing, reps);
+            case "put (grow)":
+                return mine -> {
+                    long nanos = 0;
+                    for (long r = 0; r < reps; r++) {
+                        long start = System.nanoTime();
+                        SuiteMap map = fill(mine ? SuiteMap.mine(16, lf) : SuiteMap.java(16, lf), keys, values);
+                        nanos += System.nanoTime() - start;
+                        sink += map.hashCode();
+                    }
+                    return nanos;
+                };
+            case "remove":
+                return mine -> {
+                    long nanos = 0;
+                    for (long r = 0; r < reps; r++) {
+                        SuiteMap map = fill(mine ? SuiteMap.mine(keys.length, lf) : SuiteMap.java(keys.length, lf),
+                                keys, values);
+                        long start = System.nanoTime();
+                        for (Object key : shuffled) {
+                            sink += map.remove(key);
+                        }
+                        nanos += System.nanoTime() - start;
+                    }
+                    return nanos;
+                };
+            case "replace":
+                return mine -> {
+                    SuiteMap map = filled[mine ? 0 : 1];
+                    long start = System.nanoTime();
+                    for (long r = 0; r < reps; r++) {
+                        for (int i = 0; i < shuffled.length; i++) {
+                            sink += map.replace(shuffled[i], values[i]);
+                        }
+                    }
+                    return System.nanoTime() - start;
+                };
+            case "iterate":
+                return mine -> {
+                    SuiteMap map = filled[mine ? 0 : 1];
+                    long start = System.nanoTime();
+                    for (long r = 0; r < reps; r++) {
+                        sink += map.sumValues();
+                    }
+                    return System.nanoTime() - start;
+                };
+            default: // containsValue, for a value that is absent so the whole map is scanned
+                return mine -> {
+                    SuiteMap map = filled[mine ? 0 : 1];
+                    Integer absent = -1;
+                    long start = System.nanoTime();
+                    for (long r = 0; r < reps; r++) {
+                        if (map.containsValue(absent)) {
+                            sink++;
+                        }
+                    }
+                    return System.nanoTime() - start;
+                };
+        }
+    }
+
+    static long timeLookups(SuiteMap map, Object[] keys, long reps) {
+        long start = System.nanoTime();
+        for (long r = 0; r < reps; r++) {
+            for (Object key : keys) {
+                Integer value = map.get(key);
+                if (value != null) {
+                    sink += value;
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static SuiteMap fill(SuiteMap map, Object[] keys, Integer[] values) {
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Runs the trial WARMUP_ROUNDS times untimed, then returns the median of
+     * SUITE_MEASURE_ROUNDS timed runs.
+     */
+
+    static long measure(Trial trial, boolean mine) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            trial.run(mine);
+        }
+        long[] nanos = new long[SUITE_MEASURE_ROUNDS];
+        for (int round = 0; round < SUITE_MEASURE_ROUNDS; round++) {
+            nanos[round] = trial.run(mine);
+        }
+        Arrays.sort(nanos);
+        return nanos[SUITE_MEASURE_ROUNDS / 2];
+    }
+
+    static void shuffle(Object[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    static String humanSize(int size) {
+        return size >= 1_000_000 ? (size / 1_000_000) + "M" : (size / 1_000) + "K";
+    }
+
+    /*******************************************************************
+     *
+     *                            Helpers
+     *
+     ******************************************************************/
+
+    static void print(String name, long startNanos, long startBytes, long ops) {
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = allocatedBytes() - startBytes;
+        String line = String.format("  %-28s %10.1f ms %8.1f ns/op", name, nanos / 1e6, (double) nanos / ops);
+        if (startBytes >= 0) {
+            line += String.format(" %12.1f MB allocated %7.1f B/op", bytes / 1e6, (double) bytes / ops);
+        }
+        System.out.println(line);
+    }
+
+    static void printCalls(String name, long startNanos, long ops) {
+        long nanos = System.nanoTime() - startNanos;
+        System.out.println(String.format("  %-28s %8.1f ns/op %6.2f hashCode/op %6.2f equals/op", name,
+                (double) nanos / ops, (double) CountingKey.hashCodeCalls / ops, (double) CountingKey.equalsCalls / ops));
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or -1 if
+     * the JVM does not expose it.
+     */
+
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+} /* end class HashMapBenchmark */
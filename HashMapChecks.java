@@ -0,0 +1,814 @@
+/**********************************************************
+ *
+ * Correctness checks for the hash map implementations in this project.
+ *
+ * Like Main, this is a plain driver: each check is a static method that builds its
+ * own maps, compares what they do against java.util.HashMap (or against what the
+ * method is documented to do), and prints one line per case. The run ends with the
+ * number of failed cases, and exits with status 1 if there were any.
+ *
+ * Usage:
+ *     java HashMapChecks                    - runs every check
+ *     java HashMapChecks <check>            - runs one check
+ *
+ * Checks:
+ *     treebin  - removing through an iterator of each view on a treeified bucket,
+ *                then setValue() on the entries still to come, on a myHashMap and
+ *                a myCacheMap: every update must be seen by get()
+ *     concurrent - 8 threads on one myConcurrentHashMap that starts small, so its
+ *                resizes run during the test: each thread runs put / putIfAbsent /
+ *                remove / replace on keys only it uses, checking every result
+ *                against its own java.util.HashMap, then all threads increment
+ *                shared counters with replace(K, V, V); the final map must hold
+ *                exactly the merged reference maps and the counted increments;
+ *                also, in one thread, keys that each land in an empty bucket must
+ *                still make the table grow at three quarters full
+ *     parallel - random puts (some of null values) and removes on a myHashMap in
+ *                each mode (MOD and power-of-two buckets, incremental resize, value
+ *                index), with Integer keys and with keys sharing hash codes (tree
+ *                bins); at checkpoints, containsValue, reduceValues and forEach run
+ *                sequentially and in parallel and must agree with a HashMap. Run
+ *                with -Djava.util.concurrent.ForkJoinPool.common.parallelism=4 on a
+ *                machine with few cores, so that the parallel paths really split
+ *     streams  - the same random writes, with stream() and parallelStream() over
+ *                keySet(), values() and entrySet() collected at checkpoints and
+ *                compared with the HashMap; in the incremental modes also while a
+ *                resize is migrating buckets (both bucket lists live)
+ *     metrics  - get() hits and misses, with every operation timed, on a myHashMap
+ *                and on the get() overrides of myCacheMap and myExpiringHashMap
+ *                (where an expired entry is a miss): counts and latency recorded
+ *     open     - random put / putIfAbsent / remove / replace (some with null values)
+ *                on a myOpenHashMap with LINEAR and with ROBIN_HOOD probing, at load
+ *                factors 0.5 and 0.9, with Integer keys and with keys sharing hash
+ *                codes; every result must match a HashMap (and a myHashMap), and the
+ *                probe-length statistics must be consistent with the table
+ *     offheap  - puts and replaces on a myOffHeapHashMap whose key or value the
+ *                codec rejects (too long for utf8(4)) throw and leave the map as
+ *                it was: same size, same keys, same values
+ *
+ *********************************************************/
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class HashMapChecks {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        String which = args.length > 0 ? args[0] : "all";
+
+        if (which.equals("all") || which.equals("treebin")) {
+            treeBin();
+        }
+        if (which.equals("all") || which.equals("concurrent")) {
+            concurrent();
+        }
+        if (which.equals("all") || which.equals("parallel")) {
+            parallel();
+        }
+        if (which.equals("all") || which.equals("streams")) {
+            streams();
+        }
+        if (which.equals("all") || which.equals("metrics")) {
+            metrics();
+        }
+        if (which.equals("all") || which.equals("open")) {
+            open();
+        }
+        if (which.equals("all") || which.equals("offheap")) {
+            offHeap();
+        }
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) FAILED");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Tree bins: iterator removal must not move the other nodes
+     *
+     ******************************************************************/
+
+    /**
+     * A key whose hashCode() is constant, so that every key lands in one bucket.
+     * Its tree orders the keys by identity hash code, so the tree's shape varies.
+     */
+    static class SameHashKey {
+        final int id;
+
+        SameHashKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SameHashKey && ((SameHashKey) o).id == id;
+        }
+    }
+
+    /**
+     * A SameHashKey its tree can order by id.
+     */
+    static final class ComparableSameHashKey extends SameHashKey implements Comparable<ComparableSameHashKey> {
+        ComparableSameHashKey(int id) {
+            super(id);
+        }
+
+        @Override
+        public int compareTo(ComparableSameHashKey o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    static void treeBin() {
+        System.out.println("treebin: iterator remove(), then setValue(), on one treeified bucket");
+
+        int keys = 8; // TREEIFY_THRESHOLD: the bucket is a tree once all are in
+        for (boolean comparable : new boolean[] { false, true }) {
+            String kind = comparable ? "Comparable" : "plain";
+            for (int removed = 1; removed < keys; removed++) {
+                myHashMap<SameHashKey, Integer> map = new myHashMap<>(128, 0.75f);
+                myCacheMap<SameHashKey, Integer> cache = new myCacheMap<>(100);
+                for (int i = 0; i < keys; i++) {
+                    map.put(key(i, comparable), i);
+                    cache.put(key(i, comparable), i);
+                }
+                check("entrySet(), " + kind + ", " + removed + " removed (myHashMap)",
+                        removeThenSet(map, removed, keys));
+                check("entrySet(), " + kind + ", " + removed + " removed (myCacheMap)",
+                        removeThenSet(cache, removed, keys));
+
+                map = new myHashMap<>(128, 0.75f);
+                for (int i = 0; i < keys; i++) {
+                    map.put(key(i, comparable), i);
+                }
+                Iterator<SameHashKey> it = map.keySet().iterator();
+                int seen = 0;
+                while (it.hasNext()) {
+                    it.next();
+                    if (seen++ < removed) {
+                        it.remove();
+                    }
+                }
+                check("keySet(), " + kind + ", " + removed + " removed (myHashMap)",
+                        seen == keys && map.Size() == keys - removed);
+            }
+        }
+    }
+
+    static SameHashKey key(int id, boolean comparable) {
+        return comparable ? new ComparableSameHashKey(id) : new SameHashKey(id);
+    }
+
+    /**
+     * Removes the first 'removed' entries through an entrySet() iterator and sets
+     * the value of every other one to 1000; returns true if the map then holds
+     * exactly those entries, each mapped to 1000.
+     */
+
+    static boolean removeThenSet(myHashMap<SameHashKey, Integer> map, int removed, int keys) {
+        Iterator<Map.Entry<SameHashKey, Integer>> it = map.entrySet().iterator();
+        int seen = 0;
+        while (it.hasNext()) {
+            Map.Entry<SameHashKey, Integer> entry = it.next();
+            if (seen++ < removed) {
+                it.remove();
+            } else {
+                entry.setValue(1000);
+            }
+        }
+        if (seen != keys || map.Size() != keys - removed) {
+            return false;
+        }
+        int updated = 0;
+        for (int i = 0; i < keys; i++) {
+            Integer value = map.get(new SameHashKey(i));
+            if (value != null && value != 1000) {
+                return false;
+            }
+            updated += value != null ? 1 : 0;
+        }
+        return updated == keys - removed;
+    }
+
+    /*******************************************************************
+     *
+     *      Concurrent writes: myConcurrentHashMap against reference maps
+     *
+     ******************************************************************/
+
+    private static final int STRESS_THREADS = 8;
+    private static final int STRESS_KEYS_PER_THREAD = 20_000;
+    private static final int STRESS_OPS_PER_THREAD = 400_000;
+    private static final int COUNTERS = 16;
+    private static final int INCREMENTS_PER_THREAD = 50_000;
+
+    static void concurrent() {
+        System.out.println("concurrent: " + STRESS_THREADS + " threads on one myConcurrentHashMap");
+
+        myConcurrentHashMap<Integer, Integer> map = new myConcurrentHashMap<>(2);
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        Map<Integer, Integer>[] references = new HashMap[STRESS_THREADS];
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // Thread t owns the keys k with k % STRESS_THREADS == t, so the other
+        // threads' writes can't change what its operations must return.
+        runThreads(failure, t -> {
+            Map<Integer, Integer> reference = references[t] = new HashMap<>();
+            Random random = new Random(t);
+            for (int op = 0; op < STRESS_OPS_PER_THREAD; op++) {
+                Integer key = random.nextInt(STRESS_KEYS_PER_THREAD) * STRESS_THREADS + t;
+                Integer value = random.nextInt(8);
+                Object expected;
+                Object actual;
+                switch (random.nextInt(7)) {
+                    case 0:
+                    case 1:
+                        expected = reference.put(key, value);
+                        actual = map.put(key, value);
+                        break;
+                    case 2:
+                        expected = reference.putIfAbsent(key, value);
+                        actual = map.putIfAbsent(key, value);
+                        break;
+                    case 3:
+                        expected = reference.remove(key);
+                        actual = map.remove(key);
+                        break;
+                    case 4:
+                        expected = reference.remove(key, value);
+                        actual = map.remove(key, value);
+                        break;
+                    case 5:
+                        expected = reference.replace(key, value);
+                        actual = map.replace(key, value);
+                        break;
+                    default:
+                        expected = reference.replace(key, value, value + 1);
+                        actual = map.replace(key, value, value + 1);
+                        break;
+                }
+                if (!Objects.equals(expected, actual) || !Objects.equals(reference.get(key), map.get(key))) {
+                    failure.compareAndSet(null, "thread " + t + ", op " + op + ", key " + key);
+                    return;
+                }
+            }
+        });
+        Map<Integer, Integer> merged = new HashMap<>();
+        for (Map<Integer, Integer> reference : references) {
+            if (reference != null) {
+                merged.putAll(reference);
+            }
+        }
+        check("disjoint keys: every result as in HashMap", failure.get() == null);
+        check("disjoint keys: Size() and entries match", map.Size() == merged.size()
+                && map.entrySet().equals(merged.entrySet()));
+
+        // Every thread increments every counter, with compare-and-set retries
+        map.clear();
+        for (int c = 0; c < COUNTERS; c++) {
+            map.put(-1 - c, 0);
+        }
+        runThreads(failure, t -> {
+            Random random = new Random(t);
+            for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                Integer key = -1 - random.nextInt(COUNTERS);
+                Integer old;
+                do {
+                    old = map.get(key);
+                } while (!map.replace(key, old, old + 1));
+            }
+        });
+        long total = 0;
+        for (int c = 0; c < COUNTERS; c++) {
+            total += map.get(-1 - c);
+        }
+        check("shared counters: replace(K, V, V) increments", failure.get() == null
+                && total == (long) STRESS_THREADS * INCREMENTS_PER_THREAD && map.Size() == COUNTERS);
+
+        // Keys 0, 1, 2, ... go to buckets 0, 1, 2, ...: every insert finds its
+        // bucket empty, and must still check whether the table has to grow
+        myConcurrentHashMap<Integer, Integer> spread = new myConcurrentHashMap<>(16);
+        boolean grew = true;
+        for (int i = 0; i < 100_000 && grew; i++) {
+            spread.put(i, i);
+            grew = spread.Size() <= spread.table.length * 3L / 4;
+        }
+        check("empty-bucket inserts: table grows at 0.75 load", grew);
+    }
+
+    /**
+     * Runs the task in STRESS_THREADS threads (passing each its index), released
+     * together, and waits for all of them. An exception in a thread is recorded
+     * in 'failure'.
+     */
+
+    static void runThreads(AtomicReference<String> failure, IntConsumer task) {
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[STRESS_THREADS];
+        for (int t = 0; t < STRESS_THREADS; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    go.await();
+                    task.accept(id);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, "thread " + id + ": " + e);
+                }
+            });
+            threads[t].start();
+        }
+        go.countDown();
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, "interrupted");
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Parallel bulk operations: sequential against fork-join
+     *
+     ******************************************************************/
+
+    private static final int DIFFERENTIAL_KEYS = 20_000;
+    private static final int DIFFERENTIAL_OPS = 100_000;
+    private static final int CHECKPOINT_OPS = 20_000;
+
+    static void parallel() {
+        System.out.println("parallel: containsValue / reduceValues / forEach, sequential and parallel");
+
+        for (String mode : modes()) {
+            for (boolean fewHashes : new boolean[] { false, true }) {
+                String name = mode + (fewHashes ? ", tree bins" : ", Integer keys");
+                myHashMap<Object, Integer> map = newMap(mode);
+                Map<Object, Integer> reference = new HashMap<>();
+                IntFunction<Object> keys = fewHashes ? FewHashKey::new : Integer::valueOf;
+                Random random = new Random(42);
+                boolean ok = true;
+                try {
+                    for (int op = 1; op <= DIFFERENTIAL_OPS && ok; op++) {
+                        randomWrite(map, reference, keys, random);
+                        if (op % CHECKPOINT_OPS == 0) {
+                            ok = bulkAgrees(map, reference);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("  " + e);
+                    ok = false;
+                }
+                check(name, ok);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the map's bulk operations, sequential (threshold
+     * Long.MAX_VALUE) and parallel (threshold 1), give the reference's answers.
+     */
+
+    static boolean bulkAgrees(myHashMap<Object, Integer> map, Map<Object, Integer> reference) {
+        for (Integer value : new Integer[] { null, -1, 0, 3, 7, 99 }) {
+            boolean expected = reference.containsValue(value);
+            if (map.containsValue(value) != expected || map.containsValue(Long.MAX_VALUE, value) != expected
+                    || map.containsValue(1, value) != expected) {
+                return false;
+            }
+        }
+
+        Integer sum = null;
+        for (Integer value : reference.values()) {
+            if (value != null) {
+                sum = sum == null ? value : sum + value;
+            }
+        }
+        if (!Objects.equals(map.reduceValues(Long.MAX_VALUE, Integer::sum), sum)
+                || !Objects.equals(map.reduceValues(1, Integer::sum), sum)) {
+            return false;
+        }
+
+        Map<Object, Integer> sequential = new HashMap<>();
+        map.forEach(Long.MAX_VALUE, sequential::put);
+        Map<Object, Integer> parallel = Collections.synchronizedMap(new HashMap<>());
+        map.forEach(1, parallel::put);
+        return sequential.equals(reference) && parallel.equals(reference);
+    }
+
+    /*******************************************************************
+     *
+     *      Streams: sequential against parallel spliterators
+     *
+     ******************************************************************/
+
+    static void streams() {
+        System.out.println("streams: stream() and parallelStream() over the views");
+
+        for (String mode : modes()) {
+            for (boolean fewHashes : new boolean[] { false, true }) {
+                String name = mode + (fewHashes ? ", tree bins" : ", Integer keys");
+                myHashMap<Object, Integer> map = newMap(mode);
+                Map<Object, Integer> reference = new HashMap<>();
+                IntFunction<Object> keys = fewHashes ? FewHashKey::new : Integer::valueOf;
+                Random random = new Random(42);
+                boolean ok = true;
+                int duringMigration = 0;
+                try {
+                    for (int op = 1; op <= DIFFERENTIAL_OPS && ok; op++) {
+                        randomWrite(map, reference, keys, random);
+                        boolean migrating = map.oldBucket != null;
+                        if (op % CHECKPOINT_OPS == 0 || (migrating && op % 97 == 0)) {
+                            ok = streamsAgree(map, reference);
+                            duringMigration += migrating ? 1 : 0;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("  " + e);
+                    ok = false;
+                }
+                if (mode.endsWith("incremental")) {
+                    name += ", " + duringMigration + " mid-resize";
+                    ok &= duringMigration > 0;
+                }
+                check(name, ok);
+            }
+        }
+    }
+
+    /**
+     * Returns true if collecting each view, sequentially and in parallel, gives
+     * the reference's keys, values and entries, each exactly once.
+     */
+
+    static boolean streamsAgree(myHashMap<Object, Integer> map, Map<Object, Integer> reference) {
+        for (boolean parallel : new boolean[] { false, true }) {
+            Collection<Object> keySet = map.keySet();
+            Collection<Integer> values = map.values();
+            Collection<Map.Entry<Object, Integer>> entrySet = map.entrySet();
+
+            List<Object> keys = stream(keySet, parallel).collect(Collectors.toList());
+            if (keys.size() != reference.size() || !reference.keySet().equals(new HashSet<>(keys))) {
+                return false;
+            }
+
+            Comparator<Integer> order = Comparator.nullsFirst(Comparator.naturalOrder());
+            List<Integer> collected = stream(values, parallel).sorted(order).collect(Collectors.toList());
+            List<Integer> expected = new ArrayList<>(reference.values());
+            expected.sort(order);
+            if (!collected.equals(expected)) {
+                return false;
+            }
+
+            List<Map.Entry<Object, Integer>> entries = stream(entrySet, parallel)
+                    .map(AbstractMap.SimpleEntry::new).collect(Collectors.toList());
+            Map<Object, Integer> copy = new HashMap<>();
+            for (Map.Entry<Object, Integer> entry : entries) {
+                copy.put(entry.getKey(), entry.getValue());
+            }
+            if (entries.size() != reference.size() || !copy.equals(reference)
+                    || stream(entrySet, parallel).count() != reference.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static <T> Stream<T> stream(Collection<T> view, boolean parallel) {
+        return parallel ? view.parallelStream() : view.stream();
+    }
+
+    /*******************************************************************
+     *
+     *      Metrics: the subclasses' get() overrides are counted too
+     *
+     ******************************************************************/
+
+    static void metrics() {
+        System.out.println("metrics: get() hits and misses reported by each map");
+
+        long[] clock = { 0 };
+        myExpiringHashMap<Integer, Integer> expiring = new myExpiringHashMap<>(100, TimeUnit.MILLISECONDS,
+                () -> clock[0]);
+        List<myHashMap<Integer, Integer>> maps = new ArrayList<>();
+        maps.add(new myHashMap<>());
+        maps.add(new myCacheMap<>(100));
+        maps.add(expiring);
+
+        for (myHashMap<Integer, Integer> map : maps) {
+            myHashMapMetrics metrics = map.enableMetrics(1);
+            for (int i = 0; i < 10; i++) {
+                map.put(i, i);
+            }
+            for (int i = 0; i < 15; i++) {
+                map.get(i); // 10 hits, 5 misses
+            }
+            long gets = 15;
+            long misses = 5;
+            if (map == expiring) {
+                clock[0] += TimeUnit.SECONDS.toNanos(1);
+                for (int i = 0; i < 10; i++) {
+                    map.get(i); // expired
+                }
+                gets += 10;
+                misses += 10;
+            }
+            check(map.getClass().getName() + ": gets, misses and latency", metrics.getGets() == gets
+                    && metrics.getMisses() == misses && metrics.getGetMeanNanos() > 0);
+        }
+    }
+
+    /*******************************************************************
+     *
+     *      Open addressing: myOpenHashMap against HashMap
+     *
+     ******************************************************************/
+
+    private static final int OPEN_KEYS = 5_000;
+    private static final int OPEN_OPS = 200_000;
+
+    static void open() {
+        System.out.println("open: myOpenHashMap against HashMap and myHashMap");
+
+        for (myOpenHashMap.Probing probing : myOpenHashMap.Probing.values()) {
+            for (float loadFactor : new float[] { 0.5f, 0.9f }) {
+                for (boolean fewHashes : new boolean[] { false, true }) {
+                    String name = probing + ", load factor " + loadFactor
+                            + (fewHashes ? ", shared hash codes" : ", Integer keys");
+                    boolean ok;
+                    try {
+                        ok = openAgrees(new myOpenHashMap<>(probing, 0, loadFactor),
+                                fewHashes ? FewHashKey::new : Integer::valueOf);
+                    } catch (RuntimeException e) {
+                        System.out.println("  " + e);
+                        ok = false;
+                    }
+                    check(name, ok);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the same random operations to 'open', a myHashMap and a HashMap, and
+     * returns true if every result agrees and the contents and probe statistics
+     * check out at every checkpoint. HashMap differs from myHashMap in three
+     * methods, where a key mapped to null counts as present or as matching a null
+     * value; for those, the HashMap's answer is taken the myHashMap way.
+     */
+
+    static boolean openAgrees(myOpenHashMap<Object, Integer> open, IntFunction<Object> keys) {
+        myHashMap<Object, Integer> chained = new myHashMap<>();
+        Map<Object, Integer> reference = new HashMap<>();
+        Random random = new Random(7);
+        for (int op = 1; op <= OPEN_OPS; op++) {
+            Object key = keys.apply(random.nextInt(OPEN_KEYS));
+            Integer value = random.nextInt(10) == 0 ? null : random.nextInt(8);
+            Integer other = random.nextInt(10) == 0 ? null : random.nextInt(8);
+            Object expected;
+            Object actual;
+            Object mine;
+            switch (random.nextInt(10)) {
+                case 0:
+                case 1:
+                    expected = reference.put(key, value);
+                    actual = open.put(key, value);
+                    mine = chained.put(key, value);
+                    break;
+                case 2:
+                    expected = reference.putIfAbsent(key, value);
+                    actual = open.putIfAbsent(key, value);
+                    mine = chained.putIfAbsent(key, value);
+                    break;
+                case 3:
+                    expected = reference.remove(key);
+                    actual = open.remove(key);
+                    mine = chained.remove(key);
+                    break;
+                case 4:
+                    expected = reference.get(key) != null && reference.remove(key, value);
+                    actual = open.remove(key, value);
+                    mine = chained.remove(key, value);
+                    break;
+                case 5:
+                    expected = reference.replace(key, value);
+                    actual = open.replace(key, value);
+                    mine = chained.replace(key, value);
+                    break;
+                case 6:
+                    expected = reference.get(key) != null && reference.replace(key, other, value);
+                    actual = open.replace(key, other, value);
+                    mine = chained.replace(key, other, value);
+                    break;
+                case 7:
+                    expected = reference.get(key) != null;
+                    actual = open.containsKey(key);
+                    mine = chained.containsKey(key);
+                    break;
+                case 8:
+                    expected = reference.containsValue(value);
+                    actual = open.containsValue(value);
+                    mine = chained.containsValue(value);
+                    break;
+                default:
+                    expected = reference.get(key);
+                    actual = open.get(key);
+                    mine = chained.get(key);
+                    break;
+            }
+            if (!Objects.equals(expected, actual) || !Objects.equals(expected, mine)
+                    || open.Size() != reference.size()) {
+                System.out.println("  op " + op + ": expected " + expected + ", myOpenHashMap " + actual
+                        + ", myHashMap " + mine);
+                return false;
+            }
+            if (op % CHECKPOINT_OPS == 0 && !openConsistent(open, reference)) {
+                return false;
+            }
+        }
+        open.clear();
+        return open.isEmpty() && open.get(keys.apply(0)) == null && open.averageProbeLength() == 0.0;
+    }
+
+    /**
+     * Returns true if the map holds the reference's entries and its probe-length
+     * statistics describe them: one histogram count per entry, the longest probe
+     * as the histogram's length, and an average between 1 and that.
+     */
+
+    static boolean openConsistent(myOpenHashMap<Object, Integer> open, Map<Object, Integer> reference) {
+        if (!open.keySet().equals(reference.keySet()) || !open.entrySet().equals(reference.entrySet())) {
+            return false;
+        }
+        int[] histogram = open.probeLengthHistogram();
+        long entries = 0;
+        long probes = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            entries += histogram[i];
+            probes += (long) histogram[i] * (i + 1);
+        }
+        double average = open.averageProbeLength();
+        return entries == reference.size() && open.maxProbeLength() == histogram.length
+                && (reference.isEmpty() || Math.abs(average - (double) probes / entries) < 1e-9)
+                && open.Size() < open.capacity();
+    }
+
+    /*******************************************************************
+     *
+     *      Off-heap: a write the codec rejects changes nothing
+     *
+     ******************************************************************/
+
+    static void offHeap() {
+        System.out.println("offheap: rejected keys and values leave myOffHeapHashMap unchanged");
+
+        String tooLong = "toolongvalue"; // more than 4 UTF-8 bytes
+        try (myOffHeapHashMap<String, String> map = new myOffHeapHashMap<>(BinaryCodec.utf8(4),
+                BinaryCodec.utf8(4))) {
+            map.put("a", "1");
+            check("put(new key, rejected value)", rejected(() -> map.put("k", tooLong))
+                    && !map.containsKey("k") && map.Size() == 1 && map.remove("k") == null && map.Size() == 1);
+            check("putIfAbsent(new key, rejected value)", rejected(() -> map.putIfAbsent("k", tooLong))
+                    && !map.containsKey("k") && map.Size() == 1);
+            check("put(rejected key, value)", rejected(() -> map.put(tooLong, "1"))
+                    && map.Size() == 1 && "1".equals(map.get("a")));
+            check("put(existing key, rejected value)", rejected(() -> map.put("a", tooLong))
+                    && map.Size() == 1 && "1".equals(map.get("a")));
+            check("replace(K, rejected value)", rejected(() -> map.replace("a", tooLong))
+                    && "1".equals(map.get("a")));
+            check("replace(K, V, rejected value)", rejected(() -> map.replace("a", "1", tooLong))
+                    && "1".equals(map.get("a")));
+            check("remove() after the rejected writes", "1".equals(map.remove("a")) && map.Size() == 0
+                    && map.isEmpty());
+        }
+    }
+
+    /**
+     * Returns true if the write throws IllegalArgumentException.
+     */
+
+    static boolean rejected(Runnable write) {
+        try {
+            write.run();
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * The myHashMap configurations the differential checks run on.
+     */
+
+    static List<String> modes() {
+        List<String> modes = new ArrayList<>();
+        modes.add("MOD buckets");
+        modes.add("MOD buckets, incremental");
+        modes.add("power of two");
+        modes.add("power of two, incremental");
+        modes.add("value index");
+        return modes;
+    }
+
+    static myHashMap<Object, Integer> newMap(String mode) {
+        switch (mode) {
+            case "MOD buckets, incremental":
+                return new myHashMap<>(true);
+            case "power of two":
+                return new myHashMap<>(16, 0.75f);
+            case "power of two, incremental":
+                return new myHashMap<>(16, 0.75f, true);
+            case "value index":
+                myHashMap<Object, Integer> map = new myHashMap<>();
+                map.enableValueIndex();
+                return map;
+            default:
+                return new myHashMap<>();
+        }
+    }
+
+    /**
+     * Applies one random put (one in ten of a null value) or remove to both maps.
+     */
+
+    static void randomWrite(myHashMap<Object, Integer> map, Map<Object, Integer> reference,
+                            IntFunction<Object> keys, Random random) {
+        Object key = keys.apply(random.nextInt(DIFFERENTIAL_KEYS));
+        if (random.nextInt(3) == 0) {
+            map.remove(key);
+            reference.remove(key);
+        } else {
+            Integer value = random.nextInt(10) == 0 ? null : random.nextInt(8);
+            map.put(key, value);
+            reference.put(key, value);
+        }
+    }
+
+    /**
+     * A key that shares its hash code with 15 others, so that the buckets of a
+     * large enough map are treeified.
+     */
+    static final class FewHashKey implements Comparable<FewHashKey> {
+        final int id;
+
+        FewHashKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id >>> 4;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FewHashKey && ((FewHashKey) o).id == id;
+        }
+
+        @Override
+        public int compareTo(FewHashKey o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    /*******************************************************************
+     *
+     *                            Helpers
+     *
+     ******************************************************************/
+
+    static void check(String name, boolean ok) {
+        System.out.println(String.format("  %-56s %s", name, ok ? "ok" : "-- FAILED ***"));
+        if (!ok) {
+            failures++;
+        }
+    }
+
+} /* end class HashMapChecks */
@@ -0,0 +1,66 @@
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class HashNode
+ *
+ * Node object representing a <Key, Value> pair stored in the Hash Map, elements
+ * hashed to the same bucket slot will be chained through a singly linked-list.
+ *
+ * The node also keeps the key's hash (as computed by the map when the pair was
+ * inserted), so a lookup can skip equals() on nodes whose hash differs, and a
+ * resize never needs to call the key's hashCode() again.
+ *
+ * The node is itself the Map.Entry handed out by the map's entrySet() view, so
+ * iterating the entries allocates nothing, and setValue() writes through to the map.
+ */
+
+class HashNode<K, V> implements Map.Entry<K, V> {
+    int hash;
+    K key;
+    V value;
+    HashNode<K, V> next;
+
+    public HashNode() {
+        this.key = key;
+        this.value = value;
+    }
+
+    public HashNode(int hash, K key, V value, HashNode<K, V> next) {
+        this.hash = hash;
+        this.key = key;
+        this.value = value;
+        this.next = next;
+    }
+
+    public final K getKey() {
+        return key;
+    }
+
+    public final V getValue() {
+        return value;
+    }
+
+    public final V setValue(V newValue) {
+        V oldValue = value;
+        value = newValue;
+        return oldValue;
+    }
+
+    public final boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        return o instanceof Map.Entry
+                && Objects.equals(key, ((Map.Entry<?, ?>) o).getKey())
+                && Objects.equals(value, ((Map.Entry<?, ?>) o).getValue());
+    }
+
+    public final int hashCode() {
+        return Objects.hashCode(key) ^ Objects.hashCode(value);
+    }
+
+    public final String toString() {
+        return key + "=" + value;
+    }
+} /* end class HashNode */
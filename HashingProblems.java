@@ -51,7 +51,7 @@ class HashingProblems {
             return 0.0 / 0.0;
         }
 
-        int sum = 0;// variable for sum
+        long sum = 0;// variable for sum (long, so large arrays do not overflow it)
         int count = 0;// variable for count
 
         for (int key : array) {
@@ -69,6 +69,35 @@ class HashingProblems {
         return (double) sum / count;// compute the average
     }
 
+    /*
+     * Method getAverage(IntIntMap, int[])
+     *
+     * Same problem as getAverage above, for a map of primitive ints. Nothing is
+     * boxed, and each array element takes one probe of the map (the containsKey()
+     * call only runs when the value happens to equal the marker used for "absent").
+     * The sum is kept in a long so that large arrays don't overflow it.
+     */
+
+    public double getAverage(IntIntMap map, int[] array) {
+
+        long sum = 0;
+        int count = 0;
+
+        for (int key : array) {
+            int value = map.getOrDefault(key, Integer.MIN_VALUE);
+            if (value != Integer.MIN_VALUE || map.containsKey(key)) {
+                sum += value;
+                count++;
+            }
+        }
+
+        if (count == 0) {// no matching keys (or an empty array)
+            return 0.0 / 0.0;
+        }
+
+        return (double) sum / count;
+    }
+
     /*
      * Method odd()
      *
@@ -176,4 +205,27 @@ class HashingProblems {
         return count; // return the total number of valid pairs with a difference equal to k.
     }
 
+    /*
+     * Method twoSums(int[], int, IntIntMap)
+     *
+     * Same problem as twoSums above, counting the numbers seen so far in an
+     * IntIntMap instead of a HashMap<Integer, Integer>. The caller passes the map so
+     * that it can be pre-sized (or reused between calls); it is cleared first, and
+     * afterwards holds the count of each distinct number. Each element takes one
+     * probe for the lookup of (num - k) and one for bumping its own count.
+     */
+
+    public int twoSums(int[] numbers, int k, IntIntMap counts) {
+
+        counts.clear();
+        int count = 0;
+
+        for (int num : numbers) {
+            count += counts.get(num - k); // absent numbers have a count of 0
+            counts.addTo(num, 1);
+        }
+
+        return count;
+    }
+
 } /* end class HashingProblems */
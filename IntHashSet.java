@@ -0,0 +1,222 @@
+/**
+ *
+ *  This class is a set of primitive ints, the key-only sibling of IntIntMap. Keys are
+ *  stored in a single int[] with linear probing and backward shift deletion, so
+ *  nothing is boxed and no object is allocated per element.
+ *
+ *  The key 0 marks an empty slot, so membership of 0 is kept in a separate flag.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()               - Removes all of the elements from this set.
+ *  boolean  add(int)              - Adds the element, returns true if it was not already present
+ *  boolean  contains(int)         - Returns true if this set contains the element
+ *  boolean  remove(int)           - Removes the element, returns true if it was present
+ *      int  Size()                - returns the number of elements in the set
+ *  boolean  isEmpty()             - returns true if this set contains no elements.
+ *      int  capacity()            - returns the number of slots in the table
+ *
+ ****************************************/
+
+class IntHashSet {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.7f;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private static final int FREE_KEY = 0;
+
+    private final float loadFactor;
+
+    int[] keys;
+    int mask;
+    int size = 0;
+    int threshold;
+    boolean hasFreeKey;
+
+    public IntHashSet() {
+        this(INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntHashSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity - number of elements the set should hold before growing
+     * @param loadFactor      - fraction of the slots that may be used before the
+     *                          table is doubled, must be in (0, 1)
+     */
+    public IntHashSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    public int Size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes all of the elements, the table keeps its current capacity.
+     */
+
+    public void clear() {
+        java.util.Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Method: boolean contains(int)
+     *
+     * Returns true if this set contains the specified element.
+     */
+
+    public boolean contains(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        int slot = IntIntMap.hash(key) & mask;
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return true;
+            }
+            if (k == FREE_KEY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Method: boolean add(int)
+     *
+     * Adds the specified element if it is not already present.
+     *
+     * @return true if the set did not already contain the element
+     */
+
+    public boolean add(int key) {
+        if (key == FREE_KEY) {
+            if (hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = true;
+            size++;
+            return true;
+        }
+        int slot = IntIntMap.hash(key) & mask;
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return false;
+            }
+            if (k == FREE_KEY) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= threshold) {
+            grow();
+            return add(key);
+        }
+        keys[slot] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * Method: boolean remove(int)
+     *
+     * Removes the specified element. The elements following the freed slot are
+     * shifted back, as in IntIntMap.
+     *
+     * @return true if the set contained the element
+     */
+
+    public boolean remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+        int gap = IntIntMap.hash(key) & mask;
+        while (keys[gap] != key) {
+            if (keys[gap] == FREE_KEY) {
+                return false;
+            }
+            gap = (gap + 1) & mask;
+        }
+        int next = (gap + 1) & mask;
+        int k;
+        while ((k = keys[next]) != FREE_KEY) {
+            int home = IntIntMap.hash(k) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = k;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        size--;
+        return true;
+    }
+
+    /**
+     * method: grow()
+     *
+     * Doubles the table and re-inserts every element.
+     */
+
+    private void grow() {
+        if (keys.length >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("IntHashSet is full");
+        }
+        int[] oldKeys = keys;
+        allocate(oldKeys.length << 1);
+        for (int k : oldKeys) {
+            if (k != FREE_KEY) {
+                int slot = IntIntMap.hash(k) & mask;
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = k;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    private static int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(c, 2) - 1);
+        return (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+} /* end class IntHashSet */
@@ -0,0 +1,326 @@
+/**
+ *
+ *  This class is an int -> int map specialized for primitive keys and values. It is
+ *  the open addressing design of myOpenHashMap (linear probing, backward shift
+ *  deletion) without any boxing: keys and values are stored interleaved in a single
+ *  int[], key at slot * 2 and value at slot * 2 + 1, so a probe that finds its key has
+ *  the value in the same cache line. No object is allocated per entry, and a lookup
+ *  allocates nothing at all.
+ *
+ *  The key 0 marks an empty slot, so a mapping for the key 0 is kept in a separate
+ *  field outside the table.
+ *
+ *  Absent keys can't be reported as null, so get() and remove() return 0 for a key
+ *  that is not present, and getOrDefault() / containsKey() are there to tell the
+ *  two cases apart.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()                   - Removes all of the mappings from this map.
+ *  boolean  containsKey(int)          - Returns true if this map contains a mapping for the key.
+ *      int  get(int)                  - Returns the value mapped to the key, or 0
+ *      int  getOrDefault(int, int)    - Returns the value mapped to the key, or the default
+ *      int  put(int, int)             - Associates the value with the key, returns the old value or 0
+ *      int  addTo(int, int)           - Adds to the value of the key (absent counts as 0), returns the sum
+ *      int  remove(int)               - Removes the key, returns its value or 0
+ *      int  Size()                    - returns the number of <k,v> pairs in the map
+ *  boolean  isEmpty()                 - returns true if this map contains no key-value mappings.
+ *      int  capacity()                - returns the number of slots in the table
+ *
+ ****************************************/
+
+class IntIntMap {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.7f;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private static final int FREE_KEY = 0;
+
+    private final float loadFactor;
+
+    int[] slots;
+    int mask;
+    int size = 0;
+    int threshold;
+    boolean hasFreeKey;
+    int freeValue;
+
+    public IntIntMap() {
+        this(INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntIntMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity - number of entries the map should hold before growing
+     * @param loadFactor      - fraction of the slots that may be used before the
+     *                          table is doubled, must be in (0, 1)
+     */
+    public IntIntMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    public int Size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes all of the mappings, the table keeps its current capacity.
+     */
+
+    public void clear() {
+        java.util.Arrays.fill(slots, FREE_KEY);
+        hasFreeKey = false;
+        freeValue = 0;
+        size = 0;
+    }
+
+    /**
+     * method hash()
+     *
+     * Same multiply and shift mix as myOpenHashMap: sequential or strided int keys
+     * would otherwise fill runs of neighbouring slots, which linear probing handles
+     * badly.
+     */
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * method: findSlot(int)
+     *
+     * Probes for a non-zero key, returns the slot it is stored in, else -1.
+     */
+
+    private int findSlot(int key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int k = slots[slot << 1];
+            if (k == key) {
+                return slot;
+            }
+            if (k == FREE_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Method: boolean containsKey(int)
+     *
+     * Returns true if this map contains a mapping for the specified key.
+     */
+
+    public boolean containsKey(int key) {
+        return key == FREE_KEY ? hasFreeKey : findSlot(key) >= 0;
+    }
+
+    /**
+     * method: int get(int)
+     *
+     * Returns the value to which the specified key is mapped, or 0 if this map
+     * contains no mapping for the key.
+     */
+
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * method: int getOrDefault(int, int)
+     *
+     * Returns the value to which the specified key is mapped, or 'defaultValue' if
+     * this map contains no mapping for the key.
+     */
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeValue : defaultValue;
+        }
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : slots[(slot << 1) + 1];
+    }
+
+    /**
+     * method: int put(int, int)
+     *
+     * Associates the specified value with the specified key in this map.
+     *
+     * @return value - if key exists, returns old value before
+     *         replacing with provided value, else 0.
+     */
+
+    public int put(int key, int value) {
+        if (key == FREE_KEY) {
+            int oldValue = freeValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeValue = value;
+            return oldValue;
+        }
+        int slot = insertSlot(key);
+        int oldValue = slots[(slot << 1) + 1];
+        slots[(slot << 1) + 1] = value;
+        return oldValue;
+    }
+
+    /**
+     * method: int addTo(int, int)
+     *
+     * Adds 'increment' to the value of the key, where an absent key counts as 0, so
+     * a counting loop takes one probe per element instead of a get and a put.
+     *
+     * @return the value now mapped to the key
+     */
+
+    public int addTo(int key, int increment) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            return freeValue += increment;
+        }
+        int slot = insertSlot(key);
+        return slots[(slot << 1) + 1] += increment;
+    }
+
+    /**
+     * method: insertSlot(int)
+     *
+     * Returns the slot holding the non-zero key. If the key is absent, it is stored
+     * in the first free slot of its probe sequence with the value 0, growing the
+     * table first if it is at its threshold.
+     */
+
+    private int insertSlot(int key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int k = slots[slot << 1];
+            if (k == key) {
+                return slot;
+            }
+            if (k == FREE_KEY) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= threshold) {
+            grow();
+            return insertSlot(key);
+        }
+        slots[slot << 1] = key;
+        slots[(slot << 1) + 1] = 0;
+        size++;
+        return slot;
+    }
+
+    /**
+     * method: int remove(int)
+     *
+     * Removes the entry for the specified key. The entries following the freed slot
+     * are shifted back, as in myOpenHashMap with LINEAR probing.
+     *
+     * @return value - the value removed, else 0 if not found
+     */
+
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return 0;
+            }
+            int oldValue = freeValue;
+            hasFreeKey = false;
+            freeValue = 0;
+            size--;
+            return oldValue;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return 0;
+        }
+        int oldValue = slots[(slot << 1) + 1];
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        int k;
+        while ((k = slots[next << 1]) != FREE_KEY) {
+            int home = hash(k) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap << 1] = k;
+                slots[(gap << 1) + 1] = slots[(next << 1) + 1];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[gap << 1] = FREE_KEY;
+        slots[(gap << 1) + 1] = 0;
+        size--;
+        return oldValue;
+    }
+
+    /**
+     * method: grow()
+     *
+     * Doubles the table and re-inserts every entry.
+     */
+
+    private void grow() {
+        int capacity = mask + 1;
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("IntIntMap is full");
+        }
+        int[] oldSlots = slots;
+        allocate(capacity << 1);
+        for (int i = 0; i < oldSlots.length; i += 2) {
+            int k = oldSlots[i];
+            if (k != FREE_KEY) {
+                int slot = hash(k) & mask;
+                while (slots[slot << 1] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot << 1] = k;
+                slots[(slot << 1) + 1] = oldSlots[i + 1];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new int[capacity << 1];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    static int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(c, 2) - 1);
+        return (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+} /* end class IntIntMap */
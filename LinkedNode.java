@@ -0,0 +1,25 @@
+/**
+ * Class LinkedNode
+ *
+ * A HashNode that is also linked into a doubly linked list, in an order kept by the
+ * map ('before' / 'after'). myCacheMap uses it to keep its recency lists inside the
+ * entries, so recording an access moves a node without allocating anything. The
+ * 'queue' tag tells a cache policy with several lists which one holds the node.
+ *
+ * myExpiringHashMap links its nodes into the buckets of a TimerWheel instead, and
+ * keeps each node's expiry time in 'deadline'.
+ *
+ * A plain myHashMap never creates LinkedNodes, but TreeNode extends this class so
+ * that a treeified bucket keeps its nodes' list links (as in Java's LinkedHashMap).
+ */
+
+class LinkedNode<K, V> extends HashNode<K, V> {
+    LinkedNode<K, V> before;
+    LinkedNode<K, V> after;
+    byte queue;
+    long deadline;
+
+    public LinkedNode(int hash, K key, V value, HashNode<K, V> next) {
+        super(hash, key, value, next);
+    }
+} /* end class LinkedNode */
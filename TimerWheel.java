@@ -0,0 +1,221 @@
+/**
+ *
+ *  A hierarchical timing wheel: the expiry schedule of a myExpiringHashMap. Every
+ *  node with a deadline sits in one bucket of the wheel, a circular doubly linked
+ *  list threaded through the node's own 'before' / 'after' links (see LinkedNode),
+ *  so scheduling, rescheduling and descheduling a node are O(1) and allocate
+ *  nothing.
+ *
+ *  The wheel has five levels of buckets, from fine to coarse:
+ *
+ *     level 0  - 64 buckets of 2^26 ns (~67 ms), covering ~4.3 s
+ *     level 1  - 64 buckets of 2^32 ns (~4.3 s), covering ~4.6 min
+ *     level 2  - 64 buckets of 2^38 ns (~4.6 min), covering ~4.9 h
+ *     level 3  - 64 buckets of 2^44 ns (~4.9 h), covering ~13 days
+ *     level 4  - 1 bucket for everything further away
+ *
+ *  A node goes to the finest level whose range covers its deadline, in the bucket
+ *  of its deadline's tick. advance() moves the wheel's time forward and visits only
+ *  the buckets whose ticks have passed, on each level whose tick changed: a node
+ *  whose deadline is due is handed to the wheel's expiry action, any other node
+ *  moves down to a finer level. A node moves down at most four times, so the work
+ *  per expiration is O(1) amortized, however many nodes are scheduled.
+ *
+ *  Times are nanoseconds on the map's clock; they must not be negative. A node
+ *  expires at most one level-0 tick after its deadline.
+ *
+ ****************************************/
+
+import java.util.function.Consumer;
+
+final class TimerWheel<K, V> {
+
+    private static final int[] BUCKETS = { 64, 64, 64, 64, 1 };
+    private static final int[] SHIFT = { 26, 32, 38, 44, 50 };
+
+    private final LinkedNode<K, V>[][] wheel;
+    private final LinkedNode<K, V> pending;
+    private final Consumer<LinkedNode<K, V>> expiry;
+    private long time;
+
+    /**
+     * Constructor
+     *
+     * @param expiry - called with each node found due by advance(), already
+     *               descheduled; it is expected to remove the node from its map
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    TimerWheel(Consumer<LinkedNode<K, V>> expiry) {
+        this.expiry = expiry;
+        this.wheel = new LinkedNode[BUCKETS.length][];
+        for (int level = 0; level < BUCKETS.length; level++) {
+            wheel[level] = new LinkedNode[BUCKETS[level]];
+            for (int b = 0; b < BUCKETS[level]; b++) {
+                wheel[level][b] = sentinel();
+            }
+        }
+        this.pending = sentinel();
+    }
+
+    private static <K, V> LinkedNode<K, V> sentinel() {
+        LinkedNode<K, V> sentinel = new LinkedNode<>(0, null, null, null);
+        sentinel.before = sentinel.after = sentinel;
+        return sentinel;
+    }
+
+    long time() {
+        return time;
+    }
+
+    static boolean isScheduled(LinkedNode<?, ?> node) {
+        return node.before != null;
+    }
+
+    /**
+     * method: schedule(LinkedNode)
+     *
+     * Links an unscheduled node into the bucket of its deadline.
+     */
+
+    void schedule(LinkedNode<K, V> node) {
+        LinkedNode<K, V> sentinel = bucketFor(node.deadline);
+        node.after = sentinel;
+        node.before = sentinel.before;
+        sentinel.before.after = node;
+        sentinel.before = node;
+    }
+
+    /**
+     * method: reschedule(LinkedNode)
+     *
+     * Moves a node whose deadline has changed to its new bucket.
+     */
+
+    void reschedule(LinkedNode<K, V> node) {
+        deschedule(node);
+        schedule(node);
+    }
+
+    /**
+     * method: deschedule(LinkedNode)
+     *
+     * Unlinks the node from its bucket, if it is in one.
+     */
+
+    void deschedule(LinkedNode<K, V> node) {
+        if (node.before != null) {
+            node.before.after = node.after;
+            node.after.before = node.before;
+            node.before = node.after = null;
+        }
+    }
+
+    /**
+     * method: replace(LinkedNode, LinkedNode)
+     *
+     * Puts a copy of a scheduled node in its place (the map copies nodes when it
+     * treeifies a bucket or turns one back into a chain).
+     */
+
+    void replace(LinkedNode<K, V> node, LinkedNode<K, V> replacement) {
+        replacement.deadline = node.deadline;
+        replacement.before = node.before;
+        replacement.after = node.after;
+        node.before.after = replacement;
+        node.after.before = replacement;
+        node.before = node.after = null;
+    }
+
+    /**
+     * Returns the sentinel of the bucket for the deadline, on the finest level
+     * whose range still reaches it from the current time. A deadline that already
+     * passed goes to the current tick's bucket, which the next tick visits.
+     */
+
+    private LinkedNode<K, V> bucketFor(long deadline) {
+        deadline = Math.max(deadline, time);
+        long delay = deadline - time;
+        for (int level = 0; level < BUCKETS.length - 1; level++) {
+            if (delay < 1L << SHIFT[level + 1]) {
+                int b = (int) (deadline >>> SHIFT[level]) & (BUCKETS[level] - 1);
+                return wheel[level][b];
+            }
+        }
+        return wheel[BUCKETS.length - 1][0];
+    }
+
+    /**
+     * method: advance(long)
+     *
+     * Moves the wheel's time forward to 'now'. On every level whose tick changed,
+     * the buckets from the previous tick up to the current one are emptied (all of
+     * them when more than a full turn has passed): due nodes are expired, the
+     * others are scheduled again, which moves them down to a finer level. The
+     * previous tick's bucket is visited too, as it may hold nodes that were
+     * scheduled for later in that tick.
+     *
+     * Does nothing if 'now' is not after the wheel's time.
+     */
+
+    void advance(long now) {
+        long previous = time;
+        if (now <= previous) {
+            return;
+        }
+        time = now;
+        for (int level = 0; level < BUCKETS.length; level++) {
+            long previousTicks = previous >>> SHIFT[level];
+            long delta = (now >>> SHIFT[level]) - previousTicks;
+            if (delta <= 0) {
+                break; // coarser levels can't have ticked either
+            }
+            expire(level, previousTicks, delta);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta) {
+        LinkedNode<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            LinkedNode<K, V> sentinel = buckets[i & mask];
+            if (sentinel.after == sentinel) {
+                continue;
+            }
+            // Move the whole bucket to 'pending' first: a rescheduled node may land
+            // in this same bucket, and expiring a node may make the map copy other
+            // nodes of the bucket (replace()), which needs them in a proper list.
+            pending.after = sentinel.after;
+            pending.before = sentinel.before;
+            pending.after.before = pending;
+            pending.before.after = pending;
+            sentinel.before = sentinel.after = sentinel;
+
+            while (pending.after != pending) {
+                LinkedNode<K, V> node = pending.after;
+                deschedule(node);
+                if (node.deadline - time <= 0) {
+                    expiry.accept(node);
+                } else {
+                    schedule(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * method: clear()
+     *
+     * Empties every bucket. The nodes' own links are left as they are.
+     */
+
+    void clear() {
+        for (LinkedNode<K, V>[] buckets : wheel) {
+            for (LinkedNode<K, V> sentinel : buckets) {
+                sentinel.before = sentinel.after = sentinel;
+            }
+        }
+    }
+
+} /* end class TimerWheel */
@@ -0,0 +1,563 @@
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+
+/**
+ * Class TreeNode
+ *
+ * Node used once a bucket's chain grows past TREEIFY_THRESHOLD. The nodes of such
+ * a bucket are still chained through 'next' (so every method that simply walks a
+ * bucket's chain keeps working), but they are also linked into a red-black tree,
+ * which bounds a lookup in that bucket to O(log n) even when many keys collide.
+ *
+ * The tree is ordered by hash, then by compareTo() when the keys are Comparable
+ * to each other, then by an arbitrary but consistent tie-break order. The bucket
+ * slot points at the first node of the chain, which is not necessarily the root
+ * of the tree; root() finds it by following the parent links.
+ *
+ * The tree algorithms are the ones used by Java's HashMap.
+ */
+
+class TreeNode<K, V> extends LinkedNode<K, V> {
+    TreeNode<K, V> parent;
+    TreeNode<K, V> left;
+    TreeNode<K, V> right;
+    TreeNode<K, V> prev; // needed to unlink next upon deletion
+    boolean red;
+
+    public TreeNode(int hash, K key, V value, HashNode<K, V> next) {
+        super(hash, key, value, next);
+    }
+
+    /**
+     * Returns the root of the tree containing this node.
+     */
+
+    final TreeNode<K, V> root() {
+        for (TreeNode<K, V> r = this, p;;) {
+            if ((p = r.parent) == null) {
+                return r;
+            }
+            r = p;
+        }
+    }
+
+    /**
+     * method: find(int, Object, Class)
+     *
+     * Finds the node for the given hash and key, starting at this node (normally
+     * the root). When two keys have the same hash but are not Comparable to each
+     * other, both subtrees have to be searched.
+     *
+     * @param h  - hash of the key
+     * @param k  - key to search for
+     * @param kc - the key's comparable class if already known, else null
+     *
+     * @return the node holding the key, else null
+     */
+
+    final TreeNode<K, V> find(int h, Object k, Class<?> kc) {
+        TreeNode<K, V> p = this;
+        do {
+            int ph, dir;
+            K pk;
+            TreeNode<K, V> pl = p.left, pr = p.right, q;
+            if ((ph = p.hash) > h) {
+                p = pl;
+            } else if (ph < h) {
+                p = pr;
+            } else if ((pk = p.key) == k || (k != null && k.equals(pk))) {
+                return p;
+            } else if (pl == null) {
+                p = pr;
+            } else if (pr == null) {
+                p = pl;
+            } else if ((kc != null || (kc = comparableClassFor(k)) != null)
+                    && (dir = compareComparables(kc, k, pk)) != 0) {
+                p = (dir < 0) ? pl : pr;
+            } else if ((q = pr.find(h, k, kc)) != null) {
+                return q;
+            } else {
+                p = pl;
+            }
+        } while (p != null);
+        return null;
+    }
+
+    /**
+     * method: treeify()
+     *
+     * Builds a red-black tree out of the chain of TreeNodes starting at this node.
+     * The chain order ('next' / 'prev') is left as is.
+     *
+     * @return the root of the new tree
+     */
+
+    final TreeNode<K, V> treeify() {
+        TreeNode<K, V> root = null;
+        for (TreeNode<K, V> x = this, next; x != null; x = next) {
+            next = (TreeNode<K, V>) x.next;
+            x.left = x.right = null;
+            if (root == null) {
+                x.parent = null;
+                x.red = false;
+                root = x;
+            } else {
+                K k = x.key;
+                int h = x.hash;
+                Class<?> kc = null;
+                for (TreeNode<K, V> p = root;;) {
+                    int dir, ph;
+                    K pk = p.key;
+                    if ((ph = p.hash) > h) {
+                        dir = -1;
+                    } else if (ph < h) {
+                        dir = 1;
+                    } else if ((kc == null && (kc = comparableClassFor(k)) == null)
+                            || (dir = compareComparables(kc, k, pk)) == 0) {
+                        dir = tieBreakOrder(k, pk);
+                    }
+
+                    TreeNode<K, V> xp = p;
+                    if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                        x.parent = xp;
+                        if (dir <= 0) {
+                            xp.left = x;
+                        } else {
+                            xp.right = x;
+                        }
+                        root = balanceInsertion(root, x);
+                        break;
+                    }
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * method: untreeify(myHashMap)
+     *
+     * Returns a chain of plain nodes holding the same <k,v> pairs, in the same
+     * order, as the chain of TreeNodes starting at this node. The nodes come from
+     * the map's replacementNode().
+     */
+
+    final HashNode<K, V> untreeify(myHashMap<K, V> map) {
+        HashNode<K, V> hd = null, tl = null;
+        for (HashNode<K, V> q = this; q != null; q = q.next) {
+            HashNode<K, V> p = map.replacementNode(q, null);
+            if (tl == null) {
+                hd = p;
+            } else {
+                tl.next = p;
+            }
+            tl = p;
+        }
+        return hd;
+    }
+
+    /**
+     * method: putTreeVal(myHashMap, int, K, V)
+     *
+     * Finds the node for the key in the tree this node belongs to, or adds a new
+     * node for it. A new node is linked into the chain right after its tree parent,
+     * so the bucket's first node never changes.
+     *
+     * @return the existing node for the key, else null if a new node was added
+     */
+
+    final TreeNode<K, V> putTreeVal(myHashMap<K, V> map, int h, K k, V v) {
+        Class<?> kc = null;
+        boolean searched = false;
+        TreeNode<K, V> root = root();
+        for (TreeNode<K, V> p = root;;) {
+            int dir, ph;
+            K pk;
+            if ((ph = p.hash) > h) {
+                dir = -1;
+            } else if (ph < h) {
+                dir = 1;
+            } else if ((pk = p.key) == k || (k != null && k.equals(pk))) {
+                return p;
+            } else if ((kc == null && (kc = comparableClassFor(k)) == null)
+                    || (dir = compareComparables(kc, k, pk)) == 0) {
+                if (!searched) {
+                    TreeNode<K, V> q, ch;
+                    searched = true;
+                    if (((ch = p.left) != null && (q = ch.find(h, k, kc)) != null)
+                            || ((ch = p.right) != null && (q = ch.find(h, k, kc)) != null)) {
+                        return q;
+                    }
+                }
+                dir = tieBreakOrder(k, pk);
+            }
+
+            TreeNode<K, V> xp = p;
+            if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                HashNode<K, V> xpn = xp.next;
+                TreeNode<K, V> x = map.newTreeNode(h, k, v, xpn);
+                if (dir <= 0) {
+                    xp.left = x;
+                } else {
+                    xp.right = x;
+                }
+                xp.next = x;
+                x.parent = x.prev = xp;
+                if (xpn != null) {
+                    ((TreeNode<K, V>) xpn).prev = x;
+                }
+                balanceInsertion(root, x);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * method: removeTreeNode(myHashMap, ArrayList, int, boolean)
+     *
+     * Removes this node from its bucket's chain and tree. If the tree becomes too
+     * small to be worth keeping, and movable is set, the bucket is converted back
+     * to a plain chain.
+     *
+     * @param map     - the map, to untreeify the bucket with
+     * @param table   - bucket list holding this node's bucket
+     * @param index   - index of the bucket in that list
+     * @param movable - false when an iterator may hold other nodes of the bucket:
+     *                untreeifying replaces them with copies, so the bucket is
+     *                kept as a (small) tree instead
+     */
+
+    final void removeTreeNode(myHashMap<K, V> map, ArrayList<HashNode<K, V>> table, int index, boolean movable) {
+        TreeNode<K, V> first = (TreeNode<K, V>) table.get(index);
+        TreeNode<K, V> root = first.root(), rl;
+        TreeNode<K, V> succ = (TreeNode<K, V>) next, pred = prev;
+        if (pred == null) {
+            table.set(index, first = succ);
+        } else {
+            pred.next = succ;
+        }
+        if (succ != null) {
+            succ.prev = pred;
+        }
+        if (first == null) {
+            return;
+        }
+        if (movable && (root.right == null || (rl = root.left) == null || rl.left == null)) {
+            table.set(index, first.untreeify(map)); // too small
+            return;
+        }
+
+        TreeNode<K, V> p = this, pl = left, pr = right, replacement;
+        if (pl != null && pr != null) {
+            TreeNode<K, V> s = pr, sl;
+            while ((sl = s.left) != null) { // find successor
+                s = sl;
+            }
+            boolean c = s.red;
+            s.red = p.red;
+            p.red = c; // swap colors
+            TreeNode<K, V> sr = s.right;
+            TreeNode<K, V> pp = p.parent;
+            if (s == pr) { // p was s's direct parent
+                p.parent = s;
+                s.right = p;
+            } else {
+                TreeNode<K, V> sp = s.parent;
+                if ((p.parent = sp) != null) {
+                    if (s == sp.left) {
+                        sp.left = p;
+                    } else {
+                        sp.right = p;
+                    }
+                }
+                if ((s.right = pr) != null) {
+                    pr.parent = s;
+                }
+            }
+            p.left = null;
+            if ((p.right = sr) != null) {
+                sr.parent = p;
+            }
+            if ((s.left = pl) != null) {
+                pl.parent = s;
+            }
+            if ((s.parent = pp) == null) {
+                root = s;
+            } else if (p == pp.left) {
+                pp.left = s;
+            } else {
+                pp.right = s;
+            }
+            replacement = (sr != null) ? sr : p;
+        } else if (pl != null) {
+            replacement = pl;
+        } else if (pr != null) {
+            replacement = pr;
+        } else {
+            replacement = p;
+        }
+
+        if (replacement != p) {
+            TreeNode<K, V> pp = replacement.parent = p.parent;
+            if (pp == null) {
+                (root = replacement).red = false;
+            } else if (p == pp.left) {
+                pp.left = replacement;
+            } else {
+                pp.right = replacement;
+            }
+            p.left = p.right = p.parent = null;
+        }
+
+        if (!p.red) {
+            balanceDeletion(root, replacement);
+        }
+
+        if (replacement == p) { // detach
+            TreeNode<K, V> pp = p.parent;
+            p.parent = null;
+            if (pp != null) {
+                if (p == pp.left) {
+                    pp.left = null;
+                } else if (p == pp.right) {
+                    pp.right = null;
+                }
+            }
+        }
+    }
+
+    /*
+     * Red-black tree methods, all adapted from CLR. Each returns the (possibly new)
+     * root of the tree.
+     */
+
+    static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> root, TreeNode<K, V> p) {
+        TreeNode<K, V> r, pp, rl;
+        if (p != null && (r = p.right) != null) {
+            if ((rl = p.right = r.left) != null) {
+                rl.parent = p;
+            }
+            if ((pp = r.parent = p.parent) == null) {
+                (root = r).red = false;
+            } else if (pp.left == p) {
+                pp.left = r;
+            } else {
+                pp.right = r;
+            }
+            r.left = p;
+            p.parent = r;
+        }
+        return root;
+    }
+
+    static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> root, TreeNode<K, V> p) {
+        TreeNode<K, V> l, pp, lr;
+        if (p != null && (l = p.left) != null) {
+            if ((lr = p.left = l.right) != null) {
+                lr.parent = p;
+            }
+            if ((pp = l.parent = p.parent) == null) {
+                (root = l).red = false;
+            } else if (pp.right == p) {
+                pp.right = l;
+            } else {
+                pp.left = l;
+            }
+            l.right = p;
+            p.parent = l;
+        }
+        return root;
+    }
+
+    static <K, V> TreeNode<K, V> balanceInsertion(TreeNode<K, V> root, TreeNode<K, V> x) {
+        x.red = true;
+        for (TreeNode<K, V> xp, xpp, xppl, xppr;;) {
+            if ((xp = x.parent) == null) {
+                x.red = false;
+                return x;
+            } else if (!xp.red || (xpp = xp.parent) == null) {
+                return root;
+            }
+            if (xp == (xppl = xpp.left)) {
+                if ((xppr = xpp.right) != null && xppr.red) {
+                    xppr.red = false;
+                    xp.red = false;
+                    xpp.red = true;
+                    x = xpp;
+                } else {
+                    if (x == xp.right) {
+                        root = rotateLeft(root, x = xp);
+                        xpp = (xp = x.parent) == null ? null : xp.parent;
+                    }
+                    if (xp != null) {
+                        xp.red = false;
+                        if (xpp != null) {
+                            xpp.red = true;
+                            root = rotateRight(root, xpp);
+                        }
+                    }
+                }
+            } else {
+                if (xppl != null && xppl.red) {
+                    xppl.red = false;
+                    xp.red = false;
+                    xpp.red = true;
+                    x = xpp;
+                } else {
+                    if (x == xp.left) {
+                        root = rotateRight(root, x = xp);
+                        xpp = (xp = x.parent) == null ? null : xp.parent;
+                    }
+                    if (xp != null) {
+                        xp.red = false;
+                        if (xpp != null) {
+                            xpp.red = true;
+                            root = rotateLeft(root, xpp);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static <K, V> TreeNode<K, V> balanceDeletion(TreeNode<K, V> root, TreeNode<K, V> x) {
+        for (TreeNode<K, V> xp, xpl, xpr;;) {
+            if (x == null || x == root) {
+                return root;
+            } else if ((xp = x.parent) == null) {
+                x.red = false;
+                return x;
+            } else if (x.red) {
+                x.red = false;
+                return root;
+            } else if ((xpl = xp.left) == x) {
+                if ((xpr = xp.right) != null && xpr.red) {
+                    xpr.red = false;
+                    xp.red = true;
+                    root = rotateLeft(root, xp);
+                    xpr = (xp = x.parent) == null ? null : xp.right;
+                }
+                if (xpr == null) {
+                    x = xp;
+                } else {
+                    TreeNode<K, V> sl = xpr.left, sr = xpr.right;
+                    if ((sr == null || !sr.red) && (sl == null || !sl.red)) {
+                        xpr.red = true;
+                        x = xp;
+                    } else {
+                        if (sr == null || !sr.red) {
+                            if (sl != null) {
+                                sl.red = false;
+                            }
+                            xpr.red = true;
+                            root = rotateRight(root, xpr);
+                            xpr = (xp = x.parent) == null ? null : xp.right;
+                        }
+                        if (xpr != null) {
+                            xpr.red = (xp == null) ? false : xp.red;
+                            if ((sr = xpr.right) != null) {
+                                sr.red = false;
+                            }
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            root = rotateLeft(root, xp);
+                        }
+                        x = root;
+                    }
+                }
+            } else { // symmetric
+                if (xpl != null && xpl.red) {
+                    xpl.red = false;
+                    xp.red = true;
+                    root = rotateRight(root, xp);
+                    xpl = (xp = x.parent) == null ? null : xp.left;
+                }
+                if (xpl == null) {
+                    x = xp;
+                } else {
+                    TreeNode<K, V> sl = xpl.left, sr = xpl.right;
+                    if ((sl == null || !sl.red) && (sr == null || !sr.red)) {
+                        xpl.red = true;
+                        x = xp;
+                    } else {
+                        if (sl == null || !sl.red) {
+                            if (sr != null) {
+                                sr.red = false;
+                            }
+                            xpl.red = true;
+                            root = rotateLeft(root, xpl);
+                            xpl = (xp = x.parent) == null ? null : xp.left;
+                        }
+                        if (xpl != null) {
+                            xpl.red = (xp == null) ? false : xp.red;
+                            if ((sl = xpl.left) != null) {
+                                sl.red = false;
+                            }
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            root = rotateRight(root, xp);
+                        }
+                        x = root;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Key ordering helpers.
+     */
+
+    /**
+     * Returns x's Class if it is of the form "class C implements Comparable<C>",
+     * else null.
+     */
+
+    static Class<?> comparableClassFor(Object x) {
+        if (x instanceof Comparable) {
+            Class<?> c;
+            if ((c = x.getClass()) == String.class) { // bypass checks
+                return c;
+            }
+            Type[] ts, as;
+            ParameterizedType p;
+            if ((ts = c.getGenericInterfaces()) != null) {
+                for (Type t : ts) {
+                    if ((t instanceof ParameterizedType)
+                            && ((p = (ParameterizedType) t).getRawType() == Comparable.class)
+                            && (as = p.getActualTypeArguments()) != null
+                            && as.length == 1 && as[0] == c) { // type arg is c
+                        return c;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns k.compareTo(x) if x matches kc (k's screened comparable class), else 0.
+     */
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static int compareComparables(Class<?> kc, Object k, Object x) {
+        return (x == null || x.getClass() != kc ? 0 : ((Comparable) k).compareTo(x));
+    }
+
+    /**
+     * Tie-breaking utility for ordering insertions when equal hashCodes and
+     * non-comparable. We don't require a total order, just a consistent insertion
+     * rule to maintain equivalence across rebalancings.
+     */
+
+    static int tieBreakOrder(Object a, Object b) {
+        int d;
+        if (a == null || b == null || (d = a.getClass().getName().compareTo(b.getClass().getName())) == 0) {
+            d = (System.identityHashCode(a) <= System.identityHashCode(b) ? -1 : 1);
+        }
+        return d;
+    }
+} /* end class TreeNode */
@@ -0,0 +1,235 @@
+/**
+ *
+ *  This class is a bounded cache mode of myHashMap: a map that holds at most
+ *  'capacity' <key, value> pairs. Inserting a new key into a full cache evicts the
+ *  entry chosen by its CachePolicy (least recently used by default, or W-TinyLFU).
+ *
+ *  It is myHashMap itself, extended through its node factory and callbacks (the way
+ *  Java's LinkedHashMap extends HashMap): every entry is a LinkedNode, and the
+ *  policy keeps its recency lists in the nodes' 'before' / 'after' links. So a get()
+ *  that hits only relinks a node, and allocates nothing. The bucket list is presized
+ *  for the capacity when the cache is created and never grows.
+ *
+ *  get() counts hits and misses, and records the access with the policy. Every
+ *  other method that reads or writes a value through its key (put, replace,
+ *  compute, merge, ...) also counts as an access, but not containsKey() or
+ *  iterating the views.
+ *
+ *  PUBLIC METHODS (in addition to myHashMap's):
+ *  ---------------
+ *
+ *      int  capacity()            - returns the maximum number of <k,v> pairs
+ *     long  hitCount()            - returns the number of get() calls that found their key
+ *     long  missCount()           - returns the number of get() calls that did not
+ *     long  evictionCount()       - returns the number of entries evicted
+ *   double  hitRate()             - returns hits / (hits + misses), 1.0 if there was no get()
+ *     void  resetStats()          - Sets the counters back to 0
+ *
+ ****************************************/
+
+class myCacheMap<K, V> extends myHashMap<K, V> {
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private final int capacity;
+    private final CachePolicy<K, V> policy;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public myCacheMap(int capacity) {
+        this(capacity, CachePolicy.lru());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity - maximum number of <k,v> pairs, at least 1
+     * @param policy   - chooses the entries to evict, e.g. CachePolicy.lru() or
+     *                 CachePolicy.windowTinyLfu(); must not be shared
+     */
+    public myCacheMap(int capacity, CachePolicy<K, V> policy) {
+        // One more than the capacity: an insertion is complete before it evicts
+        super(checkCapacity(capacity) + 1, LOAD_FACTOR, false);
+        this.capacity = capacity;
+        this.policy = policy;
+        policy.init(capacity);
+    }
+
+    private static int checkCapacity(int capacity) {
+        if (capacity < 1 || capacity == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        return capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the key is mapped, or null. A hit makes the entry
+     * the most recently used one (as the policy sees it); a miss is reported to the
+     * policy too, as W-TinyLFU counts requests for absent keys.
+     */
+
+    @Override
+    public V get(K key) {
+        myHashMapMetrics m = metrics();
+        HashNode<K, V> node = m == null ? getNode(key) : meteredGetNode(m, key);
+        if (node == null) {
+            if (m != null) {
+                m.countMiss();
+            }
+            misses++;
+            policy.onMiss(hash(key));
+            return null;
+        }
+        hits++;
+        policy.onAccess((LinkedNode<K, V>) node);
+        return node.value;
+    }
+
+    /**
+     * Method: int getAll(K[], V[])
+     *
+     * Looks the keys up one get() at a time, in the order given, so that every
+     * lookup is counted and seen by the policy.
+     */
+
+    @Override
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Batch of " + keys.length + " keys, room for " + out.length + " values");
+        }
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = get(keys[i]);
+            if (out[i] != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The bucket list is sized for the capacity when the cache is created, so
+     * there is nothing to grow: a batch of puts evicts instead.
+     */
+
+    @Override
+    public void ensureCapacity(int pairs) {
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if the cache holds the key, without counting a hit or a miss
+     * and without touching the entry's recency.
+     */
+
+    @Override
+    public boolean containsKey(K key) {
+        HashNode<K, V> node = getNode(key);
+        return node != null && node.value != null;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes every entry. The counters are kept, see resetStats().
+     */
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (policy != null) { // null while myHashMap's constructor runs
+            policy.clear();
+        }
+    }
+
+    public long hitCount() {
+        return hits;
+    }
+
+    public long missCount() {
+        return misses;
+    }
+
+    public long evictionCount() {
+        return evictions;
+    }
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /*
+     * myHashMap's node factory: every node is linked into the policy's lists, and
+     * a node copied by treeify / untreeify takes the place of the original.
+     */
+
+    @Override
+    HashNode<K, V> newNode(int hash, K key, V value, HashNode<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(hash, key, value, next);
+        policy.onInsert(node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, HashNode<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(hash, key, value, next);
+        policy.onInsert(node);
+        return node;
+    }
+
+    @Override
+    HashNode<K, V> replacementNode(HashNode<K, V> p, HashNode<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(p.hash, p.key, p.value, next);
+        policy.onReplace((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> replacementTreeNode(HashNode<K, V> p, HashNode<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(p.hash, p.key, p.value, next);
+        policy.onReplace((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    void afterNodeAccess(HashNode<K, V> p) {
+        policy.onAccess((LinkedNode<K, V>) p);
+    }
+
+    /**
+     * Evicts the policy's victims until the cache is back at its capacity. The
+     * victim is removed like any other key, so the value index and the change log
+     * (if enabled) see the eviction.
+     */
+
+    @Override
+    void afterNodeInsertion() {
+        while (size > capacity) {
+            LinkedNode<K, V> victim = policy.victim();
+            removeNode(victim.key, null, false, true);
+            evictions++;
+        }
+    }
+
+    @Override
+    void afterNodeRemoval(HashNode<K, V> p) {
+        policy.onRemove((LinkedNode<K, V>) p);
+    }
+
+} /* end class myCacheMap */
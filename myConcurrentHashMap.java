@@ -0,0 +1,745 @@
+/**
+ *
+ *  This class is the thread-safe counterpart of myHashMap. It offers the same methods,
+ *  but any number of threads may call them concurrently without wrapping the map in a
+ *  global lock. The design follows Java's ConcurrentHashMap:
+ *
+ *    - Reads (get, containsKey, containsValue, keySet, entrySet) take no lock. Bucket
+ *      slots are read with acquire semantics and the node fields they follow are
+ *      volatile, so a reader always sees fully constructed nodes.
+ *
+ *    - Writes lock only the bucket they modify, by synchronizing on the bucket's first
+ *      node. Inserting into an empty bucket takes no lock at all; the new node is
+ *      installed with a compare-and-set of the bucket slot.
+ *
+ *    - The number of entries is kept in a LongAdder, so writers on different buckets
+ *      don't contend on a single size field.
+ *
+ *    - Resizing is cooperative. The thread that notices the table is over its
+ *      threshold allocates the doubled table, then threads claim strides of buckets to
+ *      move. A moved bucket is replaced by a ForwardingNode that points readers to the
+ *      new table, and any writer that runs into one helps finish the transfer before
+ *      retrying. Moved chains are split into lo / hi halves, like myHashMap's resize,
+ *      and the unchanged tail of a chain is reused rather than copied.
+ *
+ *  Unlike myHashMap, null keys and null values are rejected (NullPointerException),
+ *  since a null from get() must unambiguously mean "absent" when there is no lock to
+ *  hold across a get() and a containsKey(). Long chains are not treeified here.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()               - Removes all of the mappings from this map.
+ *  boolean  containsValue(V)      - Returns true if this map maps one or more keys to the specified value
+ *  boolean  containsKey(K)        - Returns true if this map contains a mapping for the specified key.
+ *       V   get(K)                - Returns the value to which the specified key is mapped, or null
+ *       V   put(K, V)             - Associates the specified value with the specified key in this map
+ *       V   putIfAbsent(K, V)     - Associates the value only if the key is absent
+ *       V   remove(K)             - Removes the entry for the specified key
+ *  boolean  remove(K, V)          - Removes the entry only if it is currently mapped to the value
+ *       V   replace(K, V)         - Replaces the entry only if it is currently mapped to some value
+ *  boolean  replace(K, V1, V2)    - Replaces the entry only if currently mapped to the value V1
+ *  Set<K>   keySet()              - Returns a 'Set' copy of the keys contained in the map.
+ *  Set<Map.Entry<K,V>> entrySet() - Returns a 'Set' copy of the mappings contains in the map.
+ *      int  Size()                - returns the number of <k,v> pairs in hashmap
+ *  boolean  isEmpty()             - returns true if this map contains no key-value mappings.
+ *
+ *  The whole-map methods (containsValue, keySet, entrySet, Size) are weakly
+ *  consistent: they reflect some state of the map during the call, and never fail
+ *  because of concurrent updates.
+ *
+ ****************************************/
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+class myConcurrentHashMap<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * While resizing, sizeCtl holds (resize stamp << RESIZE_STAMP_SHIFT) + 1 + the
+     * number of threads transferring. The stamp identifies the table size being
+     * resized, so a thread that arrives late can't join (or finish) a resize that
+     * already completed. Otherwise sizeCtl holds the size that triggers the next
+     * resize.
+     */
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+
+    private static final int MOVED = -1; // hash of forwarding nodes
+    private static final int HASH_BITS = 0x7fffffff; // usable bits of normal node hash
+
+    /**
+     * Class Node
+     *
+     * Chain node. 'val' and 'next' are volatile so that lock-free readers see the
+     * latest value and never a half-linked chain.
+     */
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V val;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V val, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Class ForwardingNode
+     *
+     * Placed in a bucket of the old table once the bucket has been moved, so that
+     * readers continue in the new table and writers help with the transfer.
+     */
+
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Node<K, V>[] nextTable;
+
+        ForwardingNode(Node<K, V>[] tab) {
+            super(MOVED, null, null, null);
+            this.nextTable = tab;
+        }
+    }
+
+    private static final VarHandle TAB;
+    private static final VarHandle SIZECTL;
+    private static final VarHandle TRANSFERINDEX;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            TAB = MethodHandles.arrayElementVarHandle(Node[].class);
+            SIZECTL = l.findVarHandle(myConcurrentHashMap.class, "sizeCtl", int.class);
+            TRANSFERINDEX = l.findVarHandle(myConcurrentHashMap.class, "transferIndex", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    volatile Node<K, V>[] table;
+    private volatile Node<K, V>[] nextTable;
+    private volatile int sizeCtl;
+    private volatile int transferIndex;
+    private final LongAdder count = new LongAdder();
+
+    public myConcurrentHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity - number of <k,v> pairs the map can hold before it
+     *                        first resizes
+     */
+    public myConcurrentHashMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        int n = tableSizeFor(initialCapacity + (initialCapacity >>> 1) + 1);
+        table = newTable(n);
+        sizeCtl = n - (n >>> 2);
+    }
+
+    public int Size() {
+        long n = count.sum();
+        return (n < 0L) ? 0 : (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) n;
+    }
+
+    public boolean isEmpty() {
+        return count.sum() <= 0L;
+    }
+
+    /*
+     * Volatile access to the bucket slots of a table.
+     */
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Node<K, V> tabAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) TAB.getAcquire(tab, i);
+    }
+
+    static <K, V> boolean casTabAt(Node<K, V>[] tab, int i, Node<K, V> c, Node<K, V> v) {
+        return TAB.compareAndSet(tab, i, c, v);
+    }
+
+    static <K, V> void setTabAt(Node<K, V>[] tab, int i, Node<K, V> v) {
+        TAB.setRelease(tab, i, v);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int n) {
+        return (Node<K, V>[]) new Node<?, ?>[n];
+    }
+
+    /**
+     * method spread()
+     *
+     * Folds the high bits of the hash code into the low bits (tables are indexed
+     * with a mask) and clears the sign bit, which is reserved for MOVED.
+     */
+
+    static int spread(int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    private static int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(c, 2) - 1);
+        return (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    static int resizeStamp(int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the specified key is mapped, or null if this map
+     * contains no mapping for the key. Takes no lock; a ForwardingNode sends the
+     * lookup on to the table the bucket was moved to.
+     */
+
+    public V get(K key) {
+        int h = spread(key.hashCode());
+        Node<K, V>[] tab = table;
+        while (true) {
+            Node<K, V> e = tabAt(tab, (tab.length - 1) & h);
+            if (e == null) {
+                return null;
+            }
+            if (e.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                continue;
+            }
+            for (; e != null; e = e.next) {
+                K ek;
+                if (e.hash == h && ((ek = e.key) == key || key.equals(ek))) {
+                    return e.val;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if this map contains a mapping for the specified key.
+     */
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Associates the specified value with the specified key in this map.
+     *
+     * @return value - if key exists, returns old value before
+     *         replacing with provided value, else null.
+     */
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * method: V putIfAbsent(K, V)
+     *
+     * If the specified key is not already associated with a value, associates it
+     * with the given value and returns null, else returns the current value.
+     */
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * method: V putVal(K, V, boolean)
+     *
+     * Implements put() and putIfAbsent(). An empty bucket is filled with a CAS.
+     * Otherwise the bucket's first node is locked, the chain is walked once, and the
+     * value is either replaced or a new node is appended at the tail. If the bucket
+     * turns out to have been moved, the thread helps the transfer and retries in the
+     * new table.
+     */
+
+    private V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        int binCount = 0;
+        for (Node<K, V>[] tab = table;;) {
+            Node<K, V> f;
+            int n = tab.length, i = (n - 1) & hash, fh;
+            K fk;
+            V fv;
+            if ((f = tabAt(tab, i)) == null) {
+                if (casTabAt(tab, i, null, new Node<>(hash, key, value, null))) {
+                    break; // no lock when adding to empty bin
+                }
+            } else if ((fh = f.hash) == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else if (onlyIfAbsent // check first node without acquiring lock
+                    && fh == hash
+                    && ((fk = f.key) == key || key.equals(fk))
+                    && (fv = f.val) != null) {
+                return fv;
+            } else {
+                V oldVal = null;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        binCount = 1;
+                        for (Node<K, V> e = f;; ++binCount) {
+                            K ek;
+                            if (e.hash == hash && ((ek = e.key) == key || key.equals(ek))) {
+                                oldVal = e.val;
+                                if (!onlyIfAbsent) {
+                                    e.val = value;
+                                }
+                                break;
+                            }
+                            Node<K, V> pred = e;
+                            if ((e = e.next) == null) {
+                                pred.next = new Node<>(hash, key, value, null);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (oldVal != null) {
+                        return oldVal;
+                    }
+                    break;
+                }
+            }
+        }
+        addCount(1L, binCount);
+        return null;
+    }
+
+    /**
+     * method: V remove(K)
+     *
+     * Removes the entry for the specified key.
+     *
+     * @return value - the value removed, else null if not found
+     */
+
+    public V remove(K key) {
+        return replaceNode(key, null, null);
+    }
+
+    /**
+     * Method: boolean remove(K, V)
+     *
+     * Removes the entry for the specified key only if it is currently mapped to the
+     * specified value.
+     */
+
+    public boolean remove(K key, V val) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return val != null && replaceNode(key, null, val) != null;
+    }
+
+    /**
+     * method: V replace(K, V)
+     *
+     * Replaces the entry for the specified key only if it is currently mapped to
+     * some value.
+     *
+     * @return V - returns the old value for the <k,v> pair, else null if not found.
+     */
+
+    public V replace(K key, V val) {
+        if (key == null || val == null) {
+            throw new NullPointerException();
+        }
+        return replaceNode(key, val, null);
+    }
+
+    /**
+     * method: boolean replace(K, V, V)
+     *
+     * Replaces the entry for the specified key only if currently mapped to the
+     * specified value.
+     */
+
+    public boolean replace(K key, V oldVal, V newVal) {
+        if (key == null || oldVal == null || newVal == null) {
+            throw new NullPointerException();
+        }
+        return replaceNode(key, newVal, oldVal) != null;
+    }
+
+    /**
+     * method: V replaceNode(K, V, V)
+     *
+     * Implements the remove and replace methods: under the bucket lock, replaces the
+     * node's value with 'value', or removes the node if 'value' is null. Only does so
+     * if 'cv' is null or equals the current value.
+     *
+     * @return the previous value if the node was replaced / removed, else null
+     */
+
+    private V replaceNode(K key, V value, V cv) {
+        int hash = spread(key.hashCode());
+        for (Node<K, V>[] tab = table;;) {
+            Node<K, V> f;
+            int n = tab.length, i = (n - 1) & hash, fh;
+            if ((f = tabAt(tab, i)) == null) {
+                break;
+            } else if ((fh = f.hash) == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else {
+                V oldVal = null;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        validated = true;
+                        for (Node<K, V> e = f, pred = null;;) {
+                            K ek;
+                            if (e.hash == hash && ((ek = e.key) == key || key.equals(ek))) {
+                                V ev = e.val;
+                                if (cv == null || cv == ev || cv.equals(ev)) {
+                                    oldVal = ev;
+                                    if (value != null) {
+                                        e.val = value;
+                                    } else if (pred != null) {
+                                        pred.next = e.next;
+                                    } else {
+                                        setTabAt(tab, i, e.next);
+                                    }
+                                }
+                                break;
+                            }
+                            pred = e;
+                            if ((e = e.next) == null) {
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (oldVal != null) {
+                        if (value == null) {
+                            addCount(-1L, -1);
+                        }
+                        return oldVal;
+                    }
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes all of the mappings, one bucket at a time under that bucket's lock.
+     * The table keeps its current capacity.
+     */
+
+    public void clear() {
+        long delta = 0L;
+        int i = 0;
+        Node<K, V>[] tab = table;
+        while (i < tab.length) {
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                ++i;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+                i = 0; // restart
+            } else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        for (Node<K, V> p = f; p != null; p = p.next) {
+                            --delta;
+                        }
+                        setTabAt(tab, i++, null);
+                    }
+                }
+            }
+        }
+        if (delta != 0L) {
+            addCount(delta, -1);
+        }
+    }
+
+    /**
+     * Method: boolean containsValue(V)
+     *
+     * Returns true if this map maps one or more keys to the specified value.
+     */
+
+    public boolean containsValue(V val) {
+        if (val == null) {
+            throw new NullPointerException();
+        }
+        return traverse(e -> {
+            V v = e.val;
+            return v == val || (v != null && val.equals(v));
+        });
+    }
+
+    /**
+     * Method: Set<Map.Entry<K,V>> entrySet()
+     *
+     * Returns a 'Set' holding a weakly consistent copy of the mappings.
+     */
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> returnSet = new HashSet<>();
+        traverse(e -> {
+            V v = e.val;
+            if (v != null) {
+                returnSet.add(Map.entry(e.key, v));
+            }
+            return false;
+        });
+        return returnSet;
+    }
+
+    /**
+     * Method: Set<K> keySet()
+     *
+     * Returns a 'Set' holding a weakly consistent copy of the keys.
+     */
+
+    public Set<K> keySet() {
+        Set<K> returnSet = new HashSet<>();
+        traverse(e -> {
+            returnSet.add(e.key);
+            return false;
+        });
+        return returnSet;
+    }
+
+    /**
+     * method: traverse(Predicate)
+     *
+     * Visits every node without locking until the action returns true. A bucket
+     * that has been moved is visited through the two buckets of the next table it
+     * was split into.
+     *
+     * @return true if the action returned true for some node
+     */
+
+    private boolean traverse(Predicate<Node<K, V>> action) {
+        Node<K, V>[] tab = table;
+        for (int i = 0; i < tab.length; i++) {
+            if (traverseBin(tab, i, action)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean traverseBin(Node<K, V>[] tab, int i, Predicate<Node<K, V>> action) {
+        Node<K, V> e = tabAt(tab, i);
+        if (e instanceof ForwardingNode) {
+            Node<K, V>[] nt = ((ForwardingNode<K, V>) e).nextTable;
+            return traverseBin(nt, i, action) || traverseBin(nt, i + tab.length, action);
+        }
+        for (; e != null; e = e.next) {
+            if (action.test(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * method: addCount(long, int)
+     *
+     * Adds to the entry count and, after an insert, checks whether the table needs
+     * to grow: every insert checks, into an empty bucket too, or a well spread key
+     * set could take the table past its threshold before an insert happened to hit
+     * an occupied bucket. Starts a transfer if none is running, or joins the running
+     * one. Removals don't check.
+     *
+     * @param x     - the count to add
+     * @param check - if < 0, don't check the size
+     */
+
+    private void addCount(long x, int check) {
+        count.add(x);
+        if (check < 0) {
+            return;
+        }
+        Node<K, V>[] tab, nt;
+        int n, sc;
+        long s = count.sum();
+        while (s >= (long) (sc = sizeCtl) && (n = (tab = table).length) < MAXIMUM_CAPACITY) {
+            int rs = resizeStamp(n) << RESIZE_STAMP_SHIFT;
+            if (sc < 0) {
+                if (sc == rs + MAX_RESIZERS || sc == rs + 1 || (nt = nextTable) == null || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZECTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(tab, nt);
+                }
+            } else if (SIZECTL.compareAndSet(this, sc, rs + 2)) {
+                transfer(tab, null);
+            }
+            s = count.sum();
+        }
+    }
+
+    /**
+     * method: helpTransfer(Node[], Node)
+     *
+     * Helps move buckets if a resize is in progress.
+     *
+     * @return the table to retry the operation in
+     */
+
+    private Node<K, V>[] helpTransfer(Node<K, V>[] tab, Node<K, V> f) {
+        Node<K, V>[] nextTab;
+        int sc;
+        if (f instanceof ForwardingNode && (nextTab = ((ForwardingNode<K, V>) f).nextTable) != null) {
+            int rs = resizeStamp(tab.length) << RESIZE_STAMP_SHIFT;
+            while (nextTab == nextTable && table == tab && (sc = sizeCtl) < 0) {
+                if (sc == rs + MAX_RESIZERS || sc == rs + 1 || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZECTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(tab, nextTab);
+                    break;
+                }
+            }
+            return nextTab;
+        }
+        return table;
+    }
+
+    /**
+     * method: transfer(Node[], Node[])
+     *
+     * Moves the buckets of 'tab' into 'nextTab' (allocated here by the thread that
+     * starts the resize). Each participating thread repeatedly claims the next stride
+     * of buckets, counting down from the top of the table, and moves each bucket
+     * under its lock: the chain is split into its lo / hi halves, the trailing run of
+     * nodes that all go to the same half is reused as is, and only the nodes before
+     * it are copied (the originals must stay intact for concurrent readers). The
+     * last thread to finish publishes the new table.
+     */
+
+    private void transfer(Node<K, V>[] tab, Node<K, V>[] nextTab) {
+        int n = tab.length, stride;
+        if ((stride = (NCPU > 1) ? (n >>> 3) / NCPU : n) < MIN_TRANSFER_STRIDE) {
+            stride = MIN_TRANSFER_STRIDE; // subdivide range
+        }
+        if (nextTab == null) { // initiating
+            try {
+                nextTab = newTable(n << 1);
+            } catch (Throwable ex) { // try to cope with OOME
+                sizeCtl = Integer.MAX_VALUE;
+                return;
+            }
+            nextTable = nextTab;
+            transferIndex = n;
+        }
+        int nextn = nextTab.length;
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(nextTab);
+        boolean advance = true;
+        boolean finishing = false; // to ensure sweep before committing nextTab
+        for (int i = 0, bound = 0;;) {
+            Node<K, V> f;
+            while (advance) {
+                int nextIndex, nextBound;
+                if (--i >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = transferIndex) <= 0) {
+                    i = -1;
+                    advance = false;
+                } else if (TRANSFERINDEX.compareAndSet(this, nextIndex,
+                        nextBound = (nextIndex > stride ? nextIndex - stride : 0))) {
+                    bound = nextBound;
+                    i = nextIndex - 1;
+                    advance = false;
+                }
+            }
+            if (i < 0 || i >= n || i + n >= nextn) {
+                int sc;
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl = (n << 1) - (n >>> 1);
+                    return;
+                }
+                if (SIZECTL.compareAndSet(this, sc = sizeCtl, sc - 1)) {
+                    if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        return;
+                    }
+                    finishing = advance = true;
+                    i = n; // recheck before commit
+                }
+            } else if ((f = tabAt(tab, i)) == null) {
+                advance = casTabAt(tab, i, null, fwd);
+            } else if (f.hash == MOVED) {
+                advance = true; // already processed
+            } else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        Node<K, V> ln, hn;
+                        int runBit = f.hash & n;
+                        Node<K, V> lastRun = f;
+                        for (Node<K, V> p = f.next; p != null; p = p.next) {
+                            int b = p.hash & n;
+                            if (b != runBit) {
+                                runBit = b;
+                                lastRun = p;
+                            }
+                        }
+                        if (runBit == 0) {
+                            ln = lastRun;
+                            hn = null;
+                        } else {
+                            hn = lastRun;
+                            ln = null;
+                        }
+                        for (Node<K, V> p = f; p != lastRun; p = p.next) {
+                            int ph = p.hash;
+                            K pk = p.key;
+                            V pv = p.val;
+                            if ((ph & n) == 0) {
+                                ln = new Node<>(ph, pk, pv, ln);
+                            } else {
+                                hn = new Node<>(ph, pk, pv, hn);
+                            }
+                        }
+                        setTabAt(nextTab, i, ln);
+                        setTabAt(nextTab, i + n, hn);
+                        setTabAt(tab, i, fwd);
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+} /* end class myConcurrentHashMap */
@@ -0,0 +1,483 @@
+/**
+ *
+ *  This class is a myHashMap whose entries expire: each <key, value> pair has a
+ *  time to live, either the map's default one or its own (put(K, V, long, TimeUnit)),
+ *  after which the pair is treated as absent and then removed.
+ *
+ *  Lookups check the entry's deadline themselves, so get(), containsKey() and every
+ *  method that reads a value through its key (putIfAbsent, replace, compute, merge,
+ *  remove, ...) treat an expired entry as absent, to the nanosecond. Removing the
+ *  expired entries is left to a hierarchical timing wheel (see TimerWheel), which
+ *  every write (and cleanUp()) advances to the current time: only the wheel buckets
+ *  whose time has passed are visited, so an expiration costs O(1) amortized, instead
+ *  of a sweep over every entry.
+ *
+ *  A pair's time to live restarts whenever a value is stored for its key (put,
+ *  replace, compute, computeIfPresent, merge); reading it does not extend it. It can
+ *  also be changed with setTimeToLive(). A time to live of NEVER keeps the pair until
+ *  it is removed.
+ *
+ *  Like LinkedHashMap in access order, the map removes entries on its own: a write,
+ *  even one that only replaces a value, may remove expired entries, so don't write
+ *  to the map while iterating one of its views. Size(), the views and the bulk
+ *  methods may still see entries that expired since the last write (and always
+ *  those that expired less than one wheel tick, about 67 ms, ago).
+ *
+ *  PUBLIC METHODS (in addition to myHashMap's):
+ *  ---------------
+ *
+ *       V   put(K, V, long, TimeUnit) - Associates the value with the key, expiring after the time given
+ *  boolean  setTimeToLive(K, long, TimeUnit) - Restarts the key's time to live with a new duration
+ *     long  getTimeToLive(K, TimeUnit) - returns the key's remaining time to live, -1 if absent
+ *     void  cleanUp()             - Removes the entries that expired, up to the current tick
+ *     long  expiredCount()        - returns the number of entries removed because they expired
+ *
+ ****************************************/
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+class myExpiringHashMap<K, V> extends myHashMap<K, V> {
+
+    /**
+     * The time to live of an entry that never expires.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    /*
+     * The deadline of an entry that never expires. Deadlines are nanoseconds since
+     * the map was created, so any real one is far below it, and such an entry is
+     * never scheduled on the wheel. Longer times to live count as NEVER.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static final long MAXIMUM_TTL_NANOS = 1L << 62;
+
+    private final long defaultTtlNanos;
+    private final LongSupplier ticker;
+    private final long origin;
+    private final TimerWheel<K, V> wheel;
+    private long expired;
+
+    /*
+     * State of the current write, read by the node factory and the callbacks: the
+     * deadline for the entries it stores, whether a value stored in an existing
+     * entry restarts its time to live, and whether the entry it wrote or removed had
+     * expired already.
+     */
+    private long writeDeadline;
+    private boolean renewOnAccess;
+    private boolean touchedExpired;
+    private int removedExpired;
+
+    public myExpiringHashMap(long defaultTtl, TimeUnit unit) {
+        this(defaultTtl, unit, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param defaultTtl - time to live of the entries stored without one, or NEVER
+     * @param unit       - unit of defaultTtl
+     * @param ticker     - the clock, in nanoseconds (System.nanoTime() by default);
+     *                   a test or a simulation can pass its own
+     */
+    public myExpiringHashMap(long defaultTtl, TimeUnit unit, LongSupplier ticker) {
+        super(INITIAL_CAPACITY, LOAD_FACTOR, false);
+        this.defaultTtlNanos = ttlNanos(defaultTtl, unit);
+        this.ticker = ticker;
+        this.origin = ticker.getAsLong();
+        this.wheel = new TimerWheel<>(this::expire);
+    }
+
+    private static long ttlNanos(long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Illegal time to live: " + ttl);
+        }
+        return ttl == NEVER ? NEVER : unit.toNanos(ttl);
+    }
+
+    /**
+     * Returns the current time, in nanoseconds since the map was created.
+     */
+
+    private long now() {
+        return ticker.getAsLong() - origin;
+    }
+
+    private static boolean isExpired(HashNode<?, ?> node, long now) {
+        return ((LinkedNode<?, ?>) node).deadline - now <= 0;
+    }
+
+    /**
+     * Starts a write: advances the wheel (removing the entries that are due), and
+     * sets the deadline of the entries the write stores.
+     */
+
+    private void beginWrite(long ttlNanos, boolean renew) {
+        long now = now();
+        wheel.advance(now);
+        writeDeadline = ttlNanos >= MAXIMUM_TTL_NANOS ? NO_DEADLINE : now + ttlNanos;
+        renewOnAccess = renew;
+        touchedExpired = false;
+    }
+
+    /**
+     * Starts a write that reads the key's current value: on top of beginWrite(),
+     * removes the key's entry if it has expired, so the write finds it absent.
+     */
+
+    private void beginReadWrite(K key, long ttlNanos, boolean renew) {
+        beginWrite(ttlNanos, renew);
+        HashNode<K, V> node = getNode(key);
+        if (node != null && isExpired(node, wheel.time())) {
+            expire((LinkedNode<K, V>) node);
+        }
+    }
+
+    /**
+     * Removes an expired entry (called by the wheel, or by a write that found it).
+     */
+
+    private void expire(LinkedNode<K, V> node) {
+        removeNode(node.key, null, false, true);
+        expired++;
+    }
+
+    private void setDeadline(LinkedNode<K, V> node, long deadline) {
+        node.deadline = deadline;
+        if (deadline == NO_DEADLINE) {
+            wheel.deschedule(node);
+        } else {
+            wheel.reschedule(node);
+        }
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the key is mapped, or null if it is absent or its
+     * entry has expired. Does not remove anything.
+     */
+
+    @Override
+    public V get(K key) {
+        myHashMapMetrics m = metrics();
+        HashNode<K, V> node = m == null ? getNode(key) : meteredGetNode(m, key);
+        if (node == null || isExpired(node, now())) {
+            if (m != null) {
+                m.countMiss();
+            }
+            return null;
+        }
+        return node.value;
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if the map holds the key in an entry that has not expired.
+     */
+
+    @Override
+    public boolean containsKey(K key) {
+        HashNode<K, V> node = getNode(key);
+        return node != null && node.value != null && !isExpired(node, now());
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Stores the pair with the map's default time to live. Returns the previous
+     * value, or null if there was none or it had expired.
+     */
+
+    @Override
+    public V put(K key, V value) {
+        return putWithTtl(key, value, defaultTtlNanos);
+    }
+
+    /**
+     * method: V put(K, V, long, TimeUnit)
+     *
+     * Stores the pair, to expire after 'ttl' (or NEVER). Returns the previous value,
+     * or null if there was none or it had expired.
+     */
+
+    public V put(K key, V value, long ttl, TimeUnit unit) {
+        return putWithTtl(key, value, ttlNanos(ttl, unit));
+    }
+
+    /*
+     * put() needs no separate lookup for an expired entry: it overwrites the entry
+     * anyway, and afterNodeAccess() reports whether it had expired.
+     */
+    private V putWithTtl(K key, V value, long ttlNanos) {
+        beginWrite(ttlNanos, true);
+        V oldValue = super.put(key, value);
+        return touchedExpired ? null : oldValue;
+    }
+
+    /**
+     * Method: putAll(K[], V[])
+     *
+     * Stores the batch with the map's default time to live; the wheel is advanced
+     * once, for the whole batch.
+     */
+
+    @Override
+    public void putAll(K[] keys, V[] values) {
+        beginWrite(defaultTtlNanos, true);
+        super.putAll(keys, values);
+    }
+
+    /**
+     * Method: int getAll(K[], V[])
+     *
+     * Looks the keys up one at a time, treating the entries that have expired as
+     * absent; the clock is read once, for the whole batch.
+     */
+
+    @Override
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Batch of " + keys.length + " keys, room for " + out.length + " values");
+        }
+        long now = now();
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            HashNode<K, V> node = getNode(keys[i]);
+            boolean live = node != null && !isExpired(node, now);
+            out[i] = live ? node.value : null;
+            if (live) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Method: int removeAll(Collection)
+     *
+     * Removes the batch; the entries that had expired already count as expired,
+     * not as removed.
+     */
+
+    @Override
+    public int removeAll(Collection<? extends K> keys) {
+        beginWrite(defaultTtlNanos, false);
+        removedExpired = 0;
+        int removed = super.removeAll(keys);
+        expired += removedExpired;
+        return removed - removedExpired;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        beginReadWrite(key, defaultTtlNanos, false);
+        return super.putIfAbsent(key, value);
+    }
+
+    /*
+     * remove() needs no separate lookup either: afterNodeRemoval() reports whether
+     * the entry it removed had expired.
+     */
+    @Override
+    public V remove(K key) {
+        beginWrite(defaultTtlNanos, false);
+        V oldValue = super.remove(key);
+        if (touchedExpired) {
+            expired++;
+            return null;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public boolean remove(K key, V val) {
+        beginWrite(defaultTtlNanos, false);
+        if (!super.remove(key, val)) {
+            return false;
+        }
+        if (touchedExpired) {
+            expired++;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V val) {
+        beginReadWrite(key, defaultTtlNanos, true);
+        return super.replace(key, val);
+    }
+
+    @Override
+    public boolean replace(K key, V oldVal, V newVal) {
+        beginReadWrite(key, defaultTtlNanos, true);
+        return super.replace(key, oldVal, newVal);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        beginReadWrite(key, defaultTtlNanos, true);
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        beginReadWrite(key, defaultTtlNanos, false);
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        beginReadWrite(key, defaultTtlNanos, true);
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        beginReadWrite(key, defaultTtlNanos, true);
+        return super.merge(key, value, remappingFunction);
+    }
+
+    /**
+     * Method: boolean setTimeToLive(K, long, TimeUnit)
+     *
+     * Restarts the key's time to live with the given duration (or NEVER).
+     *
+     * @return true if the key was present, false if it was absent or had expired
+     */
+
+    public boolean setTimeToLive(K key, long ttl, TimeUnit unit) {
+        beginReadWrite(key, ttlNanos(ttl, unit), false);
+        HashNode<K, V> node = getNode(key);
+        if (node == null) {
+            return false;
+        }
+        setDeadline((LinkedNode<K, V>) node, writeDeadline);
+        return true;
+    }
+
+    /**
+     * Method: long getTimeToLive(K, TimeUnit)
+     *
+     * Returns the time the key's entry has left to live, rounded down to the unit,
+     * NEVER if it does not expire, or -1 if the key is absent or has expired.
+     */
+
+    public long getTimeToLive(K key, TimeUnit unit) {
+        HashNode<K, V> node = getNode(key);
+        if (node == null) {
+            return -1;
+        }
+        long deadline = ((LinkedNode<K, V>) node).deadline;
+        if (deadline == NO_DEADLINE) {
+            return NEVER;
+        }
+        long left = deadline - now();
+        return left <= 0 ? -1 : unit.convert(left, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method: cleanUp()
+     *
+     * Advances the expiry wheel to the current time, removing the entries that
+     * expired before the current wheel tick. Writes do it anyway; call it when the
+     * map is only read for a while, or before iterating it.
+     */
+
+    public void cleanUp() {
+        wheel.advance(now());
+    }
+
+    public long expiredCount() {
+        return expired;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes every entry. Clearing does not count as expiring them.
+     */
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (wheel != null) { // null while myHashMap's constructor runs
+            wheel.clear();
+        }
+    }
+
+    /*
+     * myHashMap's node factory: every node gets the current write's deadline and is
+     * scheduled on the wheel, and a node copied by treeify / untreeify takes the
+     * place of the original there.
+     */
+
+    @Override
+    HashNode<K, V> newNode(int hash, K key, V value, HashNode<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(hash, key, value, next);
+        setDeadline(node, writeDeadline);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, HashNode<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(hash, key, value, next);
+        setDeadline(node, writeDeadline);
+        return node;
+    }
+
+    @Override
+    HashNode<K, V> replacementNode(HashNode<K, V> p, HashNode<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(p.hash, p.key, p.value, next);
+        replaceNode((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> replacementTreeNode(HashNode<K, V> p, HashNode<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(p.hash, p.key, p.value, next);
+        replaceNode((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    private void replaceNode(LinkedNode<K, V> p, LinkedNode<K, V> node) {
+        node.deadline = p.deadline;
+        if (TimerWheel.isScheduled(p)) {
+            wheel.replace(p, node);
+        }
+    }
+
+    /**
+     * A value was read or stored through the key of an existing entry: a write
+     * that stores values restarts the entry's time to live.
+     */
+
+    @Override
+    void afterNodeAccess(HashNode<K, V> p) {
+        if (renewOnAccess) {
+            LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+            touchedExpired = isExpired(node, wheel.time());
+            setDeadline(node, writeDeadline);
+        }
+    }
+
+    @Override
+    void afterNodeRemoval(HashNode<K, V> p) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        touchedExpired = isExpired(node, wheel.time());
+        if (touchedExpired) {
+            removedExpired++;
+        }
+        wheel.deschedule(node);
+    }
+
+} /* end class myExpiringHashMap */
@@ -35,6 +35,14 @@
  *  ---------------
  *
  *     void  clear()               - Removes all of the mappings from this map.
+ *     void  clear(int)            - clear(), keeping room for the given number of <k,v> pairs
+ *     void  compact()             - Shrinks the bucket list to fit the pairs (not below its initial size)
+ *     void  trimToSize()          - Shrinks the bucket list to fit the pairs
+ *     void  ensureCapacity(int)   - Grows the bucket list at once to hold the given number of pairs
+ *     void  putAll(K[], V[])      - Puts a batch of <k,v> pairs, resizing at most once
+ *     void  putAll(Map)           - Puts every mapping of a java.util.Map, as a batch
+ *      int  getAll(K[], V[])      - Looks up a batch of keys, returns the number found
+ *      int  removeAll(Collection) - Removes a batch of keys, returns the number removed
  *  boolean  containsValue(V)      - Returns true if this map maps one or more keys to the specified value
  *  boolean  containsKey(K)        - Returns true if this map contains a mapping for the specified key.
  *       V   get(K)                - Returns the value to which the specified key is mapped, or null
@@ -53,6 +61,28 @@
  *                                   to the specified value.
  *  Set<K>   keySet()              - Returns a 'Set' view of the keys contained in the map.
  *  Set<Map.Entry<K,V>> entrySet() - Returns a 'Set' view of the mappings contains in the map.
+ *  Collection<V> values()         - Returns a 'Collection' view of the values contained in the map.
+ *     void  forEach(BiConsumer)   - Performs the action for each <k,v> pair in the map
+ *     void  replaceAll(BiFunction)- Replaces each value with the result of the function
+ *       V   compute(K, BiFunction) - Computes a new value for the key from its current value
+ *       V   computeIfAbsent(K, Function) - Computes a value for the key if it is absent
+ *       V   computeIfPresent(K, BiFunction) - Computes a new value for the key if it is present
+ *       V   merge(K, V, BiFunction) - Stores the value, or combines it with the current one
+ *     void  forEach(long, BiConsumer) - forEach, split over a ForkJoinPool when large enough
+ *       V   reduceValues(long, BiFunction) - Combines all values with the reducer, in parallel
+ *       U   search(long, BiFunction) - Returns some non-null result of the function, in parallel
+ *  boolean  containsValue(long, V)  - containsValue, split over a ForkJoinPool when large enough
+ *     void  enableValueIndex()    - Maintains a value -> count index, making containsValue O(1)
+ *     void  disableValueIndex()   - Drops the value index
+ *     long  valueIndexBytes()     - Estimated memory used by the value index
+ *  myFrozenHashMap<K,V> freeze()  - Returns an immutable, perfectly hashed copy for read-mostly lookups
+ *     void  writeSnapshot(Path, BinaryCodec, BinaryCodec) - Writes the pairs to a binary snapshot file
+ *  myHashMap<K,V> loadSnapshot(Path, BinaryCodec, BinaryCodec) - (static) Loads a snapshot, presized
+ *     void  attachLog(myHashMapLog) - Appends every change of the map to the log
+ *     void  detachLog()           - Stops logging changes
+ *  myHashMapMetrics enableMetrics() - Starts counting and timing get / put / remove and resizes
+ *     void  disableMetrics()      - Stops collecting metrics
+ *  myHashMapMetrics metrics()     - returns the map's metrics, null if disabled
  *      int  size()                - returns the number of <k,v> pairs in hashmap
  *      boolean isEmpty()          - returns true if this map contains no key-value mappings.
  *
@@ -60,39 +90,38 @@
  *  Methods *NOT* implemented to fully emulate the behavior 
  *  of Java's HashMap Class
  *      - clone()
- *      - compute()
- *      - computeIfAbsent()
- *      - computeIfPresent()
- *      - foreach()
- *      - merge(()
- *      - putAll()
- *      - replaceAll()
- *      - values()
  *
  ****************************************/
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
-import java.util.HashSet;
-
-/**
- * Class HashNode
- *
- * Node object representing a <Key, Value> pair stored in the Hash Map, elements
- * hashed to the same bucket slot will be chained through a singly linked-list.
- */
-
-class HashNode<K, V> {
-    K key;
-    V value;
-    HashNode<K, V> next;
-
-    public HashNode() {
-        this.key = key;
-        this.value = value;
-    }
-}
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A simple implementation of a HashMap that is built to emulate the Map
@@ -119,21 +148,212 @@ class HashNode<K, V> {
  * will also illustrate the load factor being reached much faster and seeing the
  * hashmap
  * growth code be exercised.
+ *
+ * Power-of-two mode: a map built with myHashMap(initialCapacity, loadFactor) keeps
+ * its bucket count a power of two. Instead of the MOD compression, the high bits of
+ * the hash code are folded into the low bits and the bucket index is taken with a
+ * mask, which avoids an integer division on every probe and spreads keys whose hash
+ * codes only differ in their high bits. The default constructor keeps the original
+ * 10 bucket / MOD behavior.
+ *
+ * Treeified buckets: when a bucket's chain grows to TREEIFY_THRESHOLD nodes (and
+ * the map has at least MIN_TREEIFY_CAPACITY buckets, else it grows instead), its
+ * nodes are replaced by TreeNodes that also form a red-black tree. Lookups in such
+ * a bucket take O(log n) even if many keys share a hash code, e.g. crafted keys in
+ * a collision attack. When removals or a resize shrink the bucket to
+ * UNTREEIFY_THRESHOLD nodes or less, it is turned back into a plain chain.
+ *
+ * Incremental resizing: by default, growing the map rehashes every node in one go
+ * inside the put() that crossed the load factor. When the map is constructed with
+ * incrementalResize set, that put() only allocates the doubled bucket list. The old
+ * and new bucket lists then live side by side, and each following put() / remove()
+ * migrates a few old buckets across, so no single operation pays the full rehash.
+ * Until the migration completes, a key whose old bucket has not been migrated yet is
+ * found in 'oldBucket', every other key is found in 'bucket'.
+ *
+ * Shrinking: a removal that leaves the map at a quarter of its load factor halves
+ * the number of buckets (never below the initial count), merging each pair of
+ * buckets that hash to the same one. The map is then at half its load factor, as
+ * far from growing as from shrinking again, so it doesn't thrash around one size.
+ * compact() and trimToSize() shrink to fit at once; clear(int) keeps a chosen
+ * capacity for a refill. Removals through the views never shrink, so that an
+ * iteration isn't disturbed.
+ *
+ * Batches: putAll(), getAll() and removeAll() hash every key of the batch up front,
+ * then probe the buckets in index order rather than at random (putAll() after a
+ * single ensureCapacity()), which saves the per-call checks and lets the hardware
+ * prefetch the bucket list. Subclasses whose lookups do more than find a node
+ * (myCacheMap, myExpiringHashMap) override them.
+ *
+ * Views: keySet(), values() and entrySet() return views backed by the buckets
+ * rather than copies, so creating one is O(1) and iterating one allocates no
+ * entries. Their iterators are fail-fast: 'modCount' counts the structural changes
+ * (inserts, removals, clear, and the bucket migrations of an incremental resize),
+ * and an iterator throws ConcurrentModificationException once it differs from the
+ * count it expects. Removing through the iterator (or the view) is supported.
+ * The views also have spliterators, so stream() and parallelStream() work on them
+ * directly. A spliterator covers a range of bucket indexes and splits by halving
+ * that range, so a parallel stream divides the buckets between its threads without
+ * copying anything.
+ *
+ * Parallel bulk operations: forEach, reduceValues, search and containsValue have
+ * overloads taking a parallelism threshold. When the map holds at least that many
+ * <k,v> pairs, the bucket lists are split into index ranges that are processed as
+ * fork-join tasks on the common ForkJoinPool; below it (e.g. with Long.MAX_VALUE)
+ * they run sequentially in the calling thread. The map must not be modified while
+ * such an operation runs.
+ *
+ * Value index: after enableValueIndex(), the map keeps a second myHashMap from each
+ * value to the number of keys mapped to it, updated by every method that stores,
+ * replaces or removes a value (including setValue() on an entry of entrySet()).
+ * containsValue() then takes one lookup in that index instead of a scan of every
+ * node, at the cost of an extra hash per write and the memory reported by
+ * valueIndexBytes().
+ *
+ * Snapshots: writeSnapshot() writes the pairs, encoded by BinaryCodecs, to a file
+ * laid out as the buckets of a presized power-of-two map. A restart can then either
+ * map the file with a myHashMapSnapshot, which opens in O(1) and deserializes an
+ * entry only when a lookup reaches it, or rebuild a mutable map with loadSnapshot(),
+ * which links the entries into their buckets without a single resize or rehash.
+ *
+ * Freezing: freeze() copies the pairs into a myFrozenHashMap, an immutable map
+ * indexed by a minimal perfect hash (CHD style) over flat arrays: one probe per
+ * lookup, no chains, no empty slots, and safe to read from any number of threads.
+ *
+ * Threads: a myHashMap is not thread-safe. A reader running alongside a writer,
+ * e.g. iterating entrySet() during a put() that resizes, can see a bucket half
+ * moved and miss or repeat entries. Maps shared between threads should be a
+ * myConcurrentHashMap (locked writes, weakly consistent iteration) or a
+ * myPersistentHashMap, whose snapshot() is a consistent point-in-time view taken
+ * in O(1) that writers never block on.
+ *
+ * Change log: after attachLog(), every change (put, remove, replace, compute,
+ * merge, replaceAll, clear, and removals or setValue() through the views) appends
+ * its outcome to a myHashMapLog, which can replay it into a new map after a
+ * restart. The log hooks sit next to the value index hooks.
+ *
+ * Metrics: after enableMetrics(), get() / put() / remove(K) are counted and
+ * (sampled) timed, and so are resizes and treeifications, into a myHashMapMetrics,
+ * which also reports the bucket occupancy and can be registered as a JMX MXBean.
+ * While metrics are disabled, each of those methods only pays one null check.
+ *
+ * Subclasses: every node is created by a factory method (newNode() and friends),
+ * and the map calls afterNodeAccess() / afterNodeInsertion() / afterNodeRemoval()
+ * around its changes. myCacheMap overrides them to keep its entries in eviction
+ * order and to bound its size, myExpiringHashMap to schedule its entries' expiry.
  */
 
 class myHashMap<K, V> {
 
     private static final float DEFAULT_LOAD_FACTOR = 0.7f;
     private static final int INITIAL_NUM_BUCKETS = 10;
+    private static final int MAXIMUM_NUM_BUCKETS = 1 << 30;
+    private static final int MIGRATE_BUCKETS_PER_OP = 4;
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final int MIN_TREEIFY_CAPACITY = 64;
+    private static final int SHRINK_LOAD_DIVISOR = 4;
+
+    /*
+     * Modes of computeVal(), one per public method built on it.
+     */
+    private static final int COMPUTE = 0;
+    private static final int COMPUTE_IF_ABSENT = 1;
+    private static final int COMPUTE_IF_PRESENT = 2;
+    private static final int MERGE = 3;
 
-    ArrayList<HashNode<K, V>> bucket = new ArrayList<>();
-    int numBuckets = INITIAL_NUM_BUCKETS;
+    ArrayList<HashNode<K, V>> bucket;
+    int numBuckets;
     int size = 0;
+    int modCount = 0;
+
+    private final float loadFactor;
+    private final boolean powerOfTwo;
+    private final int initialNumBuckets;
+
+    /*
+     * Incremental resize state. 'oldBucket' is null unless a migration is in
+     * progress, in which case buckets [0, migrateIndex) of it are already empty.
+     */
+    private final boolean incrementalResize;
+    ArrayList<HashNode<K, V>> oldBucket = null;
+    int oldNumBuckets = 0;
+    int migrateIndex = 0;
+
+    /*
+     * The views are stateless, so each is created on first use and then reused.
+     */
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /*
+     * Optional reverse index, null unless enableValueIndex() was called: maps each
+     * non-null value to the number of keys currently mapped to it. Null values can't
+     * be keys of a myHashMap, so they are only counted.
+     */
+    private myHashMap<V, Integer> valueIndex;
+    private int nullValueCount;
+
+    /*
+     * Optional change log, null unless attachLog() (or myHashMapLog.recover()) set
+     * it: every change to the map is appended to it.
+     */
+    private myHashMapLog<K, V> log;
+
+    /*
+     * Optional metrics, null unless enableMetrics() was called. get(), put() and
+     * remove(K) check it once and take a separate, metered path when it is set.
+     */
+    private myHashMapMetrics metrics;
 
     public myHashMap() {
-        for (int i = 0; i < numBuckets; i++) {
-            bucket.add(null);
+        this(false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param incrementalResize - when true, growing the map migrates the buckets
+     *                          over the following put() / remove() calls instead of
+     *                          rehashing the whole map at once
+     */
+    public myHashMap(boolean incrementalResize) {
+        this.incrementalResize = incrementalResize;
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        this.powerOfTwo = false;
+        this.initialNumBuckets = INITIAL_NUM_BUCKETS;
+        clear();
+    }
+
+    public myHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * Creates a map in power-of-two mode that is pre-sized to hold initialCapacity
+     * <k,v> pairs without growing, so a map whose final size is known up front skips
+     * every intermediate resize.
+     *
+     * @param initialCapacity   - number of <k,v> pairs to hold before growing
+     * @param loadFactor        - average chain length that triggers doubling the
+     *                          number of buckets
+     * @param incrementalResize - see myHashMap(boolean)
+     */
+    public myHashMap(int initialCapacity, float loadFactor, boolean incrementalResize) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
         }
+        this.incrementalResize = incrementalResize;
+        this.loadFactor = loadFactor;
+        this.powerOfTwo = true;
+        this.initialNumBuckets = tableSizeFor((long) Math.ceil(initialCapacity / (double) loadFactor));
+        clear();
     }
 
     public int Size() {
@@ -147,387 +367,2062 @@ class myHashMap<K, V> {
     /**
      * Method clear()
      *
-     * Reinitialize the hash to INITIAL_NUM_BUCKETS. For each bucket, it resets
-     * the bucket slots (in the array) to a null Node.
+     * Reinitialize the hash to its initial number of buckets (INITIAL_NUM_BUCKETS,
+     * or the pre-sized count in power-of-two mode). For each bucket, it resets the
+     * bucket slots (in the array) to a null Node.
      */
 
     public void clear() {
+        modCount++;
         size = 0;
-        numBuckets = INITIAL_NUM_BUCKETS;
-        bucket = new ArrayList<>();
-        for (int i = 0; i < numBuckets; i++) {
-            bucket.add(null);
+        if (valueIndex != null) {
+            valueIndex.clear();
+            nullValueCount = 0;
         }
+        if (log != null) {
+            log.appendClear();
+        }
+        oldBucket = null;
+        oldNumBuckets = 0;
+        migrateIndex = 0;
+        numBuckets = initialNumBuckets;
+        bucket = new ArrayList<>(Collections.nCopies(numBuckets, (HashNode<K, V>) null));
     }
 
     /**
-     * method getBucketindex()
-     *
-     * Performs two parts.
-     * 1) First invokes a very simple hash code generator which generates a 32-bit
-     * integer. The mask (bit operation) masks off the sign bit )turns the
-     * 32-bit integer into a 31-bit non-negative integer).
-     * 2) Second, it invokes a compressor expression (in this case, performing a
-     * MOD operation). This compresses the hash number to between 0 and
-     * (numBuckets-1) which will be an index into our hash bucket slot (aka,
-     * key for Map);
+     * Method clear(int)
      *
-     * @param key - key value to locate hash map bucket for
+     * Removes all of the mappings, and sizes the bucket list to hold expectedSize
+     * <k,v> pairs without growing, instead of going back to the initial number of
+     * buckets. A map that is emptied and refilled to about the same size, e.g. with
+     * map.clear(map.Size()), then skips every resize of the refill.
      *
-     * @return bucketIndex - bucket index number for key value
+     * @param expectedSize - number of <k,v> pairs to hold before growing
      */
 
-    private int getBucketIndex(K key) {
-        return (key.hashCode() & 0x7fffffff) % numBuckets;
+    public void clear(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        clear();
+        int buckets = bucketsFor(expectedSize, powerOfTwo ? 1 : INITIAL_NUM_BUCKETS);
+        if (buckets != numBuckets) {
+            numBuckets = buckets;
+            bucket = new ArrayList<>(Collections.nCopies(numBuckets, (HashNode<K, V>) null));
+        }
     }
 
     /**
-     * method: V get(K)
-     *
-     * Returns the value to which the specified key is mapped, or null if this map
-     * contains
-     * no mapping for the key. This method will probe to the correct bucket, then
-     * loop
-     * through the bucket's chained nodes (linked-list) until the key is found. If
-     * not found,
-     * the key is not in the hash map and the method will return null.
-     *
-     * @param key - key value for identifying the <k,v> pair
+     * Method compact()
      *
-     * @return val - value for the provided key value, else null
+     * Shrinks the bucket list to the fewest buckets that hold the current <k,v>
+     * pairs within the load factor, but not below the number of buckets the map
+     * was created with. Completes an incremental resize in progress first.
      */
 
-    public V get(K key) {
-        int index = getBucketIndex(key);
-
-        HashNode<K, V> head = bucket.get(index);
-        while (head != null) {
-            if (head.key.equals(key)) {
-                return head.value;
-            }
-            head = head.next;
-        }
-        return null;
+    public void compact() {
+        shrinkTo(bucketsFor(size, initialNumBuckets));
     }
 
     /**
-     * method: V remove(K)
-     *
-     * Removes the entry for the specified key only if it is currently mapped to the
-     * specified value. The method will probe into the bucket lists. If the bucket
-     * has a chained list, then it will be traversed to identify the key to
-     * remove. If no chained list and/or no node is found the chained list
-     * representing
-     * the key, then it is not in the hash map.
+     * Method trimToSize()
      *
-     * If the key is found, it is removed from the chained list and the hashmap size
-     * is adjusted.
+     * Like compact(), but ignores the capacity the map was created with: the
+     * bucket list goes down to the fewest buckets that hold the current pairs.
+     */
+
+    public void trimToSize() {
+        shrinkTo(bucketsFor(size, powerOfTwo ? 1 : INITIAL_NUM_BUCKETS));
+    }
+
+    /**
+     * Method ensureCapacity(int)
      *
-     * @param key - key value for the <key,value> pair to remove
+     * Grows the bucket list at once, if needed, so that it holds 'pairs' <k,v>
+     * pairs without exceeding the load factor: the puts that follow then never
+     * resize. An incremental resize in progress is completed first, and the growth
+     * itself is not incremental.
      *
-     * @return value - return the node for the <key,value>
-     *         removed, else null if not found
+     * @param pairs - number of <k,v> pairs to make room for, the current ones included
      */
 
-    public V remove(K key) {
+    public void ensureCapacity(int pairs) {
+        int target = bucketsFor(pairs, numBuckets);
+        if (target <= numBuckets) {
+            return;
+        }
+        if (oldBucket != null) {
+            migrateBuckets(oldNumBuckets - migrateIndex);
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        while (numBuckets < target) {
+            resize();
+        }
+        modCount++;
+        if (metrics != null) {
+            metrics.recordResize(System.nanoTime() - start);
+        }
+    }
 
-        /*
-         * ADD YOUR CODE HERE
-         *
-         * Review the code in the whole object to understand teh data structures layout.
-         * Additionally, review the method put() for inserting a new Key / Value pair
-         * into
-         * the HashMap. This method will do the opposite by removing an element. Do see
-         * the return value discussion in this method's prologue to make sure the
-         * correct
-         * return value is returned the invoking function based on the remove outcome.
-         */
+    /**
+     * Returns the smallest valid bucket count, at least 'min', that holds 'pairs'
+     * <k,v> pairs without exceeding the load factor: a power of two, or in the
+     * default mode 'min' doubled as many times as needed, as the bucket count there
+     * is always INITIAL_NUM_BUCKETS times a power of two.
+     */
 
-        // We need to get the key's hash code in order to identify whether the key is
-        // present in the hashMap buckets
-        int indexOfKeyThatWeAreLookingFor = getBucketIndex(key);// Locate the bucket index
-        HashNode<K, V> currentNode = bucket.get(indexOfKeyThatWeAreLookingFor);// Get the bucket associated with it and
-                                                                               // pull the head of the linked located in
-                                                                               // that bucket
-        HashNode<K, V> nodeBeforCurrent = null;// Temp node used to conduct removal
-
-        if (currentNode == null) {// if that buckect contains no key, value pairs, then that tells us this key
-                                  // does not exist in our HashMap and that bucket is null
-            return null;// The bucket is empty
-        } else {// if the bucket holds a linked, we will need to traverse that list in an effort
-                // to locate that key
-            while (currentNode != null && !currentNode.key.equals(key)) {// Traverse the list, checking to see if each
-                                                                         // of the node's in the list are not
-                                                                         // null(meaning we haven't reached the end of
-                                                                         // the list) and do not contain the key we are
-                                                                         // looking for.
-                nodeBeforCurrent = currentNode;// Tracking the node prior for easy removal process
-                currentNode = currentNode.next;// Move onto the next node for analysis
-            }
-        } // at this point the while loop would have stopped either because we have
-          // located a node that is null or located the key that we are looking for, let's
-          // go ahead and handle the case in whihc we searched the entirety of the linked
-          // list and we found no matching key
-        if (currentNode == null) {
-            return null;// we have traversed and found no matching key
+    private int bucketsFor(long pairs, int min) {
+        if (powerOfTwo) {
+            return Math.max(min, tableSizeFor((long) Math.ceil(pairs / (double) loadFactor)));
         }
+        int buckets = min;
+        while (buckets < MAXIMUM_NUM_BUCKETS && pairs > (double) loadFactor * buckets) {
+            buckets *= 2;
+        }
+        return buckets;
+    }
 
-        V removedValue = currentNode.value;
+    /**
+     * Returns the smallest power of two that is >= cap (at least 1).
+     */
 
-        if (nodeBeforCurrent != null) {
-            // If the node before the current node is not null, this indicates that they key
-            // that we are removing is not at the start of the linked list, so we can simply
-            // just bypass the node that we are removing.
-            nodeBeforCurrent.next = currentNode.next;// connecting node before removal node to node after removal node
-        } else {
-            // If the node to remove is the head, use the set
-            bucket.set(indexOfKeyThatWeAreLookingFor, currentNode.next);// If we are removing the first node in the
-                                                                        // linked list, you need to make the next node
-                                                                        // the new head of the linked list.
+    private static int tableSizeFor(long cap) {
+        if (cap >= MAXIMUM_NUM_BUCKETS) {
+            return MAXIMUM_NUM_BUCKETS;
         }
-
-        size--;// adjusting the size of the map
-        return removedValue;// returning the node removed
+        return cap <= 1 ? 1 : Integer.highestOneBit((int) cap - 1) << 1;
     }
 
     /**
-     * Method: boolean remove(K, V)
+     * method hash() / indexFor()
      *
-     * Removes the entry for the specified key only if it is currently mapped to
-     * some value
+     * Performs two parts.
+     * 1) First invokes a very simple hash code generator which generates a 32-bit
+     * integer. The mask (bit operation) masks off the sign bit )turns the
+     * 32-bit integer into a 31-bit non-negative integer).
+     * 2) Second, it invokes a compressor expression (in this case, performing a
+     * MOD operation). This compresses the hash number to between 0 and
+     * (numBuckets-1) which will be an index into our hash bucket slot (aka,
+     * key for Map);
      *
-     * @param: key - key for identifying <k,v>
-     * @param: val - will remove <k,v> only if existing value
-     *             equals val
+     * In power-of-two mode, step 1 instead XORs the upper 16 bits of the hash code
+     * into the lower 16 bits, and step 2 masks with (numBuckets-1), which gives the
+     * same result as the MOD without the division.
      *
-     * @return: true if deleted, else false
+     * The result of step 1 is what is stored in HashNode.hash, step 2 is applied to
+     * it with the bucket count of whichever bucket list is being probed.
      */
 
-    public boolean remove(K key, V val) {
-
-        V originalValue = get(key);
+    int hash(K key) {
+        int h = key.hashCode();
+        return powerOfTwo ? h ^ (h >>> 16) : h & 0x7fffffff;
+    }
 
-        if (originalValue == null ||
-                (!originalValue.equals(val))) {
-            return false;
-        }
+    private int indexFor(int hash, int buckets) {
+        return powerOfTwo ? hash & (buckets - 1) : hash % buckets;
+    }
 
-        // Key was found and its value equals the passed
-        // parameter 'val'
-        remove(key);
+    /**
+     * method: matches(HashNode, int, K)
+     *
+     * Returns true if the node holds the key. The stored hashes are compared first,
+     * so equals() is only called when the hashes agree.
+     */
 
-        return true;
+    private static <K, V> boolean matches(HashNode<K, V> node, int hash, K key) {
+        return node.hash == hash && (node.key == key || node.key.equals(key));
     }
 
     /**
-     * method: V put(K, V)
+     * method: tableFor(int)
      *
-     * Associates the specified value with the specified key in this map. The method
-     * will check if the key is already in the hash map, if so, it updates the value
-     * and returns the old value. If the key is not found, then it will insert the
-     * <k,v> pair. Last if inserting the <k,v>, the load factor is checked. If it is
-     * greater than the DEFAULT_LOAD_FACTOR %, the method will double the bucket
-     * map and rehash the whole hash map.
+     * Returns the bucket list that holds the chain for this key. This is always
+     * 'bucket', except during an incremental resize when the key's old bucket has
+     * not been migrated yet.
      *
-     * @param key   - Key to the <k,v> pair operate on
-     * @param value - if key found, value is updated to this
-     *              param, else routine inserts <k,v>
+     * @param hash - the key's hash, as returned by hash(K)
      *
-     * @return value - if key exists, returns old value before
-     *         replacing with provided value, else null.
+     * @return the bucket list to probe for the key
      */
 
-    public V put(K key, V value) {
+    private ArrayList<HashNode<K, V>> tableFor(int hash) {
+        if (oldBucket != null && indexFor(hash, oldNumBuckets) >= migrateIndex) {
+            return oldBucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * method: tables()
+     *
+     * Returns the bucket lists currently holding nodes, for the methods that walk
+     * the whole map. That is 'bucket', plus 'oldBucket' while a resize is migrating.
+     */
+
+    private List<ArrayList<HashNode<K, V>>> tables() {
+        return oldBucket == null ? List.of(bucket) : List.of(oldBucket, bucket);
+    }
+
+    /**
+     * method: resize()
+     *
+     * Doubles the number of buckets and moves every node into the grown bucket
+     * list. The nodes are relinked rather than re-inserted through put(), so the
+     * resize allocates nothing per entry, calls no equals(), and never re-checks
+     * the load factor.
+     */
+
+    private void resize() {
+        ArrayList<HashNode<K, V>> tmp = bucket;
+        int oldBuckets = numBuckets;
+        numBuckets = 2 * numBuckets;
+        bucket = new ArrayList<>(Collections.nCopies(numBuckets, (HashNode<K, V>) null));
 
         /*
-         * If the <key,value> already exists in the hash map,
-         * then replace the value, else insert the <key,value>
+         * Traverse the original buckets, and split each bucket's
+         * chain into the two buckets of the grown list it can
+         * rehash to.
          */
-        V oldValue = get(key);
-        if (oldValue != null) {
-            replace(key, value);
-            return oldValue;
+        for (int j = 0; j < oldBuckets; j++) {
+            HashNode<K, V> headNode = tmp.get(j);
+            if (headNode != null) {
+                splitBucket(headNode, j, oldBuckets);
+            }
         }
+    }
+
+    /**
+     * method: splitBucket(HashNode, int, int)
+     *
+     * Moves the chain of old bucket 'j' into the doubled bucket list. Since the
+     * bucket count exactly doubled, (hash % 2n) is either (hash % n) or
+     * (hash % n) + n, so the chain splits into a 'lo' half that stays in bucket j
+     * and a 'hi' half that moves to bucket j + n. In power-of-two mode the half is
+     * decided by the single hash bit that the doubled mask adds. Both halves keep
+     * the relative order of the nodes, and both target buckets are known to be empty.
+     *
+     * @param head       - first node of the old bucket's chain
+     * @param j          - index of the old bucket
+     * @param oldBuckets - number of buckets before doubling
+     */
 
-        int index = getBucketIndex(key);
-        HashNode<K, V> head = bucket.get(index);
-        HashNode<K, V> toAdd = new HashNode<>();
-        toAdd.key = key;
-        toAdd.value = value;
-        if (head == null) {
-            bucket.set(index, toAdd);
-            size++;
+    private void splitBucket(HashNode<K, V> head, int j, int oldBuckets) {
+        if (head instanceof TreeNode) {
+            splitTreeBin((TreeNode<K, V>) head, j, oldBuckets);
+            return;
+        }
 
-        } else {
-            while (head != null) {
-                if (head.key.equals(key)) {
-                    head.value = value;
-                    size++;
-                    break;
+        HashNode<K, V> loHead = null, loTail = null;
+        HashNode<K, V> hiHead = null, hiTail = null;
+
+        for (HashNode<K, V> node = head, next; node != null; node = next) {
+            next = node.next;
+            boolean lo = powerOfTwo ? (node.hash & oldBuckets) == 0
+                    : indexFor(node.hash, 2 * oldBuckets) == j;
+            if (lo) {
+                if (loTail == null) {
+                    loHead = node;
+                } else {
+                    loTail.next = node;
                 }
-                head = head.next;
-            }
-            if (head == null) {
-                head = bucket.get(index);
-                toAdd.next = head;
-                bucket.set(index, toAdd);
-                size++;
+                loTail = node;
+            } else {
+                if (hiTail == null) {
+                    hiHead = node;
+                } else {
+                    hiTail.next = node;
+                }
+                hiTail = node;
             }
         }
 
-        /*
-         * Check the load factor of the hashmap, if greater
-         * than DEFAULT_LOAD_FACTOR, we will double the number
-         * of buckets of our hashmap.
-         */
+        if (loTail != null) {
+            loTail.next = null;
+            bucket.set(j, loHead);
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            bucket.set(j + oldBuckets, hiHead);
+        }
+    }
 
-        if ((1.0 * size) / numBuckets > DEFAULT_LOAD_FACTOR) {
-            // do something
-            ArrayList<HashNode<K, V>> tmp = bucket;
-            bucket = new ArrayList<>();
-            numBuckets = 2 * numBuckets;
-            size = 0;
-
-            for (int i = 0; i < numBuckets; i++) {
-                bucket.add(null);
-            }
-
-            /*
-             * Traverse the original buckets, and for each bucket
-             * traverse the nodes stored there (via linked-list).
-             * For each node (<key, value> pair), add to the new
-             * (grown) bucket list. The re-add process will
-             * rehash the keys to the new bucket size.
-             */
-            for (HashNode<K, V> headNode : tmp) {
-                while (headNode != null) {
-                    put(headNode.key, headNode.value);
-                    headNode = headNode.next;
+    /**
+     * method: splitTreeBin(TreeNode, int, int)
+     *
+     * The splitBucket() of a treeified bucket. The chain is split into lo and hi
+     * halves the same way (keeping the 'prev' links too), then each half is either
+     * turned back into a plain chain, if it is small enough, or re-treeified. When
+     * all the nodes land in one half, the existing tree is kept as is.
+     */
+
+    private void splitTreeBin(TreeNode<K, V> head, int j, int oldBuckets) {
+        TreeNode<K, V> loHead = null, loTail = null;
+        TreeNode<K, V> hiHead = null, hiTail = null;
+        int loCount = 0, hiCount = 0;
+
+        for (TreeNode<K, V> node = head, next; node != null; node = next) {
+            next = (TreeNode<K, V>) node.next;
+            node.next = null;
+            boolean lo = powerOfTwo ? (node.hash & oldBuckets) == 0
+                    : indexFor(node.hash, 2 * oldBuckets) == j;
+            if (lo) {
+                if ((node.prev = loTail) == null) {
+                    loHead = node;
+                } else {
+                    loTail.next = node;
+                }
+                loTail = node;
+                loCount++;
+            } else {
+                if ((node.prev = hiTail) == null) {
+                    hiHead = node;
+                } else {
+                    hiTail.next = node;
                 }
+                hiTail = node;
+                hiCount++;
             }
         }
 
-        return null;
+        if (loHead != null) {
+            if (loCount <= UNTREEIFY_THRESHOLD) {
+                bucket.set(j, loHead.untreeify(this));
+            } else {
+                bucket.set(j, loHead);
+                if (hiHead != null) { // (else is already treeified)
+                    loHead.treeify();
+                }
+            }
+        }
+        if (hiHead != null) {
+            if (hiCount <= UNTREEIFY_THRESHOLD) {
+                bucket.set(j + oldBuckets, hiHead.untreeify(this));
+            } else {
+                bucket.set(j + oldBuckets, hiHead);
+                if (loHead != null) {
+                    hiHead.treeify();
+                }
+            }
+        }
     }
 
     /**
-     * method: V putIfAbsent(K, V)
-     *
-     * If the specified key is not already associated with a value (or is mapped to
-     * null)
-     * associates it with the given value and returns null, else returns the current
-     * value.
+     * method: treeifyBin(ArrayList, int)
      *
-     * @param: key - The key to check if exists in the hashmap
-     * @parem: value - The value to place in as a <k, v> pair if
-     *         key does not exist
+     * Replaces the nodes of a long chain by TreeNodes and links them into a tree.
+     * While the map is still small, growing it is preferred, as that splits the
+     * chain instead.
      *
-     * @return: V - returns the existing value if the key is
-     *          found, else null
+     * @param table - bucket list holding the chain
+     * @param index - index of the bucket in that list
      */
 
-    public V putIfAbsent(K key, V value) {
-        V originalValue = get(key);
-
-        if (originalValue == null) {
-            put(key, value);
-            return null;
+    private void treeifyBin(ArrayList<HashNode<K, V>> table, int index) {
+        if (numBuckets < MIN_TREEIFY_CAPACITY) {
+            if (oldBucket == null) {
+                grow();
+            }
+            return;
         }
 
-        return originalValue;
+        TreeNode<K, V> hd = null, tl = null;
+        for (HashNode<K, V> e = table.get(index); e != null; e = e.next) {
+            TreeNode<K, V> p = replacementTreeNode(e, null);
+            if (tl == null) {
+                hd = p;
+            } else {
+                p.prev = tl;
+                tl.next = p;
+            }
+            tl = p;
+        }
+        table.set(index, hd);
+        if (hd != null) {
+            hd.treeify();
+        }
+        if (metrics != null) {
+            metrics.recordTreeify();
+        }
     }
 
     /**
-     * method: V replace(K, V)
-     *
-     * Replaces the entry for the specified key only if it is currently mapped to
-     * some value (aka, the
-     * key already exist with some value).
-     *
-     * @param key - Key for the <k, v> pair to replace its
-     *            value
-     * @param val - The new value to replace the old one if
-     *            found.
+     * method: grow()
      *
-     * @return V - returns the old value for the <k,v> pair,
-     *         else null if not found.
+     * Doubles the number of buckets, all at once or incrementally depending on how
+     * the map was constructed.
      */
 
-    public V replace(K key, V val) {
-
-        /*
-         * ADD YOUR CODE HERE - DO NOT FORGET TO ADD YOUR NAME AT TOP OF FILE
-         *
-         * Make sure you return the proper value based on the outcome of this method's
-         * replace (see method's prologue above).
-         */
-        // So we need to locate the key given, so once again we need to utilize the hash
-        // function to figure out which bucket this key is in, if it's in one at all.
-        int hashFunctionCode = getBucketIndex(key);// get the hash code
-        HashNode<K, V> node = bucket.get(hashFunctionCode);// use the hash code to find the correct bucket and linked
-                                                           // list
-
-        while (node != null && !node.key.equals(key)) {// Searching for the key while we have not reached the end of the
-                                                       // linked list and we haven't located the key
-            node = node.next;
+    private void grow() {
+        if (numBuckets >= MAXIMUM_NUM_BUCKETS) {
+            return;
         }
-
-        // if we have made it to this point either we haven't found the key or we have
-        // found the key and we'll need to perform the replacement
-        if (node == null) {// no key located, return null
-            return null;
-        } else {// perform replacement
-            V oldValue = node.value;// store old value for return
-            node.value = val;// param val replaces the node's old value
-            return oldValue;// return the old value
+        long start = metrics == null ? 0 : System.nanoTime();
+        if (incrementalResize) {
+            startIncrementalResize();
+        } else {
+            resize();
+        }
+        if (metrics != null) {
+            metrics.recordResize(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * method: startIncrementalResize()
+     *
+     * Allocates the doubled bucket list and keeps the current one as 'oldBucket'.
+     * No node is moved here; the nodes are migrated by migrateBuckets(). If a
+     * previous migration has not finished yet, it is completed first.
+     */
+
+    private void startIncrementalResize() {
+        if (oldBucket != null) {
+            migrateBuckets(oldNumBuckets - migrateIndex);
+        }
+        oldBucket = bucket;
+        oldNumBuckets = numBuckets;
+        migrateIndex = 0;
+        numBuckets = 2 * numBuckets;
+        bucket = new ArrayList<>(Collections.nCopies(numBuckets, (HashNode<K, V>) null));
+    }
+
+    /**
+     * method: migrateBuckets(int)
+     *
+     * Moves the chains of up to 'count' old buckets into the new bucket list, using
+     * the same lo/hi split as resize(), so nothing is allocated. Nodes are only put
+     * into a new bucket once their old bucket is migrated, which is why the two
+     * target buckets are still empty at that point. Once every old bucket is
+     * migrated, 'oldBucket' is released.
+     *
+     * @param count - maximum number of old buckets to migrate
+     */
+
+    private void migrateBuckets(int count) {
+        while (oldBucket != null && count-- > 0) {
+            HashNode<K, V> node = oldBucket.get(migrateIndex);
+            if (node != null) {
+                oldBucket.set(migrateIndex, null);
+                splitBucket(node, migrateIndex, oldNumBuckets);
+                modCount++;
+            }
+            migrateIndex++;
+            if (migrateIndex == oldNumBuckets) {
+                oldBucket = null;
+                oldNumBuckets = 0;
+                migrateIndex = 0;
+            }
+        }
+    }
+
+    /**
+     * method: shrinkIfSparse()
+     *
+     * Called after a removal: halves the number of buckets once the map has fallen
+     * to a quarter of its load factor (as many times as needed after a batch of
+     * removals), but never below the initial number of buckets. Halving leaves the
+     * load at half the load factor, so the map has to double before it grows again
+     * and halve again before it shrinks again, and a map whose size goes back and
+     * forth around one value doesn't keep resizing. Nothing is shrunk while an
+     * incremental resize is migrating.
+     */
+
+    private void shrinkIfSparse() {
+        if (oldBucket != null) {
+            return;
+        }
+        int target = numBuckets;
+        while ((1.0 * SHRINK_LOAD_DIVISOR * size) / target < loadFactor && target / 2 >= initialNumBuckets) {
+            target /= 2;
+        }
+        if (target != numBuckets) {
+            shrinkTo(target);
+        }
+    }
+
+    /**
+     * method: shrinkTo(int)
+     *
+     * Halves the number of buckets until it is down to 'target' (a bucket count
+     * reachable by halving; does nothing if the map already has no more buckets).
+     * Timed as a resize when metrics are enabled.
+     */
+
+    private void shrinkTo(int target) {
+        if (oldBucket != null) {
+            migrateBuckets(oldNumBuckets - migrateIndex);
+        }
+        if (target >= numBuckets) {
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        while (numBuckets > target) {
+            halve();
+        }
+        modCount++;
+        if (metrics != null) {
+            metrics.recordResize(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * method: halve()
+     *
+     * The reverse of resize(): with half as many buckets, (hash % n) is the index
+     * j < n of the old bucket j or j + n (in power-of-two mode, the mask loses its
+     * top bit), so each pair of old buckets is merged into one. The nodes are
+     * relinked, not re-inserted. Merging two non-empty buckets turns any tree back
+     * into a chain first, and treeifies the merged chain if it is long enough.
+     */
+
+    private void halve() {
+        int half = numBuckets / 2;
+        ArrayList<HashNode<K, V>> tmp = bucket;
+        bucket = new ArrayList<>(tmp.subList(0, half));
+        numBuckets = half;
+
+        for (int j = 0; j < half; j++) {
+            HashNode<K, V> hi = tmp.get(j + half);
+            if (hi != null) {
+                mergeBucket(j, hi);
+            }
+        }
+    }
+
+    private void mergeBucket(int j, HashNode<K, V> hi) {
+        HashNode<K, V> lo = bucket.get(j);
+        if (lo == null) {
+            bucket.set(j, hi);
+            return;
+        }
+        if (lo instanceof TreeNode) {
+            lo = ((TreeNode<K, V>) lo).untreeify(this);
+        }
+        if (hi instanceof TreeNode) {
+            hi = ((TreeNode<K, V>) hi).untreeify(this);
+        }
+
+        int count = 1;
+        HashNode<K, V> tail = lo;
+        while (tail.next != null) {
+            tail = tail.next;
+            count++;
+        }
+        tail.next = hi;
+        for (HashNode<K, V> node = hi; node != null; node = node.next) {
+            count++;
+        }
+        bucket.set(j, lo);
+        if (count >= TREEIFY_THRESHOLD && numBuckets >= MIN_TREEIFY_CAPACITY) {
+            treeifyBin(bucket, j);
+        }
+    }
+
+    /*
+     * Node factory and callbacks, overridden by myCacheMap and myExpiringHashMap (as
+     * LinkedHashMap does for HashMap). Every node the map creates comes from one of
+     * the factories: newNode() / newTreeNode() for a new <k,v> pair,
+     * replacementNode() / replacementTreeNode() when a bucket is turned into a tree
+     * or back, which copies a node that stays in the map. The callbacks run after a node's value
+     * was read or written through a key, after an insertion is complete, and after
+     * a node was unlinked.
+     */
+
+    HashNode<K, V> newNode(int hash, K key, V value, HashNode<K, V> next) {
+        return new HashNode<>(hash, key, value, next);
+    }
+
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, HashNode<K, V> next) {
+        return new TreeNode<>(hash, key, value, next);
+    }
+
+    HashNode<K, V> replacementNode(HashNode<K, V> p, HashNode<K, V> next) {
+        return new HashNode<>(p.hash, p.key, p.value, next);
+    }
+
+    TreeNode<K, V> replacementTreeNode(HashNode<K, V> p, HashNode<K, V> next) {
+        return new TreeNode<>(p.hash, p.key, p.value, next);
+    }
+
+    void afterNodeAccess(HashNode<K, V> p) {
+    }
+
+    void afterNodeInsertion() {
+    }
+
+    void afterNodeRemoval(HashNode<K, V> p) {
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the specified key is mapped, or null if this map
+     * contains
+     * no mapping for the key. This method will probe to the correct bucket, then
+     * loop
+     * through the bucket's chained nodes (linked-list) until the key is found. If
+     * not found,
+     * the key is not in the hash map and the method will return null.
+     *
+     * @param key - key value for identifying the <k,v> pair
+     *
+     * @return val - value for the provided key value, else null
+     */
+
+    public V get(K key) {
+        if (metrics != null) {
+            return meteredGet(key);
+        }
+        HashNode<K, V> node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    private V meteredGet(K key) {
+        myHashMapMetrics m = metrics;
+        HashNode<K, V> node = meteredGetNode(m, key);
+        if (node == null) {
+            m.countMiss();
+            return null;
+        }
+        return node.value;
+    }
+
+    /**
+     * method: HashNode meteredGetNode(myHashMapMetrics, K)
+     *
+     * getNode() for a get() while metrics are enabled: counts the get, and times it
+     * if it is one of the sampled ones. Subclasses that override get() call it too,
+     * then m.countMiss() on whatever they treat as a miss (e.g. an expired entry).
+     */
+
+    final HashNode<K, V> meteredGetNode(myHashMapMetrics m, K key) {
+        if (m.countGet()) {
+            long start = System.nanoTime();
+            HashNode<K, V> node = getNode(key);
+            m.getLatency.record(System.nanoTime() - start);
+            return node;
+        }
+        return getNode(key);
+    }
+
+    /**
+     * method: HashNode getNode(K)
+     *
+     * Hashes the key, probes to its bucket, and returns the node holding the key,
+     * else null. A plain chain is walked node by node, comparing the stored hash
+     * before calling equals(); a treeified bucket is searched through its tree.
+     */
+
+    HashNode<K, V> getNode(K key) {
+        return getNode(hash(key), key);
+    }
+
+    /*
+     * getNode(), removeNode() and putVal() with the key's hash already computed, for
+     * the batch methods, which hash every key of a batch up front.
+     */
+    private HashNode<K, V> getNode(int hash, K key) {
+        ArrayList<HashNode<K, V>> table = tableFor(hash);
+        HashNode<K, V> head = table.get(indexFor(hash, table.size()));
+
+        if (head instanceof TreeNode) {
+            return ((TreeNode<K, V>) head).root().find(hash, key, null);
+        }
+        while (head != null) {
+            if (matches(head, hash, key)) {
+                return head;
+            }
+            head = head.next;
+        }
+        return null;
+    }
+
+    /**
+     * method: V remove(K)
+     *
+     * Removes the entry for the specified key only if it is currently mapped to the
+     * specified value. The method will probe into the bucket lists. If the bucket
+     * has a chained list, then it will be traversed to identify the key to
+     * remove. If no chained list and/or no node is found the chained list
+     * representing
+     * the key, then it is not in the hash map.
+     *
+     * If the key is found, it is removed from the chained list and the hashmap size
+     * is adjusted.
+     *
+     * @param key - key value for the <key,value> pair to remove
+     *
+     * @return value - return the node for the <key,value>
+     *         removed, else null if not found
+     */
+
+    public V remove(K key) {
+        if (metrics != null) {
+            return meteredRemove(key);
+        }
+        migrateBuckets(MIGRATE_BUCKETS_PER_OP);// Move a few buckets along if a resize is in progress
+        HashNode<K, V> removed = removeNode(key, null, false, true);
+        if (removed == null) {
+            return null;
+        }
+        shrinkIfSparse();// Give memory back if the map became sparse
+        return removed.value;
+    }
+
+    private V meteredRemove(K key) {
+        myHashMapMetrics m = metrics;
+        HashNode<K, V> removed;
+        if (m.countRemove()) {
+            long start = System.nanoTime();
+            migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+            removed = removeNode(key, null, false, true);
+            if (removed != null) {
+                shrinkIfSparse();
+            }
+            m.removeLatency.record(System.nanoTime() - start);
+        } else {
+            migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+            removed = removeNode(key, null, false, true);
+            if (removed != null) {
+                shrinkIfSparse();
+            }
+        }
+        return removed == null ? null : removed.value;
+    }
+
+    /**
+     * Method: boolean remove(K, V)
+     *
+     * Removes the entry for the specified key only if it is currently mapped to
+     * some value
+     *
+     * @param: key - key for identifying <k,v>
+     * @param: val - will remove <k,v> only if existing value
+     *             equals val
+     *
+     * @return: true if deleted, else false
+     */
+
+    public boolean remove(K key, V val) {
+        migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+        if (removeNode(key, val, true, true) == null) {
+            return false;
+        }
+        shrinkIfSparse();
+        return true;
+    }
+
+    /**
+     * method: HashNode removeNode(K, V, boolean, boolean)
+     *
+     * Implements remove(K) and remove(K, V) with a single hash of the key and a
+     * single walk of its chain. The node before the current one is tracked while
+     * walking, so the matching node can be unlinked without a second traversal.
+     * It does not migrate buckets itself, so that the views' iterators can remove
+     * the current node without the other nodes moving under them.
+     *
+     * @param key        - key value for the <key,value> pair to remove
+     * @param val        - value the pair must currently have, if matchValue
+     * @param matchValue - when true, only remove the pair if its value is
+     *                   non-null and equals val
+     * @param movable    - when false (removals through the views), a treeified
+     *                   bucket is never turned back into a chain, which would
+     *                   replace the nodes an iterator is walking with copies
+     *
+     * @return the node removed, else null if not found (or value did not match)
+     */
+
+    HashNode<K, V> removeNode(K key, V val, boolean matchValue, boolean movable) {
+        // We need to get the key's hash code in order to identify whether the key is
+        // present in the hashMap buckets
+        return removeNode(hash(key), key, val, matchValue, movable);
+    }
+
+    private HashNode<K, V> removeNode(int hash, K key, V val, boolean matchValue, boolean movable) {
+        ArrayList<HashNode<K, V>> table = tableFor(hash);// Old or new bucket list during a resize
+        int index = indexFor(hash, table.size());// Locate the bucket index
+        HashNode<K, V> currentNode = table.get(index);// Pull the head of the linked list located in that bucket
+        HashNode<K, V> nodeBeforeCurrent = null;// Temp node used to conduct removal
+
+        if (currentNode instanceof TreeNode) {
+            // A treeified bucket is searched through its tree
+            currentNode = ((TreeNode<K, V>) currentNode).root().find(hash, key, null);
+        } else {
+            // Traverse the list until we reach the end of the list or locate the key
+            while (currentNode != null && !matches(currentNode, hash, key)) {
+                nodeBeforeCurrent = currentNode;// Tracking the node prior for easy removal process
+                currentNode = currentNode.next;// Move onto the next node for analysis
+            }
+        }
+
+        if (currentNode == null) {
+            return null;// we have traversed and found no matching key
+        }
+        if (matchValue && (currentNode.value == null || !currentNode.value.equals(val))) {
+            return null;// key found, but it is not mapped to the given value
+        }
+
+        if (currentNode instanceof TreeNode) {
+            // Unlinks the node from both the chain and the tree
+            ((TreeNode<K, V>) currentNode).removeTreeNode(this, table, index, movable);
+        } else if (nodeBeforeCurrent != null) {
+            // The key is not at the start of the linked list, so we can simply
+            // just bypass the node that we are removing.
+            nodeBeforeCurrent.next = currentNode.next;
+        } else {
+            // If we are removing the first node in the linked list, the next node
+            // becomes the new head of the linked list.
+            table.set(index, currentNode.next);
+        }
+
+        size--;// adjusting the size of the map
+        modCount++;
+        valueRemoved(currentNode.value);
+        logRemove(currentNode.key);
+        afterNodeRemoval(currentNode);
+        return currentNode;
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Associates the specified value with the specified key in this map. The method
+     * will check if the key is already in the hash map, if so, it updates the value
+     * and returns the old value. If the key is not found, then it will insert the
+     * <k,v> pair. Last if inserting the <k,v>, the load factor is checked. If it is
+     * greater than the DEFAULT_LOAD_FACTOR %, the method will double the bucket
+     * map and rehash the whole hash map.
+     *
+     * @param key   - Key to the <k,v> pair operate on
+     * @param value - if key found, value is updated to this
+     *              param, else routine inserts <k,v>
+     *
+     * @return value - if key exists, returns old value before
+     *         replacing with provided value, else null.
+     */
+
+    public V put(K key, V value) {
+        if (metrics != null) {
+            return meteredPut(key, value);
+        }
+        return putVal(key, value, false);
+    }
+
+    /*
+     * A put that triggers a resize is timed whole; the resize is also recorded on
+     * its own by grow().
+     */
+    private V meteredPut(K key, V value) {
+        myHashMapMetrics m = metrics;
+        int oldSize = size;
+        V oldValue;
+        if (m.countPut()) {
+            long start = System.nanoTime();
+            oldValue = putVal(key, value, false);
+            m.putLatency.record(System.nanoTime() - start);
+        } else {
+            oldValue = putVal(key, value, false);
+        }
+        if (size != oldSize) {
+            m.countInsert();
+        }
+        return oldValue;
+    }
+
+    /**
+     * method: V putVal(K, V, boolean)
+     *
+     * Implements put() and putIfAbsent(). The key is hashed once and its bucket is
+     * walked once (or searched through its tree, if treeified). If the key is found,
+     * its value is replaced in place (with onlyIfAbsent, only when it is mapped to
+     * null). Else the <k,v> pair is inserted at the head of the chain, the chain is
+     * treeified if it has become too long, and last, the load factor is checked. If
+     * it is greater than the map's load factor (DEFAULT_LOAD_FACTOR unless one was
+     * given), the number of buckets of our hashmap is doubled.
+     *
+     * @param key          - Key to the <k,v> pair operate on
+     * @param value        - value to store
+     * @param onlyIfAbsent - if true, don't change an existing non-null value
+     *
+     * @return the previous value for the key, else null.
+     */
+
+    private V putVal(K key, V value, boolean onlyIfAbsent) {
+        return putVal(hash(key), key, value, onlyIfAbsent);
+    }
+
+    private V putVal(int hash, K key, V value, boolean onlyIfAbsent) {
+        migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+
+        ArrayList<HashNode<K, V>> table = tableFor(hash);
+        int index = indexFor(hash, table.size());
+        HashNode<K, V> head = table.get(index);
+        HashNode<K, V> existing = null;
+
+        if (head instanceof TreeNode) {
+            existing = ((TreeNode<K, V>) head).putTreeVal(this, hash, key, value);
+        } else {
+            int binCount = 0;
+            for (HashNode<K, V> node = head; node != null; node = node.next) {
+                if (matches(node, hash, key)) {
+                    existing = node;
+                    break;
+                }
+                binCount++;
+            }
+            if (existing == null) {
+                table.set(index, newNode(hash, key, value, head));
+                if (binCount + 1 >= TREEIFY_THRESHOLD) {
+                    treeifyBin(table, index);
+                }
+            }
+        }
+
+        if (existing != null) {
+            V oldValue = existing.value;
+            if (!onlyIfAbsent || oldValue == null) {
+                existing.value = value;
+                valueReplaced(oldValue, value);
+                logPut(key, value);
+            }
+            afterNodeAccess(existing);
+            return oldValue;
+        }
+
+        size++;
+        modCount++;
+        valueAdded(value);
+        logPut(key, value);
+        if ((1.0 * size) / numBuckets > loadFactor) {
+            grow();
+        }
+        afterNodeInsertion();
+        return null;
+    }
+
+    /**
+     * method: V putIfAbsent(K, V)
+     *
+     * If the specified key is not already associated with a value (or is mapped to
+     * null)
+     * associates it with the given value and returns null, else returns the current
+     * value.
+     *
+     * @param: key - The key to check if exists in the hashmap
+     * @parem: value - The value to place in as a <k, v> pair if
+     *         key does not exist
+     *
+     * @return: V - returns the existing value if the key is
+     *          found, else null
+     */
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * method: V replace(K, V)
+     *
+     * Replaces the entry for the specified key only if it is currently mapped to
+     * some value (aka, the
+     * key already exist with some value).
+     *
+     * @param key - Key for the <k, v> pair to replace its
+     *            value
+     * @param val - The new value to replace the old one if
+     *            found.
+     *
+     * @return V - returns the old value for the <k,v> pair,
+     *         else null if not found.
+     */
+
+    public V replace(K key, V val) {
+
+        /*
+         * ADD YOUR CODE HERE - DO NOT FORGET TO ADD YOUR NAME AT TOP OF FILE
+         *
+         * Make sure you return the proper value based on the outcome of this method's
+         * replace (see method's prologue above).
+         */
+        // So we need to locate the key given, so once again we need to utilize the hash
+        // function to figure out which bucket this key is in, if it's in one at all.
+        HashNode<K, V> node = getNode(key);
+
+        // if we have made it to this point either we haven't found the key or we have
+        // found the key and we'll need to perform the replacement
+        if (node == null) {// no key located, return null
+            return null;
+        } else {// perform replacement
+            V oldValue = node.value;// store old value for return
+            node.value = val;// param val replaces the node's old value
+            valueReplaced(oldValue, val);
+            logPut(key, val);
+            afterNodeAccess(node);
+            return oldValue;// return the old value
         }
     }
 
     /**
      * method: boolean replace(K, V, V)
      *
-     * Replaces the entry for the specified key only if currently mapped to the
-     * specified value.
+     * Replaces the entry for the specified key only if currently mapped to the
+     * specified value.
+     *
+     * @param key    - Key for the <k, v> pair to replace its
+     *               value
+     * @param oldVal - Replace only if current <k,v>'s value
+     *               is same as oldVal
+     * @param newVal - the new value to use.
+     *
+     * @return V - returns the old value for the <k,v> pair,
+     *         else null if not found.
+     */
+    // Changed boolean to V in order to follow the following instruction: returns
+    // the old value for the <k,v> pair, else null if not found, then realized that
+    // the main class is expecting a boolean, so I changed it back
+    public boolean replace(K key, V oldVal, V newVal) {
+
+        /*
+         * The precondition (aka, the Key already exists with the value 'oldval')
+         * is checked on the node found by the single lookup of the key, and the
+         * value is replaced on that same node rather than searching again
+         * through replace(K, V).
+         */
+        HashNode<K, V> node = getNode(key);
+
+        if (node == null || node.value == null || !node.value.equals(oldVal)) {
+            return false;// the key is absent, or mapped to some other value
+        }
+        node.value = newVal;
+        valueReplaced(oldVal, newVal);
+        logPut(key, newVal);
+        afterNodeAccess(node);
+        return true;// We have completed the replacement
+    }
+
+    /**
+     * method: V compute(K, BiFunction)
+     *
+     * Computes a new value for the key from its current value (null if absent). If
+     * the function returns null, the <k,v> pair is removed (or stays absent).
+     *
+     * @return the new value, else null if there is none
+     */
+
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException();
+        }
+        return computeVal(key, COMPUTE, null, remappingFunction, null, null);
+    }
+
+    /**
+     * method: V computeIfAbsent(K, Function)
+     *
+     * If the key is absent (or mapped to null), computes its value with the function
+     * and stores it unless it is null.
+     *
+     * @return the current (existing or computed) value, else null
+     */
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null) {
+            throw new NullPointerException();
+        }
+        return computeVal(key, COMPUTE_IF_ABSENT, mappingFunction, null, null, null);
+    }
+
+    /**
+     * method: V computeIfPresent(K, BiFunction)
+     *
+     * If the key is mapped to a non-null value, computes a new value from it. If
+     * the function returns null, the <k,v> pair is removed.
+     *
+     * @return the new value, else null if there is none
+     */
+
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException();
+        }
+        return computeVal(key, COMPUTE_IF_PRESENT, null, remappingFunction, null, null);
+    }
+
+    /**
+     * method: V merge(K, V, BiFunction)
+     *
+     * If the key is absent (or mapped to null), associates it with the given value.
+     * Else replaces its value with the result of the function applied to the current
+     * and the given value, or removes the <k,v> pair if that result is null. Counting
+     * becomes a single probe per element: merge(key, 1, Integer::sum).
+     *
+     * @return the new value, else null if there is none
+     */
+
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null || remappingFunction == null) {
+            throw new NullPointerException();
+        }
+        return computeVal(key, MERGE, null, null, remappingFunction, value);
+    }
+
+    /**
+     * method: V computeVal(K, int, Function, BiFunction, BiFunction, V)
+     *
+     * Implements compute(), computeIfAbsent(), computeIfPresent() and merge(). Like
+     * putVal() and removeNode(), the key is hashed once and its bucket is walked
+     * once, keeping the node before the current one. The new value is then stored in
+     * the node that was found, or the node is unlinked, or a new node is inserted at
+     * the head of the chain, all without a second lookup and without allocating
+     * anything but the inserted node.
+     *
+     * The function must not modify this map; if it does, the result is detected by
+     * modCount and reported with a ConcurrentModificationException.
+     *
+     * @param mode - COMPUTE, COMPUTE_IF_ABSENT, COMPUTE_IF_PRESENT or MERGE; only
+     *             the function argument matching the mode is used
+     *
+     * @return the value the key is mapped to afterwards, else null
+     */
+
+    private V computeVal(K key, int mode, Function<? super K, ? extends V> mappingFunction,
+                         BiFunction<? super K, ? super V, ? extends V> remappingFunction,
+                         BiFunction<? super V, ? super V, ? extends V> mergeFunction, V value) {
+        migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+
+        int hash = hash(key);
+        ArrayList<HashNode<K, V>> table = tableFor(hash);
+        int index = indexFor(hash, table.size());
+        HashNode<K, V> head = table.get(index);
+        HashNode<K, V> node = head;
+        HashNode<K, V> pred = null;
+        int binCount = 0;
+
+        if (head instanceof TreeNode) {
+            node = ((TreeNode<K, V>) head).root().find(hash, key, null);
+        } else {
+            while (node != null && !matches(node, hash, key)) {
+                pred = node;
+                node = node.next;
+                binCount++;
+            }
+        }
+
+        V oldValue = node == null ? null : node.value;
+        V newValue;
+        int mc = modCount;
+        switch (mode) {
+            case COMPUTE_IF_ABSENT:
+                if (oldValue != null) {
+                    afterNodeAccess(node);
+                    return oldValue;
+                }
+                newValue = mappingFunction.apply(key);
+                break;
+            case COMPUTE_IF_PRESENT:
+                if (oldValue == null) {
+                    return null;
+                }
+                newValue = remappingFunction.apply(key, oldValue);
+                break;
+            case MERGE:
+                newValue = oldValue == null ? value : mergeFunction.apply(oldValue, value);
+                break;
+            default:
+                newValue = remappingFunction.apply(key, oldValue);
+                break;
+        }
+        if (mc != modCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        if (node != null) {
+            if (newValue != null) {
+                node.value = newValue;
+                valueReplaced(oldValue, newValue);
+                logPut(key, newValue);
+                afterNodeAccess(node);
+            } else if (mode != COMPUTE_IF_ABSENT) {
+                // A null result removes the <k,v> pair
+                if (node instanceof TreeNode) {
+                    ((TreeNode<K, V>) node).removeTreeNode(this, table, index, true);
+                } else if (pred != null) {
+                    pred.next = node.next;
+                } else {
+                    table.set(index, node.next);
+                }
+                size--;
+                modCount++;
+                valueRemoved(oldValue);
+                logRemove(key);
+                afterNodeRemoval(node);
+                shrinkIfSparse();
+            }
+            return newValue;
+        }
+
+        if (newValue == null) {
+            return null;
+        }
+        if (head instanceof TreeNode) {
+            ((TreeNode<K, V>) head).putTreeVal(this, hash, key, newValue);
+        } else {
+            table.set(index, newNode(hash, key, newValue, head));
+            if (binCount + 1 >= TREEIFY_THRESHOLD) {
+                treeifyBin(table, index);
+            }
+        }
+        size++;
+        modCount++;
+        valueAdded(newValue);
+        logPut(key, newValue);
+        if ((1.0 * size) / numBuckets > loadFactor) {
+            grow();
+        }
+        afterNodeInsertion();
+        return newValue;
+    }
+
+    /*
+     * Batch methods. Each one hashes every key of the batch first, then processes
+     * the keys ordered by bucket (see bucketOrder()), so the bucket list is swept
+     * once from one end to the other instead of being probed at random. The puts of
+     * a batch are preceded by a single ensureCapacity() for the whole batch.
+     */
+
+    /**
+     * Method: putAll(K[], V[])
+     *
+     * Associates values[i] with keys[i], for every i, like a loop of put() calls
+     * that resizes at most once, before the first one. The pairs are stored in
+     * bucket order, not in the order given; when a key occurs more than once, its
+     * last value wins, as with put().
+     *
+     * @param keys   - the keys of the batch
+     * @param values - their values, as many as there are keys
+     */
+
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Batch of " + keys.length + " keys and " + values.length + " values");
+        }
+        ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) size + keys.length));
+        int[] hashes = hashAll(keys);
+        for (int i : bucketOrder(hashes)) {
+            putVal(hashes[i], keys[i], values[i], false);
+        }
+    }
+
+    /**
+     * Method: putAll(Map)
+     *
+     * Copies every mapping of 'm' into this map, as a batch (see putAll(K[], V[])).
+     */
+
+    @SuppressWarnings("unchecked")
+    public void putAll(Map<? extends K, ? extends V> m) {
+        Object[] keys = new Object[m.size()];
+        Object[] values = new Object[keys.length];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            keys[i] = e.getKey();
+            values[i++] = e.getValue();
+        }
+        putAll((K[]) keys, (V[]) values);
+    }
+
+    /**
+     * Method: int getAll(K[], V[])
+     *
+     * Looks up every key of the batch: out[i] is set to the value keys[i] is
+     * mapped to, else null.
+     *
+     * @param keys - the keys to look up
+     * @param out  - receives the values; at least as long as keys
+     *
+     * @return the number of keys found
+     */
+
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Batch of " + keys.length + " keys, room for " + out.length + " values");
+        }
+        int[] hashes = hashAll(keys);
+        int found = 0;
+        for (int i : bucketOrder(hashes)) {
+            HashNode<K, V> node = getNode(hashes[i], keys[i]);
+            if (node == null) {
+                out[i] = null;
+            } else {
+                out[i] = node.value;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Method: int removeAll(Collection)
+     *
+     * Removes every key of the batch that is in the map, then shrinks the bucket
+     * list once if the map has become sparse (see shrinkIfSparse()).
+     *
+     * @return the number of <k,v> pairs removed
+     */
+
+    @SuppressWarnings("unchecked")
+    public int removeAll(Collection<? extends K> keys) {
+        K[] batch = (K[]) keys.toArray();
+        int[] hashes = hashAll(batch);
+        int removed = 0;
+        for (int i : bucketOrder(hashes)) {
+            migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+            if (removeNode(hashes[i], batch[i], null, false, true) != null) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            shrinkIfSparse();
+        }
+        return removed;
+    }
+
+    private int[] hashAll(K[] keys) {
+        int[] hashes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            hashes[i] = hash(keys[i]);
+        }
+        return hashes;
+    }
+
+    /**
+     * method: int[] bucketOrder(int[])
+     *
+     * Returns the positions of a batch's keys, given their hashes, ordered by the
+     * index of their bucket. It is a counting sort into about one range of bucket
+     * indexes per key, which takes two passes over the batch instead of a
+     * comparison sort: the keys of a range end up next to each other, in the order
+     * they were given (so a repeated key keeps the order of its operations), and
+     * the ranges follow each other up the bucket list, which the CPU's prefetcher
+     * can then stream ahead of the probes.
+     */
+
+    private int[] bucketOrder(int[] hashes) {
+        int n = hashes.length;
+        int ranges = Math.min(tableSizeFor(n), numBuckets);
+        int[] range = new int[n];
+        int[] start = new int[ranges + 1];
+        for (int i = 0; i < n; i++) {
+            int r = (int) ((long) indexFor(hashes[i], numBuckets) * ranges / numBuckets);
+            range[i] = r;
+            start[r + 1]++;
+        }
+        for (int r = 0; r < ranges; r++) {
+            start[r + 1] += start[r];
+        }
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[start[range[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Method: forEach(BiConsumer)
+     *
+     * Performs the given action for each <k,v> pair, walking the bucket chains
+     * directly (no iterator, no entry objects).
+     */
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int mc = modCount;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> headNode : table) {
+                for (; headNode != null; headNode = headNode.next) {
+                    action.accept(headNode.key, headNode.value);
+                }
+            }
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Method: replaceAll(BiFunction)
+     *
+     * Replaces each value with the result of the function applied to its <k,v>
+     * pair, in place.
+     */
+
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        if (function == null) {
+            throw new NullPointerException();
+        }
+        int mc = modCount;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> headNode : table) {
+                for (; headNode != null; headNode = headNode.next) {
+                    V oldValue = headNode.value;
+                    headNode.value = function.apply(headNode.key, oldValue);
+                    valueReplaced(oldValue, headNode.value);
+                    logPut(headNode.key, headNode.value);
+                }
+            }
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Method: forEach(long, BiConsumer)
+     *
+     * Performs the given action for each <k,v> pair, in parallel if the map holds at
+     * least 'parallelismThreshold' pairs. The action may run in several threads at
+     * once, and in no particular order.
+     */
+
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        bulk(parallelismThreshold, (table, lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                for (HashNode<K, V> e = table.get(i); e != null; e = e.next) {
+                    action.accept(e.key, e.value);
+                }
+            }
+            return null;
+        }, (a, b) -> null);
+    }
+
+    /**
+     * Method: V reduceValues(long, BiFunction)
+     *
+     * Combines all non-null values with the reducer, in parallel if the map holds at
+     * least 'parallelismThreshold' pairs. The reducer must be associative, as the
+     * values are combined in ranges and the ranges then combined.
+     *
+     * @return the combined value, else null if there are no (non-null) values
+     */
+
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        if (reducer == null) {
+            throw new NullPointerException();
+        }
+        BinaryOperator<V> combine = (a, b) -> a == null ? b : b == null ? a : reducer.apply(a, b);
+        return bulk(parallelismThreshold, (table, lo, hi) -> {
+            V r = null;
+            for (int i = lo; i < hi; i++) {
+                for (HashNode<K, V> e = table.get(i); e != null; e = e.next) {
+                    if (e.value != null) {
+                        r = (r == null) ? e.value : reducer.apply(r, e.value);
+                    }
+                }
+            }
+            return r;
+        }, combine);
+    }
+
+    /**
+     * Method: U search(long, BiFunction)
+     *
+     * Returns a non-null result of the search function applied to a <k,v> pair, in
+     * parallel if the map holds at least 'parallelismThreshold' pairs. Once some task
+     * finds a result, the others stop at their next node. Which result is returned,
+     * if several pairs have one, is not specified.
+     *
+     * @return a non-null result of the function, else null if there is none
+     */
+
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        if (searchFunction == null) {
+            throw new NullPointerException();
+        }
+        AtomicReference<U> result = new AtomicReference<>();
+        return bulk(parallelismThreshold, (table, lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                for (HashNode<K, V> e = table.get(i); e != null; e = e.next) {
+                    if (result.get() != null) {
+                        return null;
+                    }
+                    U u = searchFunction.apply(e.key, e.value);
+                    if (u != null) {
+                        result.compareAndSet(null, u);
+                        return u;
+                    }
+                }
+            }
+            return null;
+        }, (a, b) -> result.get());
+    }
+
+    /**
+     * Method: boolean containsValue(long, V)
+     *
+     * containsValue(V), in parallel if the map holds at least 'parallelismThreshold'
+     * pairs; the search stops in every task once one finds the value.
+     */
+
+    public boolean containsValue(long parallelismThreshold, V val) {
+        if (valueIndex != null) {
+            return containsValue(val);
+        }
+        return search(parallelismThreshold, (k, v) -> Objects.equals(v, val) ? Boolean.TRUE : null) != null;
+    }
+
+    /**
+     * Interface BucketRange
+     *
+     * The work of a bulk operation over buckets [lo, hi) of one bucket list.
+     */
+
+    interface BucketRange<K, V, R> {
+        R apply(ArrayList<HashNode<K, V>> table, int lo, int hi);
+    }
+
+    /**
+     * method: R bulk(long, BucketRange, BinaryOperator)
+     *
+     * Runs 'leaf' over every bucket of every bucket list and combines the results.
+     * Below the threshold, each list is processed in one call in this thread. Else
+     * each list is handed to a BulkTask on the common pool.
+     */
+
+    private <R> R bulk(long parallelismThreshold, BucketRange<K, V, R> leaf, BinaryOperator<R> combine) {
+        int mc = modCount;
+        boolean parallel = size >= parallelismThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+        R result = null;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            R r = parallel
+                    ? ForkJoinPool.commonPool().invoke(new BulkTask<>(table, 0, table.size(), leaf, combine,
+                            grainFor(table.size())))
+                    : leaf.apply(table, 0, table.size());
+            result = (result == null) ? r : combine.apply(result, r);
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /*
+     * Ranges are split down to about 8 tasks per worker thread, so that a worker
+     * that finishes early can steal the work of a busy one, but never below
+     * 1024 buckets, where the cost of a task would no longer pay off.
+     */
+    private static int grainFor(int buckets) {
+        return Math.max(1024, buckets / (ForkJoinPool.getCommonPoolParallelism() * 8));
+    }
+
+    /**
+     * Class BulkTask
+     *
+     * Fork-join task over buckets [lo, hi) of a bucket list: it halves its range
+     * until the range is no larger than 'grain', runs the leaf on it, and combines
+     * the results of both halves.
+     */
+
+    static final class BulkTask<K, V, R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ArrayList<HashNode<K, V>> table;
+        private final int lo;
+        private final int hi;
+        private final transient BucketRange<K, V, R> leaf;
+        private final transient BinaryOperator<R> combine;
+        private final int grain;
+
+        BulkTask(ArrayList<HashNode<K, V>> table, int lo, int hi, BucketRange<K, V, R> leaf,
+                 BinaryOperator<R> combine, int grain) {
+            this.table = table;
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+            this.combine = combine;
+            this.grain = grain;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo <= grain) {
+                return leaf.apply(table, lo, hi);
+            }
+            int mid = (lo + hi) >>> 1;
+            BulkTask<K, V, R> left = new BulkTask<>(table, lo, mid, leaf, combine, grain);
+            left.fork();
+            R right = new BulkTask<>(table, mid, hi, leaf, combine, grain).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * Method: enableValueIndex()
+     *
+     * Builds the value index from the current <k,v> pairs (one pass over the map)
+     * and keeps it up to date from then on. Does nothing if it is already enabled.
+     */
+
+    public void enableValueIndex() {
+        if (valueIndex != null) {
+            return;
+        }
+        valueIndex = new myHashMap<>(0, 0.75f);
+        nullValueCount = 0;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> headNode : table) {
+                for (; headNode != null; headNode = headNode.next) {
+                    valueAdded(headNode.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method: disableValueIndex()
+     *
+     * Drops the value index; containsValue() goes back to scanning the map.
+     */
+
+    public void disableValueIndex() {
+        valueIndex = null;
+        nullValueCount = 0;
+    }
+
+    /**
+     * Method: long valueIndexBytes()
+     *
+     * Returns an estimate of the heap the value index takes, 0 if it is disabled.
+     * Counts the index's bucket list (one reference per bucket, plus the ArrayList
+     * and its array headers), one HashNode per distinct value, and one Integer per
+     * count above 127 (smaller counts are shared cached Integers). Sizes assume a
+     * 64-bit JVM with compressed references: 4 byte references, 12 byte object
+     * headers, 16 byte array headers, objects padded to 8 bytes. The values
+     * themselves are shared with the map and not counted.
+     */
+
+    public long valueIndexBytes() {
+        if (valueIndex == null) {
+            return 0;
+        }
+        final long REF = 4, NODE = 32, BOXED_INT = 16, ARRAY_LIST = 24, ARRAY_HEADER = 16;
+        long bytes = ARRAY_LIST + ARRAY_HEADER + REF * valueIndex.numBuckets;
+        if (valueIndex.oldBucket != null) {
+            bytes += ARRAY_LIST + ARRAY_HEADER + REF * valueIndex.oldNumBuckets;
+        }
+        bytes += NODE * valueIndex.size;
+        for (ArrayList<HashNode<V, Integer>> table : valueIndex.tables()) {
+            for (HashNode<V, Integer> headNode : table) {
+                for (; headNode != null; headNode = headNode.next) {
+                    if (headNode.value > 127) {
+                        bytes += BOXED_INT;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /*
+     * Value index hooks, called after a value is stored, replaced or removed. They
+     * return at once when the index is disabled.
+     */
+
+    private void valueAdded(V value) {
+        if (valueIndex == null) {
+            return;
+        }
+        if (value == null) {
+            nullValueCount++;
+        } else {
+            valueIndex.merge(value, 1, Integer::sum);
+        }
+    }
+
+    private void valueRemoved(V value) {
+        if (valueIndex == null) {
+            return;
+        }
+        if (value == null) {
+            nullValueCount--;
+        } else {
+            valueIndex.computeIfPresent(value, (v, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private void valueReplaced(V oldValue, V newValue) {
+        if (valueIndex != null && oldValue != newValue) {
+            valueRemoved(oldValue);
+            valueAdded(newValue);
+        }
+    }
+
+    /**
+     * method: Map.Entry exportEntry(HashNode)
+     *
+     * Returns the entry to hand out for a node from entrySet(). That is the node
+     * itself, unless the value index is enabled or a log is attached: then it is a
+     * wrapper whose setValue() also updates the index and appends to the log.
+     */
+
+    private Map.Entry<K, V> exportEntry(HashNode<K, V> node) {
+        return valueIndex == null && log == null ? node : new IndexedEntry(node);
+    }
+
+    final class IndexedEntry implements Map.Entry<K, V> {
+        private final HashNode<K, V> node;
+
+        IndexedEntry(HashNode<K, V> node) {
+            this.node = node;
+        }
+
+        public K getKey() {
+            return node.key;
+        }
+
+        public V getValue() {
+            return node.value;
+        }
+
+        public V setValue(V value) {
+            V oldValue = node.setValue(value);
+            valueReplaced(oldValue, value);
+            logPut(node.key, value);
+            return oldValue;
+        }
+
+        public boolean equals(Object o) {
+            return node.equals(o);
+        }
+
+        public int hashCode() {
+            return node.hashCode();
+        }
+
+        public String toString() {
+            return node.toString();
+        }
+    }
+
+    /**
+     * Method: attachLog(myHashMapLog)
+     *
+     * Attaches a change log: from now on, every change to the map is appended to
+     * it. The log is first compacted from this map, so replaying it rebuilds the
+     * map as it is now. To rebuild a map from an existing log, use
+     * myHashMapLog.recover() instead.
+     */
+
+    public void attachLog(myHashMapLog<K, V> newLog) throws IOException {
+        if (newLog.map != null) {
+            throw new IllegalStateException("myHashMapLog is already attached to a map");
+        }
+        detachLog();
+        newLog.rewrite(this);
+        setLog(newLog);
+    }
+
+    void setLog(myHashMapLog<K, V> newLog) {
+        log = newLog;
+        newLog.map = this;
+    }
+
+    /**
+     * Method: detachLog()
+     *
+     * Stops logging changes. The log is left open, as it is. Closing the log also
+     * detaches it.
+     */
+
+    public void detachLog() {
+        if (log != null) {
+            log.map = null;
+            log = null;
+        }
+    }
+
+    /**
+     * Method: myHashMapMetrics enableMetrics()
+     *
+     * Starts collecting metrics (see myHashMapMetrics), timing one get / put /
+     * remove in 1024. Returns the metrics; if they were already enabled, returns
+     * the current ones unchanged.
+     */
+
+    public myHashMapMetrics enableMetrics() {
+        return metrics != null ? metrics : enableMetrics(1024);
+    }
+
+    /**
+     * Method: myHashMapMetrics enableMetrics(int)
+     *
+     * Starts collecting metrics, timing one get / put / remove in 'latencySampling'
+     * (a power of two; 1 times every one of them). If metrics were already enabled,
+     * they are replaced by new ones, and the old ones unregistered from JMX.
+     */
+
+    public myHashMapMetrics enableMetrics(int latencySampling) {
+        myHashMapMetrics newMetrics = new myHashMapMetrics(this, latencySampling);
+        disableMetrics();
+        metrics = newMetrics;
+        return newMetrics;
+    }
+
+    /**
+     * Method: disableMetrics()
+     *
+     * Stops collecting metrics, and unregisters them from JMX if they were
+     * registered.
+     */
+
+    public void disableMetrics() {
+        if (metrics != null) {
+            metrics.unregisterMBean();
+            metrics = null;
+        }
+    }
+
+    public myHashMapMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * method: int scanBuckets(long[])
      *
-     * @param key    - Key for the <k, v> pair to replace its
-     *               value
-     * @param oldVal - Replace only if current <k,v>'s value
-     *               is same as oldVal
-     * @param newVal - the new value to use.
+     * Counts the buckets by the number of nodes they hold into 'occupancy' (the
+     * last element also counts longer chains), and returns the longest chain.
+     * During an incremental resize, the old buckets not migrated yet are counted
+     * too. May be called from another thread while the map is in use (e.g. by JMX):
+     * the bucket lists are read once and a chain walk is bounded, so the result is
+     * then approximate but the scan can't fail.
+     */
+
+    int scanBuckets(long[] occupancy) {
+        Arrays.fill(occupancy, 0);
+        int limit = Math.max(size, 0) + 1;
+        int longest = 0;
+        ArrayList<HashNode<K, V>> current = bucket, old = oldBucket;
+        int from = migrateIndex;
+        for (int t = 0; t < 2; t++) {
+            ArrayList<HashNode<K, V>> table = t == 0 ? current : old;
+            if (table == null) {
+                continue;
+            }
+            for (int i = t == 0 ? 0 : Math.max(from, 0), n = table.size(); i < n; i++) {
+                int length = 0;
+                for (HashNode<K, V> node = table.get(i); node != null && length < limit; node = node.next) {
+                    length++;
+                }
+                occupancy[Math.min(length, occupancy.length - 1)]++;
+                longest = Math.max(longest, length);
+            }
+        }
+        return longest;
+    }
+
+    /*
+     * Log hooks, called after a value is stored or a key removed, next to the value
+     * index hooks. They return at once when no log is attached.
+     */
+
+    private void logPut(K key, V value) {
+        if (log != null) {
+            log.appendPut(key, value);
+        }
+    }
+
+    private void logRemove(K key) {
+        if (log != null) {
+            log.appendRemove(key);
+        }
+    }
+
+    /**
+     * Method: writeSnapshot(Path, BinaryCodec, BinaryCodec)
      *
-     * @return V - returns the old value for the <k,v> pair,
-     *         else null if not found.
+     * Writes every <k,v> pair to a snapshot file (see myHashMapSnapshot for the
+     * format), which loadSnapshot() or a myHashMapSnapshot can reopen later. The
+     * entries are grouped by their bucket in a power-of-two map presized for them,
+     * using a counting sort over the nodes, so the file is written in one sequential
+     * pass. The file is written next to its final name and then moved in place, so
+     * an existing snapshot is only replaced by a complete one.
+     *
+     * Null values can't be encoded and are rejected (NullPointerException) before
+     * anything is written.
+     *
+     * @param file       - the snapshot file, replaced if it exists
+     * @param keyCodec   - writes the keys
+     * @param valueCodec - writes the values
      */
-    // Changed boolean to V in order to follow the following instruction: returns
-    // the old value for the <k,v> pair, else null if not found, then realized that
-    // the main class is expecting a boolean, so I changed it back
-    public boolean replace(K key, V oldVal, V newVal) {
+
+    public void writeSnapshot(Path file, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) throws IOException {
+        int buckets = tableSizeFor((long) Math.ceil(size / (double) loadFactor));
+        int mask = buckets - 1;
 
         /*
-         * ADD YOUR CODE HERE
-         *
-         * This method should apply the precondition (aka, the Key already exists with
-         * the
-         * value 'oldval', and is so, it SHOULD call replace(K, V) for code reuse.
+         * Counting sort: start[b + 1] counts bucket b, then the prefix sums make
+         * start[b] the position of bucket b's first entry. Placing the nodes advances
+         * start[b] to the end of bucket b.
          */
-        // Finding the bucket, use hash function to locate index of bucket
-        int bucketID = getBucketIndex(key);// We have our bucket index
-        HashNode<K, V> node = bucket.get(bucketID);// Grabbing the node for the link list in the bucket
+        int[] start = new int[buckets + 1];
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> head : table) {
+                for (HashNode<K, V> e = head; e != null; e = e.next) {
+                    if (e.value == null) {
+                        throw new NullPointerException("Null values can't be written to a snapshot");
+                    }
+                    start[(snapshotHash(e) & mask) + 1]++;
+                }
+            }
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+        }
+        @SuppressWarnings("unchecked")
+        HashNode<K, V>[] sorted = (HashNode<K, V>[]) new HashNode<?, ?>[size];
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> head : table) {
+                for (HashNode<K, V> e = head; e != null; e = e.next) {
+                    sorted[start[snapshotHash(e) & mask]++] = e;
+                }
+            }
+        }
 
-        while (node != null) {// while we haven't reached the end of the list, keeping traversing...
-            if (node.key.equals(key) && node.value.equals(oldVal)) {// if we find a node that contains the key we are
-                                                                    // looking for and the value of oldVal matches the
-                                                                    // value in the node, replace that key's value with
-                                                                    // the newVal
-                // V oldValue = replace(key, newVal);
-                replace(key, newVal);// use our previous method that will handle replacing the old value w/ newVal
-                // return oldValue;
-                return true;// We have completed the replacement
+        int keySize = keyCodec.size();
+        int entrySize = Integer.BYTES + keySize + valueCodec.size();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(SNAPSHOT_BUFFER_BYTES, entrySize));
+            buf.putInt(myHashMapSnapshot.MAGIC).putInt(myHashMapSnapshot.VERSION);
+            buf.putInt(keySize).putInt(valueCodec.size());
+            buf.putInt(size).putInt(buckets).putFloat(loadFactor).putInt(0);
+
+            buf.putInt(0);
+            for (int b = 0; b < buckets; b++) {
+                if (buf.remaining() < Integer.BYTES) {
+                    writeFully(channel, buf);
+                }
+                buf.putInt(start[b]); // now the end of bucket b, the start of bucket b + 1
+            }
+            for (HashNode<K, V> e : sorted) {
+                if (buf.remaining() < entrySize) {
+                    writeFully(channel, buf);
+                }
+                int offset = buf.position();
+                buf.putInt(offset, snapshotHash(e));
+                keyCodec.write(buf, offset + Integer.BYTES, e.key);
+                valueCodec.write(buf, offset + Integer.BYTES + keySize, e.value);
+                buf.position(offset + entrySize);
             }
-            node = node.next;// Go to next node.
+            writeFully(channel, buf);
+            channel.force(true);
         }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-        return false;
+    private static final int SNAPSHOT_BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Returns the hash a power-of-two map stores for the node's key: the node's own
+     * hash in power-of-two mode, else it is computed again from the key.
+     */
+
+    private int snapshotHash(HashNode<K, V> node) {
+        return powerOfTwo ? node.hash : myHashMapSnapshot.spread(node.key.hashCode());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Method: myHashMap<K,V> loadSnapshot(Path, BinaryCodec, BinaryCodec)
+     *
+     * Warm start: returns a new power-of-two myHashMap holding every pair of a
+     * snapshot written by writeSnapshot(). The map is created with the snapshot's
+     * bucket count, and each entry is linked straight into its bucket with its
+     * stored hash, so loading never resizes and calls no hashCode() or equals().
+     * To only look keys up, opening a myHashMapSnapshot is cheaper still: it
+     * deserializes nothing up front.
+     *
+     * @throws IOException if the file can't be read or is not a snapshot written
+     *                     with codecs of these sizes
+     */
+
+    public static <K, V> myHashMap<K, V> loadSnapshot(Path file, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec)
+            throws IOException {
+        try (myHashMapSnapshot<K, V> snapshot = new myHashMapSnapshot<>(file, keyCodec, valueCodec)) {
+            return fromSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * method: fromSnapshot(myHashMapSnapshot)
+     *
+     * Builds the map for loadSnapshot() and myHashMapSnapshot.toMap(). Each entry
+     * is pushed onto the front of its bucket's chain. Buckets that reach
+     * TREEIFY_THRESHOLD are treeified afterwards, as put() would have done.
+     */
+
+    static <K, V> myHashMap<K, V> fromSnapshot(myHashMapSnapshot<K, V> snapshot) {
+        myHashMap<K, V> map = new myHashMap<>(snapshot.Size(), snapshot.loadFactor());
+        int buckets = map.numBuckets;
+        for (int b = 0; b < snapshot.numBuckets(); b++) {
+            for (int i = snapshot.bucketStart(b), end = snapshot.bucketStart(b + 1); i < end; i++) {
+                int hash = snapshot.hashAt(i);
+                int index = hash & (buckets - 1);
+                map.bucket.set(index, map.newNode(hash, snapshot.keyAt(i), snapshot.valueAt(i),
+                        map.bucket.get(index)));
+            }
+        }
+        map.size = snapshot.Size();
+        map.modCount++;
+
+        if (buckets >= MIN_TREEIFY_CAPACITY) {
+            for (int b = 0; b < buckets; b++) {
+                int count = 0;
+                for (HashNode<K, V> e = map.bucket.get(b); e != null && count < TREEIFY_THRESHOLD; e = e.next) {
+                    count++;
+                }
+                if (count >= TREEIFY_THRESHOLD) {
+                    map.treeifyBin(map.bucket, b);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Method: myFrozenHashMap<K,V> freeze()
+     *
+     * Returns an immutable copy of the map for read-mostly use: a myFrozenHashMap,
+     * whose lookups go through a minimal perfect hash of the keys' hash codes to a
+     * single slot of flat arrays. The map itself is left unchanged; later changes
+     * to it are not seen by the frozen copy.
+     */
+
+    public myFrozenHashMap<K, V> freeze() {
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int i = 0;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> head : table) {
+                for (HashNode<K, V> node = head; node != null; node = node.next) {
+                    keys[i] = node.key;
+                    values[i++] = node.value;
+                }
+            }
+        }
+        return new myFrozenHashMap<>(keys, values);
     }
 
     /**
@@ -542,12 +2437,17 @@ class myHashMap<K, V> {
      */
 
     public boolean containsValue(V val) {
+        if (valueIndex != null) {
+            return val == null ? nullValueCount > 0 : valueIndex.containsKey(val);
+        }
 
-        for (HashNode<K, V> headNode : bucket) {
-            while (headNode != null) {
-                if (headNode.value.equals(val))
-                    return true;
-                headNode = headNode.next;
+        for (ArrayList<HashNode<K, V>> table : tables()) {
+            for (HashNode<K, V> headNode : table) {
+                while (headNode != null) {
+                    if (Objects.equals(headNode.value, val))
+                        return true;
+                    headNode = headNode.next;
+                }
             }
         }
 
@@ -572,41 +2472,440 @@ class myHashMap<K, V> {
     /**
      * Method: Set<Map.Entry<K,V>> entrySet()
      *
-     * Returns a 'Set' view of the mappings contained in the map.
+     * Returns a 'Set' view of the mappings contained in the map. The entries are the
+     * map's own nodes, so setValue() on an entry updates the map. Removing from the
+     * set, or through its iterator, removes the mapping from the map.
      *
      * @return Set<Map.Entry<K,V></K,V>> - set of all K/V pairs in map
      */
     public Set<Map.Entry<K, V>> entrySet() {
-        Set<Map.Entry<K, V>> returnSet = new HashSet<>();
-
-        for (HashNode<K, V> headNode : bucket) {
-            while (headNode != null) {
-                returnSet.add(Map.entry(headNode.key, headNode.value));
-                headNode = headNode.next;
-            }
-        }
-
-        return returnSet;
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
     }
 
     /**
      * Method: Set<K> keySet()
      *
-     * Returns a 'Set' view of the keys contained in the map.
+     * Returns a 'Set' view of the keys contained in the map. Removing from the set,
+     * or through its iterator, removes the mapping from the map.
      *
      * @return Set<K> - set of all keys in map
      */
 
     public Set<K> keySet() {
-        Set<K> returnSet = new HashSet<>();
-        for (HashNode<K, V> headNode : bucket) {
-            while (headNode != null) {
-                returnSet.add(headNode.key);
-                headNode = headNode.next;
+        Set<K> ks = keySet;
+        return ks != null ? ks : (keySet = new KeySet());
+    }
+
+    /**
+     * Method: Collection<V> values()
+     *
+     * Returns a 'Collection' view of the values contained in the map. Removing
+     * through its iterator removes the mapping from the map.
+     *
+     * @return Collection<V> - all values in map
+     */
+
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return vs != null ? vs : (values = new Values());
+    }
+
+    /**
+     * Class HashIterator
+     *
+     * Walks the nodes bucket by bucket, through 'oldBucket' and then 'bucket' while
+     * an incremental resize is in progress. A treeified bucket is walked through its
+     * 'next' links like any other chain. Throws ConcurrentModificationException if
+     * the map is structurally modified other than through this iterator's remove().
+     */
+
+    abstract class HashIterator {
+        private final List<ArrayList<HashNode<K, V>>> tables = tables();
+        private int tableIndex = 0;
+        private int bucketIndex = 0;
+        private HashNode<K, V> next;
+        private HashNode<K, V> current;
+        private int expectedModCount = modCount;
+
+        HashIterator() {
+            advance();
+        }
+
+        /*
+         * Moves 'next' to the first node of the next non-empty bucket.
+         */
+        private void advance() {
+            while (next == null && tableIndex < tables.size()) {
+                ArrayList<HashNode<K, V>> table = tables.get(tableIndex);
+                if (bucketIndex < table.size()) {
+                    next = table.get(bucketIndex++);
+                } else {
+                    tableIndex++;
+                    bucketIndex = 0;
+                }
+            }
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final HashNode<K, V> nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            HashNode<K, V> e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            current = e;
+            next = e.next;
+            advance();
+            return e;
+        }
+
+        public final void remove() {
+            HashNode<K, V> p = current;
+            if (p == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            current = null;
+            removeNode(p.key, null, false, false);
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        public V next() {
+            return nextNode().value;
+        }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        public Map.Entry<K, V> next() {
+            return exportEntry(nextNode());
+        }
+    }
+
+    /**
+     * Class HashSpliterator
+     *
+     * Covers the buckets with indexes [index, fence). While an incremental resize is
+     * in progress, the indexes run over 'oldBucket' first and then 'bucket', as if
+     * the two lists were one. The fence (and the expected modCount) are only taken
+     * when the spliterator is first used, so a spliterator binds to the state of the
+     * map at that point rather than at its creation. trySplit() hands the lower half
+     * of the remaining range to a new spliterator, which receives half of the size
+     * estimate; only the unsplit spliterator reports an exact (SIZED) size.
+     */
+
+    abstract class HashSpliterator {
+        List<ArrayList<HashNode<K, V>>> tables;
+        HashNode<K, V> current; // next node to visit in the bucket being walked
+        int index; // next bucket index to move to
+        int fence; // one past the last index, -1 until first use
+        int est; // size estimate
+        int expectedModCount;
+
+        HashSpliterator(int origin, int fence, int est, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() {
+            int hi;
+            if ((hi = fence) < 0) {
+                tables = tables();
+                est = size;
+                expectedModCount = modCount;
+                hi = 0;
+                for (ArrayList<HashNode<K, V>> table : tables) {
+                    hi += table.size();
+                }
+                fence = hi;
+            }
+            return hi;
+        }
+
+        public final long estimateSize() {
+            getFence();
+            return est;
+        }
+
+        final HashNode<K, V> bucketAt(int i) {
+            ArrayList<HashNode<K, V>> first = tables.get(0);
+            return i < first.size() ? first.get(i) : tables.get(1).get(i - first.size());
+        }
+
+        /*
+         * Fills in the fields of a spliterator for the lower half [lo, mid) of this
+         * one's range and moves this one to the upper half. Returns false if the
+         * range is too small to split.
+         */
+        final boolean splitInto(HashSpliterator lower) {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (lo >= mid || current != null) {
+                return false;
+            }
+            lower.tables = tables;
+            lower.index = lo;
+            lower.fence = mid;
+            lower.est = est >>>= 1;
+            lower.expectedModCount = expectedModCount;
+            index = mid;
+            return true;
+        }
+
+        /*
+         * Returns the next node, or null once the range is exhausted.
+         */
+        final HashNode<K, V> advance() {
+            int hi = getFence();
+            while (current == null && index < hi) {
+                current = bucketAt(index++);
+            }
+            HashNode<K, V> e = current;
+            if (e != null) {
+                current = e.next;
+            }
+            return e;
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        final int sizeCharacteristic() {
+            return fence < 0 || est == size ? Spliterator.SIZED : 0;
+        }
+    }
+
+    final class KeySpliterator extends HashSpliterator implements Spliterator<K> {
+        KeySpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
+
+        public KeySpliterator trySplit() {
+            KeySpliterator lower = new KeySpliterator(0, 0, 0, 0);
+            return splitInto(lower) ? lower : null;
+        }
+
+        public void forEachRemaining(Consumer<? super K> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            for (HashNode<K, V> e; (e = advance()) != null;) {
+                action.accept(e.key);
+            }
+            checkForComodification();
+        }
+
+        public boolean tryAdvance(Consumer<? super K> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            HashNode<K, V> e = advance();
+            if (e == null) {
+                return false;
+            }
+            action.accept(e.key);
+            checkForComodification();
+            return true;
+        }
+
+        public int characteristics() {
+            return sizeCharacteristic() | Spliterator.DISTINCT;
+        }
+    }
+
+    final class ValueSpliterator extends HashSpliterator implements Spliterator<V> {
+        ValueSpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
+
+        public ValueSpliterator trySplit() {
+            ValueSpliterator lower = new ValueSpliterator(0, 0, 0, 0);
+            return splitInto(lower) ? lower : null;
+        }
+
+        public void forEachRemaining(Consumer<? super V> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            for (HashNode<K, V> e; (e = advance()) != null;) {
+                action.accept(e.value);
+            }
+            checkForComodification();
+        }
+
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            HashNode<K, V> e = advance();
+            if (e == null) {
+                return false;
+            }
+            action.accept(e.value);
+            checkForComodification();
+            return true;
+        }
+
+        public int characteristics() {
+            return sizeCharacteristic();
+        }
+    }
+
+    final class EntrySpliterator extends HashSpliterator implements Spliterator<Map.Entry<K, V>> {
+        EntrySpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
+
+        public EntrySpliterator trySplit() {
+            EntrySpliterator lower = new EntrySpliterator(0, 0, 0, 0);
+            return splitInto(lower) ? lower : null;
+        }
+
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            for (HashNode<K, V> e; (e = advance()) != null;) {
+                action.accept(exportEntry(e));
+            }
+            checkForComodification();
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            HashNode<K, V> e = advance();
+            if (e == null) {
+                return false;
+            }
+            action.accept(exportEntry(e));
+            checkForComodification();
+            return true;
+        }
+
+        public int characteristics() {
+            return sizeCharacteristic() | Spliterator.DISTINCT;
+        }
+    }
+
+    /*
+     * The view classes. Lookups through a view cast the Object they are given to K,
+     * as Java's HashMap does: the map only ever calls hashCode() and equals() on it.
+     */
+
+    final class KeySet extends AbstractSet<K> {
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            myHashMap.this.clear();
+        }
+
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        public Spliterator<K> spliterator() {
+            return new KeySpliterator(0, -1, 0, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return getNode((K) o) != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+            return removeNode((K) o, null, false, false) != null;
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            myHashMap.this.clear();
+        }
+
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        public Spliterator<V> spliterator() {
+            return new ValueSpliterator(0, -1, 0, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return containsValue((V) o);
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            myHashMap.this.clear();
+        }
+
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new EntrySpliterator(0, -1, 0, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
             }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            HashNode<K, V> candidate = getNode((K) e.getKey());
+            return candidate != null && candidate.equals(e);
         }
 
-        return returnSet;
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            HashNode<K, V> candidate = getNode((K) e.getKey());
+            if (candidate == null || !candidate.equals(e)) {
+                return false;
+            }
+            migrateBuckets(MIGRATE_BUCKETS_PER_OP);
+            removeNode(candidate.key, null, false, false);
+            return true;
+        }
     }
 
 } /* end class myHashMap */
\ No newline at end of file
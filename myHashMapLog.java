@@ -0,0 +1,478 @@
+/**
+ *
+ *  This class is an append-only log of the changes made to a myHashMap, so that the
+ *  map can be rebuilt after a restart. Once attached (myHashMap.attachLog(), or
+ *  recover()), every change to the map appends one record:
+ *
+ *      PUT       [ op ][ key ][ value ][ crc ]    - the key is now mapped to the value
+ *      PUT_NULL  [ op ][ key ][ crc ]             - the key is now mapped to null
+ *      REMOVE    [ op ][ key ][ crc ]             - the key was removed
+ *      CLEAR     [ op ][ crc ]                    - the map was cleared
+ *
+ *  The op is one byte, keys and values are written by BinaryCodecs, and crc is the
+ *  CRC32C of the record's other bytes. Only changes that happened are logged, with
+ *  their outcome: a replace(K, V, V) that matched is logged as a PUT, one that did
+ *  not match is not logged at all. So replaying the log never evaluates a
+ *  condition, and the records stay small.
+ *
+ *  GROUP COMMIT: a record is only encoded into a buffer that is allocated once, when
+ *  the log is opened, so an append costs no system call and no allocation. The
+ *  buffer is written to the file when it is full, and written and forced to disk
+ *  (fsync) every 'syncBatch' records, so one fsync makes a whole batch durable. A
+ *  syncBatch of 1 makes every change durable before the map method returns; 0 only
+ *  forces the file in sync() and close(). sync() can also be called from a timer to
+ *  bound how long a change may stay unsynced.
+ *
+ *  RECOVERY: opening a log reads it once, to find where its valid records end. A
+ *  record cut short by a crash, or failing its CRC, ends the log: it and anything
+ *  after it are truncated. recover() then replays the records into a new map,
+ *  presized for the pairs put since the last CLEAR, and attaches the log to it.
+ *
+ *  COMPACTION: compact() rewrites the log as one PUT per pair of the map, into a
+ *  new file that atomically replaces the old one.
+ *
+ *  If a record can't be written (an I/O error, or a key or value the codec
+ *  rejects), the map has already changed, so the log is marked failed: that append
+ *  and every later one throw IllegalStateException, until compact() rewrites the log
+ *  from the map. Not thread-safe, like myHashMap.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *  myHashMap<K,V> recover()       - Replays the log into a new map and attaches the log to it
+ *     void  sync()                - Writes the buffered records and forces them to disk
+ *     void  compact()             - Rewrites the log to hold only the pairs of the map
+ *     long  length()              - returns the length of the log in bytes, buffered records included
+ *     long  records()             - returns the number of records in the log
+ *     void  close()               - Syncs, closes the file and detaches the log from its map
+ *
+ ****************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+class myHashMapLog<K, V> implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D484D4C; // "MHML"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private static final byte PUT = 1;
+    private static final byte PUT_NULL = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+
+    private final Path file;
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final int keySize;
+    private final int valueSize;
+    private final int syncBatch;
+
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+
+    private long fileLength;     // bytes in the file (buffered records excluded)
+    private long records;        // records in the log, buffered ones included
+    private int unsynced;        // records appended since the last fsync
+    private int putsSinceClear;  // PUT records after the last CLEAR, to presize recover()
+    private boolean failed;
+
+    /*
+     * The map this log is attached to, else null. Set by myHashMap.attachLog() and
+     * recover().
+     */
+    myHashMap<K, V> map;
+
+    /**
+     * Constructor
+     *
+     * Opens the log, creating it if it does not exist. An existing log is read once
+     * to check its records; a torn or corrupt tail is truncated.
+     *
+     * @param file       - the log file
+     * @param keyCodec   - writes / reads the keys
+     * @param valueCodec - writes / reads the values
+     * @param syncBatch  - number of records per fsync, 0 to only fsync in sync()
+     *
+     * @throws IOException if the file can't be opened, or was written with codecs
+     *                     of other sizes
+     */
+    public myHashMapLog(Path file, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec, int syncBatch)
+            throws IOException {
+        if (syncBatch < 0) {
+            throw new IllegalArgumentException("Illegal sync batch: " + syncBatch);
+        }
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.keySize = keyCodec.size();
+        this.valueSize = valueCodec.size();
+        this.syncBatch = syncBatch;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, maxRecordBytes()));
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                writeHeader(channel);
+                fileLength = HEADER_BYTES;
+            } else {
+                checkHeader();
+                fileLength = replay(null);
+                if (fileLength < channel.size()) {
+                    channel.truncate(fileLength); // torn or corrupt tail
+                    channel.force(true);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private int maxRecordBytes() {
+        return 1 + keySize + valueSize + Integer.BYTES;
+    }
+
+    private void writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(keySize).putInt(valueSize).flip();
+        ch.truncate(0);
+        while (header.hasRemaining()) {
+            ch.write(header, header.position());
+        }
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read the whole header
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a myHashMap log");
+        }
+        if (header.getInt(8) != keySize || header.getInt(12) != valueSize) {
+            throw new IOException("Log " + file + " holds " + header.getInt(8) + " / " + header.getInt(12)
+                    + " byte keys / values, the codecs write " + keySize + " / " + valueSize);
+        }
+    }
+
+    /**
+     * method: replay(myHashMap)
+     *
+     * Reads the records from the start of the log and applies them to 'target'
+     * (when not null), while counting them. Stops at the end of the file or at the
+     * first record that is cut short, has an unknown op, or fails its CRC.
+     *
+     * @return the file offset at which the valid records end
+     */
+
+    private long replay(myHashMap<K, V> target) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(Math.max(READ_BUFFER_BYTES, maxRecordBytes()));
+        in.limit(0);
+        long offset = HEADER_BYTES;     // file offset of in.position()
+        long readOffset = HEADER_BYTES; // file offset of in.limit()
+        records = 0;
+        putsSinceClear = 0;
+        while (true) {
+            if (in.remaining() < maxRecordBytes()) {
+                in.compact();
+                int n;
+                while (in.hasRemaining() && (n = channel.read(in, readOffset)) > 0) {
+                    readOffset += n;
+                }
+                in.flip();
+            }
+            int start = in.position();
+            int end = in.limit();
+            if (start == end) {
+                return offset;
+            }
+            byte op = in.get(start);
+            int length = recordBytes(op);
+            if (length < 0 || end - start < length) {
+                return offset;
+            }
+            int crcAt = start + length - Integer.BYTES;
+            crc.reset();
+            in.limit(crcAt);
+            crc.update(in);
+            in.limit(end);
+            if (in.getInt(crcAt) != (int) crc.getValue()) {
+                return offset;
+            }
+
+            if (target != null) {
+                K key = op == CLEAR ? null : keyCodec.read(in, start + 1);
+                switch (op) {
+                    case PUT:
+                        target.put(key, valueCodec.read(in, start + 1 + keySize));
+                        break;
+                    case PUT_NULL:
+                        target.put(key, null);
+                        break;
+                    case REMOVE:
+                        target.remove(key);
+                        break;
+                    default:
+                        target.clear();
+                        break;
+                }
+            }
+            counted(op);
+            in.position(start + length);
+            offset += length;
+        }
+    }
+
+    private void counted(byte op) {
+        records++;
+        if (op == PUT || op == PUT_NULL) {
+            putsSinceClear++;
+        } else if (op == CLEAR) {
+            putsSinceClear = 0;
+        }
+    }
+
+    /**
+     * Method: myHashMap<K,V> recover()
+     *
+     * Replays the log into a new power-of-two myHashMap, presized for the number of
+     * pairs put since the last CLEAR so the replay never resizes, and attaches the
+     * log to that map.
+     */
+
+    public myHashMap<K, V> recover() throws IOException {
+        ensureOpen();
+        if (map != null) {
+            throw new IllegalStateException("myHashMapLog is already attached to a map");
+        }
+        writeBuffer();
+        myHashMap<K, V> recovered = new myHashMap<>(putsSinceClear, RECOVERY_LOAD_FACTOR);
+        replay(recovered);
+        recovered.setLog(this);
+        return recovered;
+    }
+
+    private static final float RECOVERY_LOAD_FACTOR = 0.7f; // myHashMap's default
+
+    /*
+     * Append methods, called by myHashMap after each change.
+     */
+
+    void appendPut(K key, V value) {
+        append(value == null ? PUT_NULL : PUT, key, value);
+    }
+
+    void appendRemove(K key) {
+        append(REMOVE, key, null);
+    }
+
+    void appendClear() {
+        append(CLEAR, null, null);
+    }
+
+    /**
+     * method: append(byte, K, V)
+     *
+     * Encodes one record into the buffer and computes its CRC in place. The buffer
+     * only goes to the file when it is full or a sync is due.
+     */
+
+    private void append(byte op, K key, V value) {
+        ensureOpen();
+        if (failed) {
+            throw new IllegalStateException("myHashMapLog failed, compact() rewrites it from the map");
+        }
+        int length = recordBytes(op);
+        int start = buffer.position();
+        try {
+            if (buffer.remaining() < length) {
+                writeBuffer();
+                start = buffer.position();
+            }
+            buffer.put(start, op);
+            if (op != CLEAR) {
+                keyCodec.write(buffer, start + 1, key);
+            }
+            if (op == PUT) {
+                valueCodec.write(buffer, start + 1 + keySize, value);
+            }
+            int crcAt = start + length - Integer.BYTES;
+            crc.reset();
+            buffer.limit(crcAt);
+            crc.update(buffer);
+            buffer.limit(buffer.capacity());
+            buffer.putInt(crcAt, (int) crc.getValue());
+            buffer.position(start + length);
+            counted(op);
+            if (!compacting && syncBatch > 0 && ++unsynced >= syncBatch) {
+                sync();
+            }
+        } catch (IOException e) {
+            failed = true;
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            buffer.limit(buffer.capacity()).position(start);
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the buffered records to the end of the file (without forcing them).
+     */
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileLength += channel.write(buffer, fileLength);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Method: sync()
+     *
+     * Group commit: writes the buffered records and forces the file to disk, so
+     * every change logged so far survives a crash.
+     */
+
+    public void sync() throws IOException {
+        ensureOpen();
+        writeBuffer();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Method: compact()
+     *
+     * Rewrites the log to hold one PUT per <k,v> pair of the map it is attached to,
+     * dropping every overwritten or removed pair. The new log is written and forced
+     * to a temporary file that then atomically replaces the old one, so a crash
+     * leaves either log intact. Also clears a failed state.
+     */
+
+    public void compact() throws IOException {
+        ensureOpen();
+        if (map == null) {
+            throw new IllegalStateException("myHashMapLog is not attached to a map");
+        }
+        rewrite(map);
+    }
+
+    private boolean compacting;
+
+    void rewrite(myHashMap<K, V> source) throws IOException {
+        try {
+            writeBuffer(); // the old log stays complete if the rewrite fails
+        } catch (IOException e) {
+            buffer.clear();
+            failed = true;
+        }
+        FileChannel old = channel;
+        long oldLength = fileLength;
+        long oldRecords = records;
+        int oldPuts = putsSinceClear;
+        boolean oldFailed = failed;
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        boolean done = false;
+        try {
+            writeHeader(out);
+            channel = out;
+            fileLength = HEADER_BYTES;
+            records = 0;
+            putsSinceClear = 0;
+            failed = false;
+            compacting = true;
+            source.forEach(this::appendPut);
+            writeBuffer();
+            out.force(true);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        } finally {
+            compacting = false;
+            if (done) {
+                old.close();
+                unsynced = 0;
+            } else {
+                out.close();
+                Files.deleteIfExists(tmp);
+                buffer.clear();
+                channel = old;
+                fileLength = oldLength;
+                records = oldRecords;
+                putsSinceClear = oldPuts;
+                failed = oldFailed;
+            }
+        }
+    }
+
+    public long length() {
+        return fileLength + buffer.position();
+    }
+
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Method close()
+     *
+     * Syncs the buffered records, closes the file and detaches the log from its
+     * map. Closing it twice does nothing.
+     */
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+            channel.force(false);
+        } finally {
+            channel.close();
+            channel = null;
+            if (map != null) {
+                map.detachLog();
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("myHashMapLog is closed");
+        }
+    }
+
+    private int recordBytes(byte op) {
+        switch (op) {
+            case PUT:
+                return 1 + keySize + valueSize + Integer.BYTES;
+            case PUT_NULL:
+            case REMOVE:
+                return 1 + keySize + Integer.BYTES;
+            case CLEAR:
+                return 1 + Integer.BYTES;
+            default:
+                return -1;
+        }
+    }
+
+} /* end class myHashMapLog */
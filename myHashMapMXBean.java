@@ -0,0 +1,60 @@
+/**
+ *
+ *  JMX view of a myHashMap's metrics (see myHashMapMetrics.registerMBean()). The
+ *  counters are read live; the bucket figures are computed by scanning the bucket
+ *  list when they are read. Latencies are in nanoseconds, estimated from the sampled
+ *  operations. The interface must be public for the platform MBean server.
+ *
+ ****************************************/
+
+public interface myHashMapMXBean {
+
+    int getSize();
+
+    int getBuckets();
+
+    long getGets();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getPuts();
+
+    long getInserts();
+
+    long getRemoves();
+
+    long getResizes();
+
+    long getResizeTotalNanos();
+
+    long getResizeMaxNanos();
+
+    long getTreeifies();
+
+    int getLongestChain();
+
+    /**
+     * Element i is the number of buckets holding i nodes; the last element counts
+     * the buckets holding that many nodes or more.
+     */
+    long[] getBucketOccupancy();
+
+    double getGetMeanNanos();
+
+    long getGetP99Nanos();
+
+    double getPutMeanNanos();
+
+    long getPutP99Nanos();
+
+    double getRemoveMeanNanos();
+
+    long getRemoveP99Nanos();
+
+    void reset();
+
+} /* end interface myHashMapMXBean */
@@ -0,0 +1,507 @@
+/**
+ *
+ *  This class collects the metrics of one myHashMap, from enableMetrics() on:
+ *
+ *     - counters: gets (hits / misses), puts (and how many inserted a new key),
+ *       removes, resizes, and buckets turned into trees
+ *     - latency histograms of get(), put() and remove(), and of every resize
+ *     - the bucket occupancy (how many buckets hold 0, 1, 2, ... nodes) and the
+ *       longest chain, computed by scanning the buckets when they are read
+ *
+ *  The counters are single-writer counters rather than LongAdders or atomics. The
+ *  map is not thread-safe, so its operations never run concurrently and there is
+ *  no contention for striping to spread; an atomic increment would still cost a
+ *  locked instruction per operation, which also stops the CPU from overlapping the
+ *  cache misses of consecutive lookups (it doubled the time of a get() hit on a
+ *  large map). A counter is therefore incremented with a plain add and an opaque
+ *  store: as cheap as a field increment, and still read atomically by another
+ *  thread (e.g. JMX) while the map is in use.
+ *
+ *  Timing an operation takes two System.nanoTime() calls, which would cost more
+ *  than a get() itself, so only one operation in 'latencySampling' is timed (every
+ *  resize is). The histograms have one bucket per power of two nanoseconds, so a
+ *  percentile is known to within a factor of two.
+ *
+ *  Only get(), put() and remove(K) are counted, not the other methods. The get()
+ *  overrides of myCacheMap and myExpiringHashMap are counted too (an expired entry
+ *  is a miss); their put() and remove(K) go through the map's own.
+ *
+ *  The same figures are available three ways: as a Snapshot (snapshot(), whose
+ *  toString() is a readable report), through the getters, or through JMX after
+ *  registerMBean(), as a myHashMapMXBean.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *  Snapshot snapshot()            - Returns a copy of every metric, bucket occupancy included
+ *  ObjectName registerMBean(String) - Registers the metrics with the platform MBean server
+ *     void  unregisterMBean()     - Unregisters them, if registered
+ *     void  reset()               - Sets every counter and histogram back to 0
+ *     (plus the myHashMapMXBean getters)
+ *
+ ****************************************/
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+class myHashMapMetrics implements myHashMapMXBean {
+
+    /*
+     * The occupancy report has one entry per chain length up to this one, which
+     * also counts the longer chains (a bucket is treeified at 8 nodes).
+     */
+    static final int OCCUPANCY_BUCKETS = 9;
+
+    /*
+     * Indexes of the counters in 'counters'.
+     */
+    private static final int GETS = 0;
+    private static final int MISSES = 1;
+    private static final int PUTS = 2;
+    private static final int INSERTS = 3;
+    private static final int REMOVES = 4;
+    private static final int TREEIFIES = 5;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final myHashMap<?, ?> map;
+    private final int sampleMask;
+
+    private final long[] counters = new long[TREEIFIES + 1];
+    final LatencyHistogram getLatency = new LatencyHistogram();
+    final LatencyHistogram putLatency = new LatencyHistogram();
+    final LatencyHistogram removeLatency = new LatencyHistogram();
+    final LatencyHistogram resizeLatency = new LatencyHistogram();
+
+    private ObjectName objectName;
+
+    /**
+     * Constructor
+     *
+     * @param map             - the map measured
+     * @param latencySampling - time one get / put / remove in this many; a power
+     *                        of two, 1 to time them all
+     */
+    myHashMapMetrics(myHashMap<?, ?> map, int latencySampling) {
+        if (latencySampling < 1 || Integer.bitCount(latencySampling) != 1) {
+            throw new IllegalArgumentException("Illegal latency sampling: " + latencySampling);
+        }
+        this.map = map;
+        this.sampleMask = latencySampling - 1;
+    }
+
+    /*
+     * Single-writer counter updates: only the thread using the map writes, so a
+     * plain read, add and opaque store is enough, and a reader on another thread
+     * sees the value written as a whole.
+     */
+
+    private static void add(long[] counts, int index, long delta) {
+        LONGS.setOpaque(counts, index, counts[index] + delta);
+    }
+
+    private static long read(long[] counts, int index) {
+        return (long) LONGS.getOpaque(counts, index);
+    }
+
+    /*
+     * Hooks, called by the map's metered paths. countGet(), countPut() and
+     * countRemove() count the operation about to run, and return true if it is to
+     * be timed: one in 'latencySampling' of each kind, chosen from the count just
+     * written rather than from a separate sample counter, so an operation that is
+     * not timed costs one counter update and one test.
+     */
+
+    private boolean count(int index) {
+        long n = counters[index] + 1;
+        LONGS.setOpaque(counters, index, n);
+        return (n & sampleMask) == 0;
+    }
+
+    boolean countGet() {
+        return count(GETS);
+    }
+
+    /*
+     * Separate from countGet() rather than 'hit ? HITS : MISSES': the counter's
+     * address would then depend on the lookup's result, and each get() would wait
+     * for the cache misses of the previous one.
+     */
+    void countMiss() {
+        add(counters, MISSES, 1);
+    }
+
+    boolean countPut() {
+        return count(PUTS);
+    }
+
+    void countInsert() {
+        add(counters, INSERTS, 1);
+    }
+
+    boolean countRemove() {
+        return count(REMOVES);
+    }
+
+    void recordResize(long nanos) {
+        resizeLatency.record(nanos);
+    }
+
+    void recordTreeify() {
+        add(counters, TREEIFIES, 1);
+    }
+
+    /**
+     * Method: Snapshot snapshot()
+     *
+     * Returns a copy of every metric, with the bucket occupancy scanned now. The
+     * counters are read one after the other, so a snapshot taken while the map is
+     * used from another thread is only approximately consistent.
+     */
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Method: ObjectName registerMBean(String)
+     *
+     * Registers the metrics with the platform MBean server, under
+     * "myHashMap:name=<name>", so JMX clients such as jconsole can read them.
+     *
+     * @throws JMException if the name is invalid or already registered
+     */
+
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName newName = new ObjectName("myHashMap", "name", ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        unregisterMBean();
+        objectName = newName;
+        return newName;
+    }
+
+    /**
+     * Method: unregisterMBean()
+     *
+     * Unregisters the metrics from the MBean server. Does nothing if they are not
+     * registered (or were unregistered through JMX).
+     */
+
+    public void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already gone
+        }
+        objectName = null;
+    }
+
+    /**
+     * Method reset()
+     *
+     * Sets every counter and histogram back to 0. Called from another thread while
+     * the map is in use, an update racing with it may survive the reset.
+     */
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            LONGS.setOpaque(counters, i, 0L);
+        }
+        getLatency.reset();
+        putLatency.reset();
+        removeLatency.reset();
+        resizeLatency.reset();
+    }
+
+    /*
+     * myHashMapMXBean
+     */
+
+    @Override
+    public int getSize() {
+        return map.size;
+    }
+
+    @Override
+    public int getBuckets() {
+        return map.numBuckets;
+    }
+
+    @Override
+    public long getGets() {
+        return read(counters, GETS);
+    }
+
+    @Override
+    public long getHits() {
+        return Math.max(0, read(counters, GETS) - read(counters, MISSES));
+    }
+
+    @Override
+    public long getMisses() {
+        return read(counters, MISSES);
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = getHits(), gets = h + getMisses();
+        return gets == 0 ? 1.0 : (double) h / gets;
+    }
+
+    @Override
+    public long getPuts() {
+        return read(counters, PUTS);
+    }
+
+    @Override
+    public long getInserts() {
+        return read(counters, INSERTS);
+    }
+
+    @Override
+    public long getRemoves() {
+        return read(counters, REMOVES);
+    }
+
+    @Override
+    public long getResizes() {
+        return resizeLatency.count();
+    }
+
+    @Override
+    public long getResizeTotalNanos() {
+        return resizeLatency.total();
+    }
+
+    @Override
+    public long getResizeMaxNanos() {
+        return resizeLatency.max();
+    }
+
+    @Override
+    public long getTreeifies() {
+        return read(counters, TREEIFIES);
+    }
+
+    @Override
+    public int getLongestChain() {
+        return map.scanBuckets(new long[OCCUPANCY_BUCKETS]);
+    }
+
+    @Override
+    public long[] getBucketOccupancy() {
+        long[] occupancy = new long[OCCUPANCY_BUCKETS];
+        map.scanBuckets(occupancy);
+        return occupancy;
+    }
+
+    @Override
+    public double getGetMeanNanos() {
+        return getLatency.mean();
+    }
+
+    @Override
+    public long getGetP99Nanos() {
+        return getLatency.percentile(0.99);
+    }
+
+    @Override
+    public double getPutMeanNanos() {
+        return putLatency.mean();
+    }
+
+    @Override
+    public long getPutP99Nanos() {
+        return putLatency.percentile(0.99);
+    }
+
+    @Override
+    public double getRemoveMeanNanos() {
+        return removeLatency.mean();
+    }
+
+    @Override
+    public long getRemoveP99Nanos() {
+        return removeLatency.percentile(0.99);
+    }
+
+    /**
+     * Class LatencyHistogram
+     *
+     * Counts durations in buckets of powers of two nanoseconds: bucket 0 holds 0,
+     * bucket i holds [2^(i-1), 2^i). Also keeps the total and the maximum, so the
+     * mean and the maximum are exact.
+     */
+
+    static final class LatencyHistogram {
+        private static final int TOTAL = Long.SIZE;
+        private static final int MAX = Long.SIZE + 1;
+
+        // counts[0 .. 63] by bucket, then the total and the maximum
+        private final long[] counts = new long[Long.SIZE + 2];
+
+        void record(long nanos) {
+            add(counts, Long.SIZE - Long.numberOfLeadingZeros(nanos), 1);
+            add(counts, TOTAL, nanos);
+            if (nanos > counts[MAX]) {
+                LONGS.setOpaque(counts, MAX, nanos);
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < Long.SIZE; i++) {
+                count += read(counts, i);
+            }
+            return count;
+        }
+
+        long total() {
+            return read(counts, TOTAL);
+        }
+
+        long max() {
+            return read(counts, MAX);
+        }
+
+        double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) total() / count;
+        }
+
+        /**
+         * Returns an upper bound of the p-quantile (0 < p <= 1): the upper end of
+         * the bucket that holds it, or the maximum if that is lower.
+         */
+        long percentile(double p) {
+            long[] snapshot = new long[Long.SIZE];
+            long count = 0;
+            for (int i = 0; i < Long.SIZE; i++) {
+                count += snapshot[i] = read(counts, i);
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < Long.SIZE; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && seen > 0) {
+                    long upper = i == 0 ? 0 : i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upper, max());
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length; i++) {
+                LONGS.setOpaque(counts, i, 0L);
+            }
+        }
+    }
+
+    /**
+     * Class Snapshot
+     *
+     * An immutable copy of every metric at one point in time.
+     */
+
+    static final class Snapshot {
+        final int size;
+        final int buckets;
+        final long hits;
+        final long misses;
+        final long puts;
+        final long inserts;
+        final long removes;
+        final long resizes;
+        final long resizeTotalNanos;
+        final long resizeMaxNanos;
+        final long treeifies;
+        final int longestChain;
+        final long[] occupancy;
+        final Latency get;
+        final Latency put;
+        final Latency remove;
+
+        Snapshot(myHashMapMetrics metrics) {
+            size = metrics.getSize();
+            buckets = metrics.getBuckets();
+            hits = metrics.getHits();
+            misses = metrics.getMisses();
+            puts = metrics.getPuts();
+            inserts = metrics.getInserts();
+            removes = metrics.getRemoves();
+            resizes = metrics.getResizes();
+            resizeTotalNanos = metrics.getResizeTotalNanos();
+            resizeMaxNanos = metrics.getResizeMaxNanos();
+            treeifies = metrics.getTreeifies();
+            occupancy = new long[OCCUPANCY_BUCKETS];
+            longestChain = metrics.map.scanBuckets(occupancy);
+            get = new Latency(metrics.getLatency);
+            put = new Latency(metrics.putLatency);
+            remove = new Latency(metrics.removeLatency);
+        }
+
+        double hitRate() {
+            return hits + misses == 0 ? 1.0 : (double) hits / (hits + misses);
+        }
+
+        long[] occupancy() {
+            return occupancy.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("size %d, buckets %d, longest chain %d, occupancy %s%n", size, buckets,
+                    longestChain, Arrays.toString(occupancy)));
+            sb.append(String.format("get %d (hit rate %.1f%%), put %d (%d inserts), remove %d, treeified %d%n",
+                    hits + misses, 100 * hitRate(), puts, inserts, removes, treeifies));
+            sb.append(String.format("resize %d, total %.3f ms, max %.3f ms%n", resizes, resizeTotalNanos / 1e6,
+                    resizeMaxNanos / 1e6));
+            sb.append("get    ").append(get).append(String.format("%n"));
+            sb.append("put    ").append(put).append(String.format("%n"));
+            sb.append("remove ").append(remove);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Class Latency
+     *
+     * The summary of one LatencyHistogram, in nanoseconds: number of timed
+     * operations, mean, p50 / p99 / p99.9 upper bounds, and maximum.
+     */
+
+    static final class Latency {
+        final long count;
+        final double mean;
+        final long p50;
+        final long p99;
+        final long p999;
+        final long max;
+
+        Latency(LatencyHistogram histogram) {
+            count = histogram.count();
+            mean = histogram.mean();
+            p50 = histogram.percentile(0.5);
+            p99 = histogram.percentile(0.99);
+            p999 = histogram.percentile(0.999);
+            max = histogram.max();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("timed %d, mean %.1f ns, p50 <= %d ns, p99 <= %d ns, p99.9 <= %d ns, max %d ns",
+                    count, mean, p50, p99, p999, max);
+        }
+    }
+
+} /* end class myHashMapMetrics */
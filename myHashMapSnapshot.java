@@ -0,0 +1,281 @@
+/**
+ *
+ *  This class is a read-only view of a myHashMap snapshot file, as written by
+ *  myHashMap.writeSnapshot(). The file is memory mapped rather than read: opening a
+ *  snapshot only checks its header, whatever its size, and the operating system
+ *  pages the file in as lookups touch it. An entry is only deserialized when a
+ *  lookup reaches it, and only its key when the stored hash already matches.
+ *
+ *  FILE FORMAT (big endian):
+ *  -------------------------
+ *
+ *     header     - 32 bytes: MAGIC, VERSION, key size, value size, number of
+ *                  entries, number of buckets, load factor, 0
+ *     directory  - (buckets + 1) ints: the index of the first entry of each bucket,
+ *                  then the number of entries. Bucket b holds the entries
+ *                  [directory[b], directory[b + 1]).
+ *     entries    - fixed size records [ hash : 4 bytes ][ key ][ value ], grouped
+ *                  by bucket, with keys and values written by BinaryCodecs.
+ *
+ *  The buckets are those of a power-of-two myHashMap presized for the entries, and
+ *  the stored hash is the one such a map keeps in its nodes. toMap() (through
+ *  myHashMap.loadSnapshot()) therefore links every entry straight into its bucket:
+ *  no resize, no hashCode() and no equals() call.
+ *
+ *  Lookups keep no state outside the mapping, so a snapshot can be read by several
+ *  threads at once, as long as none of them closes it. Files over 2 GB are mapped
+ *  as several regions.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *  boolean  containsKey(K)        - Returns true if the snapshot contains a mapping for the key.
+ *       V   get(K)                - Returns the value mapped to the key, or null
+ *     void  forEach(BiConsumer)   - Performs the action for each <k,v> pair
+ *  myHashMap<K,V> toMap()         - Loads every pair into a new (mutable) myHashMap
+ *      int  Size()                - returns the number of <k,v> pairs in the snapshot
+ *  boolean  isEmpty()             - returns true if the snapshot contains no pairs.
+ *     void  close()               - Unmaps the file
+ *
+ ****************************************/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+class myHashMapSnapshot<K, V> implements AutoCloseable {
+
+    static final int MAGIC = 0x4D484D53; // "MHMS"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    private static final int MAXIMUM_REGION_BYTES = 1 << 30;
+
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final int keySize;
+    private final int entrySize;
+    private final int size;
+    private final int numBuckets;
+    private final float loadFactor;
+
+    /*
+     * Directory int i is in directory[i >>> DIRECTORY_SHIFT]; entry i is in
+     * entries[i >>> entryShift] at byte (i & entryMask) * entrySize.
+     */
+    private static final int DIRECTORY_SHIFT = 28;
+    private static final int DIRECTORY_MASK = (1 << DIRECTORY_SHIFT) - 1;
+    private ByteBuffer[] directory;
+    private ByteBuffer[] entries;
+    private final int entryShift;
+    private final int entryMask;
+
+    /**
+     * Constructor
+     *
+     * Maps the snapshot file. The codecs must have the sizes the snapshot was
+     * written with.
+     *
+     * @throws IOException if the file can't be read or is not a snapshot written
+     *                     with codecs of these sizes
+     */
+    public myHashMapSnapshot(Path file, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) throws IOException {
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(file + " is not a myHashMap snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a myHashMap snapshot");
+            }
+            this.keySize = header.getInt(8);
+            int valueSize = header.getInt(12);
+            if (keySize != keyCodec.size() || valueSize != valueCodec.size()) {
+                throw new IOException("Snapshot " + file + " holds " + keySize + " / " + valueSize
+                        + " byte keys / values, the codecs write " + keyCodec.size() + " / " + valueCodec.size());
+            }
+            this.entrySize = Integer.BYTES + keySize + valueSize;
+            this.size = header.getInt(16);
+            this.numBuckets = header.getInt(20);
+            this.loadFactor = header.getFloat(24);
+
+            long directoryBytes = (numBuckets + 1L) * Integer.BYTES;
+            long entriesBytes = (long) size * entrySize;
+            if (size < 0 || Integer.bitCount(numBuckets) != 1
+                    || fileSize != HEADER_BYTES + directoryBytes + entriesBytes) {
+                throw new IOException("Snapshot " + file + " is truncated or corrupt");
+            }
+            int perRegion = Integer.highestOneBit(MAXIMUM_REGION_BYTES / entrySize);
+            this.entryShift = Integer.numberOfTrailingZeros(perRegion);
+            this.entryMask = perRegion - 1;
+            this.directory = map(channel, HEADER_BYTES, directoryBytes, Integer.BYTES << DIRECTORY_SHIFT);
+            this.entries = map(channel, HEADER_BYTES + directoryBytes, entriesBytes, perRegion * entrySize);
+        }
+    }
+
+    /**
+     * Maps [offset, offset + length) of the file as regions of 'regionBytes' bytes
+     * (the last one shorter).
+     */
+
+    private static ByteBuffer[] map(FileChannel channel, long offset, long length, int regionBytes)
+            throws IOException {
+        ByteBuffer[] regions = new ByteBuffer[(int) ((length + regionBytes - 1) / regionBytes)];
+        for (int r = 0; r < regions.length; r++) {
+            long start = (long) r * regionBytes;
+            regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                    Math.min(regionBytes, length - start));
+        }
+        return regions;
+    }
+
+    public int Size() {
+        ensureOpen();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return Size() == 0;
+    }
+
+    int numBuckets() {
+        return numBuckets;
+    }
+
+    float loadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * method: spread(int)
+     *
+     * The hash a power-of-two myHashMap stores for a key with this hash code.
+     */
+
+    static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * Entry accessors, by entry index. Package-private for myHashMap.loadSnapshot().
+     */
+
+    int bucketStart(int b) {
+        return directory[b >>> DIRECTORY_SHIFT].getInt((b & DIRECTORY_MASK) * Integer.BYTES);
+    }
+
+    int hashAt(int i) {
+        return entries[i >>> entryShift].getInt((i & entryMask) * entrySize);
+    }
+
+    K keyAt(int i) {
+        return keyCodec.read(entries[i >>> entryShift], (i & entryMask) * entrySize + Integer.BYTES);
+    }
+
+    V valueAt(int i) {
+        return valueCodec.read(entries[i >>> entryShift], (i & entryMask) * entrySize + Integer.BYTES + keySize);
+    }
+
+    /**
+     * method: findEntry(K)
+     *
+     * Returns the index of the entry holding the key, else -1. Only the key's
+     * bucket is read, and a stored key is only decoded when its hash matches.
+     */
+
+    private int findEntry(K key) {
+        ensureOpen();
+        int hash = spread(key.hashCode());
+        int b = hash & (numBuckets - 1);
+        for (int i = bucketStart(b), end = bucketStart(b + 1); i < end; i++) {
+            if (hashAt(i) == hash && key.equals(keyAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the specified key is mapped, or null if the
+     * snapshot contains no mapping for the key.
+     */
+
+    public V get(K key) {
+        int i = findEntry(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if the snapshot contains a mapping for the specified key.
+     */
+
+    public boolean containsKey(K key) {
+        return findEntry(key) >= 0;
+    }
+
+    /**
+     * Method: forEach(BiConsumer)
+     *
+     * Performs the action for each <k,v> pair, in file order. Reads the whole file.
+     */
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        ensureOpen();
+        for (int i = 0; i < size; i++) {
+            action.accept(keyAt(i), valueAt(i));
+        }
+    }
+
+    /**
+     * Method: myHashMap<K,V> toMap()
+     *
+     * Returns a new myHashMap holding every pair of the snapshot, presized so it
+     * does not grow while loading. See myHashMap.loadSnapshot().
+     */
+
+    public myHashMap<K, V> toMap() {
+        ensureOpen();
+        return myHashMap.fromSnapshot(this);
+    }
+
+    /**
+     * Method close()
+     *
+     * Unmaps the file. The snapshot can't be used afterwards, and must not be in
+     * use by another thread while it is closed. Closing it twice does nothing.
+     */
+
+    @Override
+    public void close() {
+        if (entries == null) {
+            return;
+        }
+        ByteBuffer[] released = entries;
+        ByteBuffer[] releasedDirectory = directory;
+        entries = null;
+        directory = null;
+        for (ByteBuffer region : released) {
+            myOffHeapHashMap.free(region);
+        }
+        for (ByteBuffer region : releasedDirectory) {
+            myOffHeapHashMap.free(region);
+        }
+    }
+
+    private void ensureOpen() {
+        if (entries == null) {
+            throw new IllegalStateException("myHashMapSnapshot is closed");
+        }
+    }
+
+} /* end class myHashMapSnapshot */
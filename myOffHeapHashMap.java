@@ -0,0 +1,624 @@
+/**
+ *
+ *  This class is an off-heap counterpart of myOpenHashMap. The table lives in direct
+ *  ByteBuffers, outside the Java heap, so a map holding hundreds of millions of
+ *  <key, value> pairs adds nothing for the garbage collector to trace: the heap only
+ *  holds this object and the ByteBuffer handles.
+ *
+ *  Keys and values are stored in their binary form, written and read by a
+ *  BinaryCodec given to the constructor. Every slot of the table has the same
+ *  layout:
+ *
+ *      [ hash : 4 bytes ][ key : keyCodec.size() bytes ][ value : valueCodec.size() bytes ]
+ *
+ *  A hash of 0 marks an empty slot, as in myOpenHashMap. Collisions are resolved by
+ *  linear probing, and removal shifts the following entries back instead of leaving
+ *  tombstones. The slots are spread over several buffers ("segments") of at most
+ *  1 GB each, since a single ByteBuffer is limited to 2 GB.
+ *
+ *  Keys are compared on their encoded bytes (the key codec must be canonical, see
+ *  BinaryCodec), so a lookup encodes the key once and never decodes a stored key.
+ *  get() decodes the value it returns, so the returned object is a copy: changing
+ *  it does not change the map.
+ *
+ *  The memory is released by close(). Direct buffers are otherwise only freed when
+ *  the garbage collector finds their handles unreachable, which for a map this size
+ *  may be much later. After close(), every method throws IllegalStateException.
+ *
+ *  Null keys and values can't be encoded and are rejected (NullPointerException).
+ *  The map is not thread-safe.
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()               - Removes all of the mappings from this map.
+ *  boolean  containsKey(K)        - Returns true if this map contains a mapping for the specified key.
+ *       V   get(K)                - Returns the value to which the specified key is mapped, or null
+ *       V   put(K, V)             - Associates the specified value with the specified key in this map
+ *       V   putIfAbsent(K, V)     - Associates the value only if the key is absent
+ *       V   remove(K)             - Removes the entry for the specified key
+ *  boolean  remove(K, V)          - Removes the entry only if it is currently mapped to the value
+ *       V   replace(K, V)         - Replaces the entry only if it is currently mapped to some value
+ *  boolean  replace(K, V1, V2)    - Replaces the entry only if currently mapped to the value V1
+ *      int  Size()                - returns the number of <k,v> pairs in hashmap
+ *  boolean  isEmpty()             - returns true if this map contains no key-value mappings.
+ *     long  capacity()            - returns the number of slots in the table
+ *     long  offHeapBytes()        - returns the number of bytes allocated outside the heap
+ *     void  close()               - Releases the off-heap memory
+ *
+ ****************************************/
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+class myOffHeapHashMap<K, V> implements AutoCloseable {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.7f;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MAXIMUM_SEGMENT_BYTES = 1 << 30;
+
+    private static final int EMPTY = 0;
+    private static final int OCCUPIED_BIT = 0x80000000;
+
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final float loadFactor;
+    private final int keySize;
+    private final int valueSize;
+    private final int slotSize;
+
+    /*
+     * Slot i is in segments[i >>> segmentShift] at byte offset
+     * (i & segmentMask) * slotSize.
+     */
+    private ByteBuffer[] segments;
+    private int segmentShift;
+    private int segmentMask;
+    private int mask;
+    private int size = 0;
+    private int threshold;
+
+    /*
+     * The encoded key of the current operation. Encoding it once lets the probe
+     * compare raw bytes instead of decoding every key it passes.
+     */
+    private final ByteBuffer keyScratch;
+    private final ByteBuffer valueScratch;
+
+    public myOffHeapHashMap(BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) {
+        this(keyCodec, valueCodec, INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param keyCodec        - writes / reads the keys; must be canonical
+     * @param valueCodec      - writes / reads the values
+     * @param initialCapacity - number of entries the map should hold before growing
+     * @param loadFactor      - fraction of the slots that may be used before the
+     *                          table is doubled, must be in (0, 1)
+     */
+    public myOffHeapHashMap(BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec, int initialCapacity,
+                            float loadFactor) {
+        if (keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("codec");
+        }
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.loadFactor = loadFactor;
+        this.keySize = keyCodec.size();
+        this.valueSize = valueCodec.size();
+        this.slotSize = Integer.BYTES + keySize + valueSize;
+        if (slotSize > MAXIMUM_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Entries of " + slotSize + " bytes are too large");
+        }
+        this.keyScratch = ByteBuffer.allocate(keySize).order(ByteOrder.nativeOrder());
+        this.valueScratch = ByteBuffer.allocate(valueSize).order(ByteOrder.nativeOrder());
+        allocate(tableSizeFor((long) Math.ceil(initialCapacity / (double) loadFactor)));
+    }
+
+    public int Size() {
+        ensureOpen();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return Size() == 0;
+    }
+
+    public long capacity() {
+        ensureOpen();
+        return mask + 1L;
+    }
+
+    /**
+     * Method: long offHeapBytes()
+     *
+     * Returns the number of bytes held in direct buffers by this map.
+     */
+
+    public long offHeapBytes() {
+        ensureOpen();
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes all of the mappings, the table keeps its current capacity. Only the
+     * hash of each slot needs to be cleared.
+     */
+
+    public void clear() {
+        ensureOpen();
+        for (int i = 0; i <= mask; i++) {
+            segmentOf(i).putInt(offsetOf(i), EMPTY);
+        }
+        size = 0;
+    }
+
+    /**
+     * Method close()
+     *
+     * Frees the direct buffers right away (where the JVM allows it, else they are
+     * freed once collected). The map can't be used afterwards. Closing a closed map
+     * does nothing.
+     */
+
+    @Override
+    public void close() {
+        if (segments == null) {
+            return;
+        }
+        ByteBuffer[] released = segments;
+        segments = null;
+        size = 0;
+        for (ByteBuffer segment : released) {
+            free(segment);
+        }
+    }
+
+    private void ensureOpen() {
+        if (segments == null) {
+            throw new IllegalStateException("myOffHeapHashMap is closed");
+        }
+    }
+
+    private ByteBuffer segmentOf(int slot) {
+        return segments[slot >>> segmentShift];
+    }
+
+    private int offsetOf(int slot) {
+        return (slot & segmentMask) * slotSize;
+    }
+
+    /**
+     * method hash()
+     *
+     * Same mix as myOpenHashMap: linear probing needs every bit of the hash code
+     * to reach the low bits. The top bit is set so that a stored hash is never 0.
+     */
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) | OCCUPIED_BIT;
+    }
+
+    /**
+     * method: findSlot(int)
+     *
+     * Probes for the key that was encoded into keyScratch, returns the slot it is
+     * stored in, else -1.
+     */
+
+    private int findSlot(int h) {
+        int slot = h & mask;
+        while (true) {
+            ByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            int sh = segment.getInt(offset);
+            if (sh == EMPTY) {
+                return -1;
+            }
+            if (sh == h && keyEquals(segment, offset + Integer.BYTES)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * method: keyEquals(ByteBuffer, int)
+     *
+     * Compares the stored key bytes at 'offset' with keyScratch, 8 bytes at a time.
+     */
+
+    private boolean keyEquals(ByteBuffer segment, int offset) {
+        int i = 0;
+        for (; i + Long.BYTES <= keySize; i += Long.BYTES) {
+            if (segment.getLong(offset + i) != keyScratch.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < keySize; i++) {
+            if (segment.get(offset + i) != keyScratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the key into keyScratch and returns its hash.
+     */
+
+    private int encodeKey(K key) {
+        ensureOpen();
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        keyCodec.write(keyScratch, 0, key);
+        return hash(key);
+    }
+
+    private V readValue(int slot) {
+        return valueCodec.read(segmentOf(slot), offsetOf(slot) + Integer.BYTES + keySize);
+    }
+
+    /**
+     * Encodes the value into valueScratch. Done before the table is touched, so that
+     * a value the codec rejects leaves the map unchanged.
+     */
+
+    private void encodeValue(V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        valueCodec.write(valueScratch, 0, value);
+    }
+
+    /**
+     * Copies the value encoded by encodeValue() into the slot.
+     */
+
+    private void storeValue(int slot) {
+        copyBytes(valueScratch, 0, segmentOf(slot), offsetOf(slot) + Integer.BYTES + keySize, valueSize);
+    }
+
+    /**
+     * method: valueEquals(int, V)
+     *
+     * Returns true if the value stored in the slot has the same encoding as 'value'.
+     */
+
+    private boolean valueEquals(int slot, V value) {
+        valueCodec.write(valueScratch, 0, value);
+        ByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot) + Integer.BYTES + keySize;
+        for (int i = 0; i < valueSize; i++) {
+            if (segment.get(offset + i) != valueScratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns (a decoded copy of) the value to which the specified key is mapped, or
+     * null if this map contains no mapping for the key.
+     */
+
+    public V get(K key) {
+        int slot = findSlot(encodeKey(key));
+        return slot < 0 ? null : readValue(slot);
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if this map contains a mapping for the specified key.
+     */
+
+    public boolean containsKey(K key) {
+        return findSlot(encodeKey(key)) >= 0;
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Associates the specified value with the specified key in this map. If the key
+     * is new and the table is at its threshold, the table is doubled first.
+     *
+     * @return value - if key exists, returns old value before
+     *         replacing with provided value, else null.
+     */
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * method: V putIfAbsent(K, V)
+     *
+     * If the specified key is not already associated with a value, associates it
+     * with the given value and returns null, else returns the current value.
+     */
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    private V putVal(K key, V value, boolean onlyIfAbsent) {
+        int h = encodeKey(key);
+        encodeValue(value);
+        int slot = findSlot(h);
+        if (slot >= 0) {
+            V oldValue = readValue(slot);
+            if (!onlyIfAbsent) {
+                storeValue(slot);
+            }
+            return oldValue;
+        }
+
+        if (size >= threshold) {
+            grow();
+        }
+        slot = h & mask;
+        while (segmentOf(slot).getInt(offsetOf(slot)) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        ByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        segment.putInt(offset, h);
+        copyBytes(keyScratch, 0, segment, offset + Integer.BYTES, keySize);
+        storeValue(slot);
+        size++;
+        return null;
+    }
+
+    /**
+     * method: V remove(K)
+     *
+     * Removes the entry for the specified key.
+     *
+     * @return value - the value removed, else null if not found
+     */
+
+    public V remove(K key) {
+        int slot = findSlot(encodeKey(key));
+        if (slot < 0) {
+            return null;
+        }
+        V removedValue = readValue(slot);
+        deleteSlot(slot);
+        return removedValue;
+    }
+
+    /**
+     * Method: boolean remove(K, V)
+     *
+     * Removes the entry for the specified key only if it is currently mapped to the
+     * specified value (compared on their encodings).
+     */
+
+    public boolean remove(K key, V val) {
+        int slot = findSlot(encodeKey(key));
+        if (slot < 0 || val == null || !valueEquals(slot, val)) {
+            return false;
+        }
+        deleteSlot(slot);
+        return true;
+    }
+
+    /**
+     * method: V replace(K, V)
+     *
+     * Replaces the entry for the specified key only if it is currently mapped to
+     * some value.
+     *
+     * @return V - returns the old value for the <k,v> pair, else null if not found.
+     */
+
+    public V replace(K key, V val) {
+        int h = encodeKey(key);
+        encodeValue(val);
+        int slot = findSlot(h);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = readValue(slot);
+        storeValue(slot);
+        return oldValue;
+    }
+
+    /**
+     * method: boolean replace(K, V, V)
+     *
+     * Replaces the entry for the specified key only if currently mapped to the
+     * specified value.
+     */
+
+    public boolean replace(K key, V oldVal, V newVal) {
+        if (newVal == null) {
+            throw new NullPointerException("value");
+        }
+        int slot = findSlot(encodeKey(key));
+        if (slot < 0 || oldVal == null || !valueEquals(slot, oldVal)) {
+            return false;
+        }
+        encodeValue(newVal); // after valueEquals(), which uses valueScratch too
+        storeValue(slot);
+        return true;
+    }
+
+    /**
+     * method: deleteSlot(int)
+     *
+     * Empties a slot, then closes the gap: an entry further along the run moves
+     * back into the gap when its home slot does not lie (cyclically) between the gap
+     * and the entry itself, as in myOpenHashMap with LINEAR probing. Entries are
+     * moved as raw bytes.
+     */
+
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        int h;
+        while ((h = segmentOf(next).getInt(offsetOf(next))) != EMPTY) {
+            int home = h & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                copySlot(segmentOf(next), offsetOf(next), segmentOf(gap), offsetOf(gap));
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        segmentOf(gap).putInt(offsetOf(gap), EMPTY);
+        size--;
+    }
+
+    /**
+     * method: grow()
+     *
+     * Doubles the table. Every occupied slot is copied as raw bytes to its slot in
+     * the new table; the stored hash gives its position, so no key is decoded or
+     * re-hashed. The old buffers are freed once copied.
+     */
+
+    private void grow() {
+        int capacity = mask + 1;
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("myOffHeapHashMap is full");
+        }
+        ByteBuffer[] oldSegments = segments;
+        int oldShift = segmentShift;
+        int oldMask = segmentMask;
+        allocate(capacity << 1);
+
+        for (int i = 0; i < capacity; i++) {
+            ByteBuffer from = oldSegments[i >>> oldShift];
+            int fromOffset = (i & oldMask) * slotSize;
+            int h = from.getInt(fromOffset);
+            if (h != EMPTY) {
+                int slot = h & mask;
+                while (segmentOf(slot).getInt(offsetOf(slot)) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                copySlot(from, fromOffset, segmentOf(slot), offsetOf(slot));
+            }
+        }
+        for (ByteBuffer segment : oldSegments) {
+            free(segment);
+        }
+    }
+
+    /**
+     * method: copySlot(ByteBuffer, int, ByteBuffer, int)
+     *
+     * Copies one slot, hash, key and value, as raw bytes.
+     */
+
+    private void copySlot(ByteBuffer from, int fromOffset, ByteBuffer to, int toOffset) {
+        copyBytes(from, fromOffset, to, toOffset, slotSize);
+    }
+
+    /**
+     * method: copyBytes(ByteBuffer, int, ByteBuffer, int, int)
+     *
+     * Copies 'length' bytes, 8 at a time. For entries this small, this is much
+     * cheaper than a bulk ByteBuffer.put(), which pays for its checks on every call.
+     */
+
+    private static void copyBytes(ByteBuffer from, int fromOffset, ByteBuffer to, int toOffset, int length) {
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            to.putLong(toOffset + i, from.getLong(fromOffset + i));
+        }
+        for (; i < length; i++) {
+            to.put(toOffset + i, from.get(fromOffset + i));
+        }
+    }
+
+    /**
+     * method: allocate(int)
+     *
+     * Allocates zeroed (so all empty) segments for 'capacity' slots. Each segment
+     * holds the largest power of two number of slots that fits in
+     * MAXIMUM_SEGMENT_BYTES.
+     */
+
+    private void allocate(int capacity) {
+        int perSegment = Integer.highestOneBit(MAXIMUM_SEGMENT_BYTES / slotSize);
+        perSegment = Math.min(perSegment, capacity);
+        int count = capacity / perSegment;
+        ByteBuffer[] allocated = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            allocated[i] = ByteBuffer.allocateDirect(perSegment * slotSize).order(ByteOrder.nativeOrder());
+        }
+        segments = allocated;
+        segmentShift = Integer.numberOfTrailingZeros(perSegment);
+        segmentMask = perSegment - 1;
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    private static int tableSizeFor(long c) {
+        if (c >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return c <= 2 ? 2 : Integer.highestOneBit((int) c - 1) << 1;
+    }
+
+    /*
+     * Frees a direct or mapped buffer without waiting for the garbage collector,
+     * through sun.misc.Unsafe.invokeCleaner() (in the jdk.unsupported module, which
+     * is readable by default). If that isn't available the buffer is simply dropped
+     * and freed when collected. Also used by myHashMapSnapshot to unmap its file.
+     */
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // left to the garbage collector
+        }
+    }
+
+} /* end class myOffHeapHashMap */
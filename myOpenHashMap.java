@@ -0,0 +1,593 @@
+/**
+ *
+ *  This class is the open addressing counterpart of myHashMap. Instead of hanging a
+ *  linked-list of HashNode objects off every bucket slot, the <key, value> pairs are
+ *  stored directly in three parallel arrays (hashes, keys, values). A collision is
+ *  resolved by probing forward to the next free slot, so a lookup walks consecutive
+ *  array cells rather than chasing node pointers, and no object is allocated per entry.
+ *
+ *  Two probing strategies can be selected when the map is constructed:
+ *
+ *    LINEAR      - classic linear probing; an insert takes the first free slot found
+ *                  past the key's home slot.
+ *    ROBIN_HOOD  - linear probing where an inserting entry that is further away from
+ *                  its home slot than the resident entry takes that slot over, and the
+ *                  resident continues probing. This keeps probe lengths short and even
+ *                  at high load factors, and lets a failed lookup stop early.
+ *
+ *  Removal uses backward shifting rather than tombstones, so the table never fills up
+ *  with deleted markers and probe lengths do not degrade over time.
+ *
+ *  The get / put / remove / replace methods follow the same behavior as the ones in
+ *  myHashMap (which in turn emulate Java's HashMap).
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()               - Removes all of the mappings from this map.
+ *  boolean  containsValue(V)      - Returns true if this map maps one or more keys to the specified value
+ *  boolean  containsKey(K)        - Returns true if this map contains a mapping for the specified key.
+ *       V   get(K)                - Returns the value to which the specified key is mapped, or null
+ *       V   put(K, V)             - Associates the specified value with the specified key in this map
+ *       V   putIfAbsent(K, V)     - Associates the value only if the key is absent (or mapped to null)
+ *       V   remove(K)             - Removes the entry for the specified key
+ *  boolean  remove(K, V)          - Removes the entry only if it is currently mapped to the value
+ *       V   replace(K, V)         - Replaces the entry only if it is currently mapped to some value
+ *  boolean  replace(K, V1, V2)    - Replaces the entry only if currently mapped to the value V1
+ *  Set<K>   keySet()              - Returns a 'Set' view of the keys contained in the map.
+ *  Set<Map.Entry<K,V>> entrySet() - Returns a 'Set' view of the mappings contains in the map.
+ *      int  Size()                - returns the number of <k,v> pairs in hashmap
+ *  boolean  isEmpty()             - returns true if this map contains no key-value mappings.
+ *      int  capacity()            - returns the number of slots in the table
+ *   double  averageProbeLength()  - average number of slots a successful lookup examines
+ *      int  maxProbeLength()      - worst case number of slots a successful lookup examines
+ *    int[]  probeLengthHistogram()- number of entries found after 1, 2, 3, ... probes
+ *
+ ****************************************/
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.HashSet;
+
+class myOpenHashMap<K, V> {
+
+    /**
+     * Probing strategy used to resolve collisions.
+     */
+    enum Probing {
+        LINEAR,
+        ROBIN_HOOD
+    }
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.7f;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /*
+     * An empty slot is marked by a hash of 0. Every stored hash has its top bit set,
+     * so a stored hash can never be 0, while the low bits used for indexing are kept.
+     */
+    private static final int EMPTY = 0;
+    private static final int OCCUPIED_BIT = 0x80000000;
+
+    private final Probing probing;
+    private final float loadFactor;
+
+    int[] hashes;
+    Object[] keys;
+    Object[] values;
+    int mask;
+    int size = 0;
+    int threshold;
+
+    public myOpenHashMap() {
+        this(Probing.ROBIN_HOOD, INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public myOpenHashMap(Probing probing) {
+        this(probing, INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param probing         - LINEAR or ROBIN_HOOD collision resolution
+     * @param initialCapacity - number of entries the map should hold before growing
+     * @param loadFactor      - fraction of the slots that may be used before the
+     *                          table is doubled, must be in (0, 1)
+     */
+    public myOpenHashMap(Probing probing, int initialCapacity, float loadFactor) {
+        if (probing == null) {
+            throw new NullPointerException("probing");
+        }
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.probing = probing;
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    public int Size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return hashes.length;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Removes all of the mappings, the table keeps its current capacity.
+     */
+
+    public void clear() {
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = EMPTY;
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * method hash()
+     *
+     * Scrambles the key's hash code so that every bit of it influences the low bits
+     * (the table is indexed with a mask, so only the low bits select the home slot).
+     * Linear probing is very sensitive to clustered hash codes, so a full multiply and
+     * shift mix is used rather than a plain shift. The top bit is then set so that a
+     * stored hash is never confused with an empty slot.
+     */
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) | OCCUPIED_BIT;
+    }
+
+    /**
+     * method: distance(int, int)
+     *
+     * Returns how many slots away from its home slot an entry with the given hash
+     * sits, when it is stored at 'slot'.
+     */
+
+    private int distance(int hash, int slot) {
+        return (slot - (hash & mask)) & mask;
+    }
+
+    /**
+     * method: findSlot(K)
+     *
+     * Probes for the key, returns the slot it is stored in, else -1.
+     */
+
+    private int findSlot(Object key) {
+        return findSlot(hash(key), key);
+    }
+
+    /**
+     * method: findSlot(int, K)
+     *
+     * findSlot() with the key's hash already computed, for put() and putIfAbsent(),
+     * which pass the same hash on to insert() so hashCode() is called once.
+     */
+
+    private int findSlot(int h, Object key) {
+        int slot = h & mask;
+        for (int dist = 0; ; dist++) {
+            int sh = hashes[slot];
+            if (sh == EMPTY) {
+                return -1;
+            }
+            if (probing == Probing.ROBIN_HOOD && distance(sh, slot) < dist) {
+                // Had the key been present, it would have displaced this entry
+                return -1;
+            }
+            if (sh == h) {
+                Object k = keys[slot];
+                if (k == key || k.equals(key)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the specified key is mapped, or null if this map
+     * contains no mapping for the key.
+     *
+     * @param key - key value for identifying the <k,v> pair
+     *
+     * @return val - value for the provided key value, else null
+     */
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Associates the specified value with the specified key in this map. If the key
+     * is already present its value is updated and the old value returned, else the
+     * <k,v> pair is inserted and null is returned. When the number of entries passes
+     * the load factor, the table is doubled.
+     *
+     * @param key   - Key to the <k,v> pair operate on
+     * @param value - if key found, value is updated to this
+     *              param, else routine inserts <k,v>
+     *
+     * @return value - if key exists, returns old value before
+     *         replacing with provided value, else null.
+     */
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int h = hash(key);
+        int slot = findSlot(h, key);
+        if (slot >= 0) {
+            V oldValue = (V) values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+
+        if (size >= threshold) {
+            grow();
+        }
+        insert(h, key, value);
+        size++;
+        return null;
+    }
+
+    /**
+     * method: insert(int, K, V)
+     *
+     * Places an entry known not to be in the table. With ROBIN_HOOD probing, the
+     * entry swaps places with any resident that is closer to its own home slot, and
+     * the resident carries on probing in its place.
+     */
+
+    private void insert(int h, Object key, Object value) {
+        int slot = h & mask;
+        int dist = 0;
+        while (true) {
+            int sh = hashes[slot];
+            if (sh == EMPTY) {
+                hashes[slot] = h;
+                keys[slot] = key;
+                values[slot] = value;
+                return;
+            }
+            if (probing == Probing.ROBIN_HOOD) {
+                int residentDist = distance(sh, slot);
+                if (residentDist < dist) {
+                    Object rk = keys[slot];
+                    Object rv = values[slot];
+                    hashes[slot] = h;
+                    keys[slot] = key;
+                    values[slot] = value;
+                    h = sh;
+                    key = rk;
+                    value = rv;
+                    dist = residentDist;
+                }
+            }
+            slot = (slot + 1) & mask;
+            dist++;
+        }
+    }
+
+    /**
+     * method: V putIfAbsent(K, V)
+     *
+     * If the specified key is not already associated with a value (or is mapped to
+     * null) associates it with the given value and returns null, else returns the
+     * current value.
+     */
+
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        int h = hash(key);
+        int slot = findSlot(h, key);
+        if (slot >= 0 && values[slot] != null) {
+            return (V) values[slot];
+        }
+        if (slot >= 0) {
+            values[slot] = value;
+            return null;
+        }
+        if (size >= threshold) {
+            grow();
+        }
+        insert(h, key, value);
+        size++;
+        return null;
+    }
+
+    /**
+     * method: V remove(K)
+     *
+     * Removes the entry for the specified key. The entries following the freed slot
+     * are shifted back so that every remaining key stays reachable from its home slot.
+     *
+     * @param key - key value for the <key,value> pair to remove
+     *
+     * @return value - the value removed, else null if not found
+     */
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V removedValue = (V) values[slot];
+        deleteSlot(slot);
+        return removedValue;
+    }
+
+    /**
+     * Method: boolean remove(K, V)
+     *
+     * Removes the entry for the specified key only if it is currently mapped to the
+     * specified value.
+     *
+     * @return: true if deleted, else false
+     */
+
+    public boolean remove(K key, V val) {
+        int slot = findSlot(key);
+        if (slot < 0 || values[slot] == null || !values[slot].equals(val)) {
+            return false;
+        }
+        deleteSlot(slot);
+        return true;
+    }
+
+    /**
+     * method: deleteSlot(int)
+     *
+     * Empties a slot, then closes the gap. For ROBIN_HOOD probing, every following
+     * entry that is not in its home slot moves back by one until an empty slot or an
+     * entry sitting in its home slot is reached. For LINEAR probing, an entry may only
+     * move back into the gap when its home slot does not lie (cyclically) between the
+     * gap and the entry itself.
+     */
+
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (hashes[next] != EMPTY) {
+            int h = hashes[next];
+            boolean movable;
+            if (probing == Probing.ROBIN_HOOD) {
+                if (distance(h, next) == 0) {
+                    break;
+                }
+                movable = true;
+            } else {
+                int home = h & mask;
+                movable = ((next - home) & mask) >= ((next - gap) & mask);
+            }
+            if (movable) {
+                hashes[gap] = h;
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        hashes[gap] = EMPTY;
+        keys[gap] = null;
+        values[gap] = null;
+        size--;
+    }
+
+    /**
+     * method: V replace(K, V)
+     *
+     * Replaces the entry for the specified key only if it is currently mapped to
+     * some value.
+     *
+     * @return V - returns the old value for the <k,v> pair, else null if not found.
+     */
+
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V val) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = (V) values[slot];
+        values[slot] = val;
+        return oldValue;
+    }
+
+    /**
+     * method: boolean replace(K, V, V)
+     *
+     * Replaces the entry for the specified key only if currently mapped to the
+     * specified value. As in myHashMap, a key mapped to null never matches.
+     *
+     * @return true if the value was replaced, else false.
+     */
+
+    public boolean replace(K key, V oldVal, V newVal) {
+        int slot = findSlot(key);
+        if (slot < 0 || values[slot] == null || !values[slot].equals(oldVal)) {
+            return false;
+        }
+        values[slot] = newVal;
+        return true;
+    }
+
+    /**
+     * Method: boolean containsValue(V)
+     *
+     * Returns true if this map maps one or more keys to the specified value
+     */
+
+    public boolean containsValue(V val) {
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY && Objects.equals(values[i], val)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method: boolean containsKey(K)
+     *
+     * Returns true if this map contains a mapping for the specified key.
+     */
+
+    public boolean containsKey(K key) {
+        return (get(key) == null ? false : true);
+    }
+
+    /**
+     * Method: Set<Map.Entry<K,V>> entrySet()
+     *
+     * Returns a 'Set' view of the mappings contained in the map. The entries are
+     * copies (they may hold null values, unlike Map.entry()).
+     */
+
+    @SuppressWarnings("unchecked")
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> returnSet = new HashSet<>();
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                returnSet.add(new AbstractMap.SimpleImmutableEntry<>((K) keys[i], (V) values[i]));
+            }
+        }
+        return returnSet;
+    }
+
+    /**
+     * Method: Set<K> keySet()
+     *
+     * Returns a 'Set' view of the keys contained in the map.
+     */
+
+    @SuppressWarnings("unchecked")
+    public Set<K> keySet() {
+        Set<K> returnSet = new HashSet<>();
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                returnSet.add((K) keys[i]);
+            }
+        }
+        return returnSet;
+    }
+
+    /**
+     * Method: double averageProbeLength()
+     *
+     * Returns the average number of slots a successful lookup examines, that is one
+     * more than the average distance of an entry from its home slot. A value that
+     * stays close to 1 as the map fills confirms lookups remain flat.
+     */
+
+    public double averageProbeLength() {
+        if (size == 0) {
+            return 0.0;
+        }
+        long total = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                total += distance(hashes[i], i) + 1;
+            }
+        }
+        return (double) total / size;
+    }
+
+    /**
+     * Method: int maxProbeLength()
+     *
+     * Returns the largest number of slots any successful lookup examines.
+     */
+
+    public int maxProbeLength() {
+        int max = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                max = Math.max(max, distance(hashes[i], i) + 1);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Method: int[] probeLengthHistogram()
+     *
+     * Returns a histogram where element i holds the number of entries that are found
+     * after exactly (i + 1) probes.
+     */
+
+    public int[] probeLengthHistogram() {
+        int[] histogram = new int[maxProbeLength()];
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                histogram[distance(hashes[i], i)]++;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * method: grow()
+     *
+     * Doubles the table and re-inserts every entry. The stored hashes are reused,
+     * so no key's hashCode() is called again.
+     */
+
+    private void grow() {
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        if (oldHashes.length == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("myOpenHashMap is full");
+        }
+        allocate(oldHashes.length * 2);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Returns the smallest power of two that is >= cap (at least 2).
+     */
+
+    private static int tableSizeFor(int cap) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(cap, 2) - 1);
+        return (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+} /* end class myOpenHashMap */
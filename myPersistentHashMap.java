@@ -0,0 +1,611 @@
+/**
+ *
+ *  This class is a map whose readers can take a consistent point-in-time snapshot
+ *  of it in O(1), while writers keep going. It is a persistent hash array mapped
+ *  trie (HAMT): nothing in the trie is ever modified once it is reachable. A write
+ *  copies only the path from the root to the entry it changes (at most 7 nodes of
+ *  up to 32 slots) and shares everything else with the previous version, then
+ *  publishes the new root with a compare-and-set. A snapshot is just the root at
+ *  the time snapshot() was called, so taking one copies nothing, and iterating it
+ *  sees exactly the entries of that moment, however long it takes and whatever the
+ *  writers do meanwhile.
+ *
+ *  The trie consumes the (spread) hash code 5 bits per level: a node has a 32 bit
+ *  bitmap of the positions in use and an array holding only those positions, each
+ *  an entry, a child node, or a Collision (the entries whose whole hash codes are
+ *  equal). A lookup takes one node per 5 bits of hash needed to tell the keys apart,
+ *  about log32(n) nodes: 4 for a million keys.
+ *
+ *  Threads: reads (get, containsKey, Size, snapshot and everything on a snapshot)
+ *  take no lock and never wait. Writes take no lock either: a writer whose
+ *  compare-and-set loses to another writer retries on the new root, so writers
+ *  never block readers or each other, though concurrent writers to one map may
+ *  redo some path copies. The entries handed out are immutable (setValue() throws).
+ *
+ *  Like myConcurrentHashMap, null keys and null values are rejected
+ *  (NullPointerException): a null from get() always means "absent".
+ *
+ *  PUBLIC METHODS:
+ *  ---------------
+ *
+ *     void  clear()               - Removes all of the mappings from this map.
+ *  boolean  containsKey(K)        - Returns true if this map contains a mapping for the specified key.
+ *       V   get(K)                - Returns the value to which the specified key is mapped, or null
+ *       V   put(K, V)             - Associates the specified value with the specified key in this map
+ *       V   putIfAbsent(K, V)     - Associates the value only if the key is absent
+ *       V   remove(K)             - Removes the entry for the specified key
+ *     void  forEach(BiConsumer)   - Performs the action for each <k,v> pair of a snapshot
+ *  Snapshot<K,V> snapshot()       - Returns a consistent, immutable view of the map, in O(1)
+ *      int  Size()                - returns the number of <k,v> pairs in the map
+ *  boolean  isEmpty()             - returns true if this map contains no key-value mappings.
+ *
+ ****************************************/
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+class myPersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAXIMUM_DEPTH = (Integer.SIZE + BITS - 1) / BITS; // 7 levels
+
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+
+    /*
+     * The current version of the map: the root of the trie and its number of
+     * entries, replaced as a whole by every write.
+     */
+    private final AtomicReference<Version> version = new AtomicReference<>(new Version(EMPTY_NODE, 0));
+
+    /**
+     * An immutable version of the map.
+     */
+    private static final class Version {
+        final Node root;
+        final int size;
+
+        Version(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A trie node: slots[i] holds the i-th position set in 'bitmap', as an Entry,
+     * a child Node, or a Collision.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /*
+         * Copies of the node with a slot inserted, replaced or removed.
+         */
+
+        Node with(int bit, int index, Object slot) {
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Node(bitmap | bit, copy);
+        }
+
+        Node replace(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new Node(bitmap, copy);
+        }
+
+        Node without(int bit, int index) {
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+
+    /**
+     * Entries whose keys have the same (spread) hash code, at the bottom of the trie.
+     */
+    private static final class Collision {
+        final int hash;
+        final Entry<?, ?>[] entries;
+
+        Collision(int hash, Entry<?, ?>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * An immutable <k,v> pair; the trie's leaves are the entries handed out by
+     * snapshots, so iterating allocates no entry objects.
+     */
+    static final class Entry<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("myPersistentHashMap entries are immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry && key.equals(((Map.Entry<?, ?>) o).getKey())
+                    && value.equals(((Map.Entry<?, ?>) o).getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * The outcome of a write, filled in while the path is copied.
+     */
+    private static final class Change {
+        Object oldValue;
+        boolean added;
+        boolean removed;
+    }
+
+    static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    public int Size() {
+        return version.get().size;
+    }
+
+    public boolean isEmpty() {
+        return Size() == 0;
+    }
+
+    /**
+     * method: V get(K)
+     *
+     * Returns the value to which the key is mapped, or null. Reads the current
+     * version, with no lock.
+     */
+
+    public V get(K key) {
+        Entry<K, V> entry = find(version.get().root, key);
+        return entry == null ? null : entry.value;
+    }
+
+    public boolean containsKey(K key) {
+        return find(version.get().root, key) != null;
+    }
+
+    /**
+     * method: Entry find(Node, K)
+     *
+     * Walks down from 'root' along the key's hash, 5 bits per level, until it
+     * reaches an empty position (absent), an entry or a collision.
+     */
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V> find(Node root, K key) {
+        int hash = spread(key.hashCode());
+        Node node = root;
+        for (int shift = 0;; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Node) {
+                node = (Node) slot;
+            } else if (slot instanceof Entry) {
+                Entry<K, V> entry = (Entry<K, V>) slot;
+                return entry.hash == hash && (entry.key == key || entry.key.equals(key)) ? entry : null;
+            } else {
+                Collision collision = (Collision) slot;
+                if (collision.hash != hash) {
+                    return null;
+                }
+                for (Entry<?, ?> entry : collision.entries) {
+                    if (entry.key.equals(key)) {
+                        return (Entry<K, V>) entry;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * method: V put(K, V)
+     *
+     * Associates the value with the key. Copies the path to the key's position
+     * into a new version and publishes it; storing the value a key already has
+     * publishes nothing.
+     *
+     * @return the previous value for the key, else null
+     */
+
+    public V put(K key, V value) {
+        return update(key, value, false);
+    }
+
+    /**
+     * method: V putIfAbsent(K, V)
+     *
+     * Associates the value with the key only if the key is absent.
+     *
+     * @return the current value for the key, else null if it was absent
+     */
+
+    public V putIfAbsent(K key, V value) {
+        return update(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V update(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Entry<K, V> entry = new Entry<>(spread(key.hashCode()), key, value);
+        Change change = new Change();
+        for (;;) {
+            Version current = version.get();
+            change.oldValue = null;
+            change.added = false;
+            Node root = put(current.root, entry, 0, onlyIfAbsent, change);
+            if (root == current.root
+                    || version.compareAndSet(current, new Version(root, current.size + (change.added ? 1 : 0)))) {
+                return (V) change.oldValue;
+            }
+        }
+    }
+
+    /**
+     * method: Node put(Node, Entry, int, boolean, Change)
+     *
+     * Returns a copy of 'node' (at depth shift / 5) with the entry stored under it,
+     * or 'node' itself if nothing changes.
+     */
+
+    private static Node put(Node node, Entry<?, ?> entry, int shift, boolean onlyIfAbsent, Change change) {
+        int bit = 1 << ((entry.hash >>> shift) & MASK);
+        int index = node.index(bit);
+        if ((node.bitmap & bit) == 0) {
+            change.added = true;
+            return node.with(bit, index, entry);
+        }
+        Object slot = node.slots[index];
+        Object updated;
+        if (slot instanceof Node) {
+            updated = put((Node) slot, entry, shift + BITS, onlyIfAbsent, change);
+        } else if (slot instanceof Entry) {
+            Entry<?, ?> existing = (Entry<?, ?>) slot;
+            if (existing.hash == entry.hash && existing.key.equals(entry.key)) {
+                change.oldValue = existing.value;
+                updated = onlyIfAbsent || existing.value == entry.value ? existing : entry;
+            } else {
+                change.added = true;
+                updated = split(existing, existing.hash, entry, shift + BITS);
+            }
+        } else {
+            updated = put((Collision) slot, entry, shift + BITS, onlyIfAbsent, change);
+        }
+        return updated == slot ? node : node.replace(index, updated);
+    }
+
+    private static Object put(Collision collision, Entry<?, ?> entry, int shift, boolean onlyIfAbsent,
+                              Change change) {
+        if (collision.hash != entry.hash) {
+            change.added = true;
+            return split(collision, collision.hash, entry, shift);
+        }
+        Entry<?, ?>[] entries = collision.entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].key.equals(entry.key)) {
+                change.oldValue = entries[i].value;
+                if (onlyIfAbsent || entries[i].value == entry.value) {
+                    return collision;
+                }
+                Entry<?, ?>[] copy = entries.clone();
+                copy[i] = entry;
+                return new Collision(collision.hash, copy);
+            }
+        }
+        change.added = true;
+        Entry<?, ?>[] copy = new Entry<?, ?>[entries.length + 1];
+        System.arraycopy(entries, 0, copy, 0, entries.length);
+        copy[entries.length] = entry;
+        return new Collision(collision.hash, copy);
+    }
+
+    /**
+     * method: Object split(Object, int, Entry, int)
+     *
+     * Returns what replaces 'existing' (an entry or a collision whose hash is
+     * 'hash') once 'entry' has to sit next to it: a collision if the hashes are
+     * equal, else a node at 'shift' holding both, with as many single-slot nodes
+     * above it as there are levels where their hashes agree.
+     */
+
+    private static Object split(Object existing, int hash, Entry<?, ?> entry, int shift) {
+        if (hash == entry.hash) {
+            return new Collision(hash, new Entry<?, ?>[] { (Entry<?, ?>) existing, entry });
+        }
+        int a = (hash >>> shift) & MASK;
+        int b = (entry.hash >>> shift) & MASK;
+        if (a == b) {
+            return new Node(1 << a, new Object[] { split(existing, hash, entry, shift + BITS) });
+        }
+        return new Node(1 << a | 1 << b, a < b ? new Object[] { existing, entry } : new Object[] { entry, existing });
+    }
+
+    /**
+     * method: V remove(K)
+     *
+     * Removes the key's entry, if present, by publishing a version without it.
+     *
+     * @return the value removed, else null
+     */
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Change change = new Change();
+        for (;;) {
+            Version current = version.get();
+            change.removed = false;
+            Node root = remove(current.root, hash, key, 0, change);
+            if (!change.removed) {
+                return null;
+            }
+            if (version.compareAndSet(current, new Version(root, current.size - 1))) {
+                return (V) change.oldValue;
+            }
+        }
+    }
+
+    /**
+     * method: Node remove(Node, int, Object, int, Change)
+     *
+     * Returns a copy of 'node' without the key, or 'node' itself if the key is not
+     * under it. A child node left with a single entry (or collision) is replaced by
+     * that entry, so the trie stays as shallow as if the key had never been there.
+     */
+
+    private static Node remove(Node node, int hash, Object key, int shift, Change change) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = node.index(bit);
+        Object slot = node.slots[index];
+        Object updated;
+        if (slot instanceof Node) {
+            Node child = remove((Node) slot, hash, key, shift + BITS, change);
+            if (child == slot) {
+                return node;
+            }
+            updated = child.slots.length == 1 && !(child.slots[0] instanceof Node) ? child.slots[0] : child;
+        } else if (slot instanceof Entry) {
+            Entry<?, ?> entry = (Entry<?, ?>) slot;
+            if (entry.hash != hash || !entry.key.equals(key)) {
+                return node;
+            }
+            change.oldValue = entry.value;
+            updated = null;
+        } else {
+            Collision collision = (Collision) slot;
+            updated = remove(collision, hash, key, change);
+            if (updated == collision) {
+                return node;
+            }
+        }
+        change.removed = true;
+        return updated == null ? node.without(bit, index) : node.replace(index, updated);
+    }
+
+    private static Object remove(Collision collision, int hash, Object key, Change change) {
+        Entry<?, ?>[] entries = collision.entries;
+        if (collision.hash != hash) {
+            return collision;
+        }
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].key.equals(key)) {
+                change.oldValue = entries[i].value;
+                if (entries.length == 2) {
+                    return entries[1 - i];
+                }
+                Entry<?, ?>[] copy = new Entry<?, ?>[entries.length - 1];
+                System.arraycopy(entries, 0, copy, 0, i);
+                System.arraycopy(entries, i + 1, copy, i, entries.length - i - 1);
+                return new Collision(hash, copy);
+            }
+        }
+        return collision;
+    }
+
+    /**
+     * Method clear()
+     *
+     * Publishes an empty version. Snapshots taken before keep their entries.
+     */
+
+    public void clear() {
+        version.set(new Version(EMPTY_NODE, 0));
+    }
+
+    /**
+     * Method: Snapshot snapshot()
+     *
+     * Returns an immutable view of the map as it is now, in O(1): the current
+     * version is shared, not copied. Writes made afterwards are not seen by it.
+     */
+
+    public Snapshot<K, V> snapshot() {
+        return new Snapshot<>(version.get());
+    }
+
+    /**
+     * Method: forEach(BiConsumer)
+     *
+     * Performs the action for each <k,v> pair of a snapshot taken when the call
+     * starts, so it sees every entry of that moment exactly once.
+     */
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        snapshot().forEach(action);
+    }
+
+    /**
+     * A point-in-time, immutable view of a myPersistentHashMap. Its methods read
+     * only the version it was taken from, so they are consistent with each other
+     * (Size() is the number of entries iterated) and safe to call from any thread.
+     */
+    static final class Snapshot<K, V> implements Iterable<Map.Entry<K, V>> {
+        private final Node root;
+        private final int size;
+
+        private Snapshot(Version version) {
+            this.root = version.root;
+            this.size = version.size;
+        }
+
+        public int Size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public V get(K key) {
+            Entry<K, V> entry = find(root, key);
+            return entry == null ? null : entry.value;
+        }
+
+        public boolean containsKey(K key) {
+            return find(root, key) != null;
+        }
+
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            Objects.requireNonNull(action);
+            for (Map.Entry<K, V> entry : this) {
+                action.accept(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Returns an iterator over the snapshot's entries, in trie order. It walks
+         * the trie depth first with a stack of (node, position) per level, and
+         * returns the trie's own entries; remove() is not supported.
+         */
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new TrieIterator<>(root);
+        }
+    }
+
+    private static final class TrieIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Node[] nodes = new Node[MAXIMUM_DEPTH + 1];
+        private final int[] positions = new int[MAXIMUM_DEPTH + 1];
+        private int depth;
+        private Entry<?, ?>[] collision; // entries of the collision being returned
+        private int collisionPosition;
+        private Entry<?, ?> next;
+
+        TrieIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (collision != null) {
+                if (collisionPosition < collision.length) {
+                    next = collision[collisionPosition++];
+                    return;
+                }
+                collision = null;
+            }
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] == node.slots.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = node.slots[positions[depth]++];
+                if (slot instanceof Node) {
+                    depth++;
+                    nodes[depth] = (Node) slot;
+                    positions[depth] = 0;
+                } else if (slot instanceof Entry) {
+                    next = (Entry<?, ?>) slot;
+                    return;
+                } else {
+                    collision = ((Collision) slot).entries;
+                    next = collision[0];
+                    collisionPosition = 1;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = (Map.Entry<K, V>) next;
+            advance();
+            return entry;
+        }
+    }
+
+} /* end class myPersistentHashMap */